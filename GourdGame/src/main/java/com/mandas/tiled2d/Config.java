@@ -6,7 +6,9 @@ import java.text.SimpleDateFormat;
 public class Config {
     // Core settings
     public static final String Version = "v1.2";
-    public static final int MaxFrameRate = 60;
+    public static final int MaxFrameRate = 60;         // Render rate
+    public static final int TickRate = 60;             // Fixed simulation ticks per second
+    public static final int MaxTicksPerIteration = 5;  // Max ticks to catch up after a stall before rendering again
 
     // Log settings
     public static final String LogFilename = "test.log";
@@ -18,6 +20,11 @@ public class Config {
     public static final Font ScoreboardTextFont = new Font("宋体", Font.PLAIN, 36);
     public static final Color FontColor = Color.black;
     public static final Color DefaultBackgroundColor = Color.WHITE;
+    public static final long ScaledImageCacheBytes = 64L << 20;    // Memory for scaled textures, least recently used ones are dropped
+    public static final boolean ParallelRasterization = false;    // Paint tiles in horizontal strips on several threads
+    public static final int RasterizationThreads = Runtime.getRuntime().availableProcessors();
+    public static final boolean ShowProfilerOverlay = false;        // Draw frame timings over the scoreboard
+    public static final int ProfilerHistoryFrames = 240;            // Frames the profiler's percentiles are computed from
 
 
 }
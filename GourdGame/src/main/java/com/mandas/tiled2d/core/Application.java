@@ -1,13 +1,20 @@
 package com.mandas.tiled2d.core;
 
 import com.mandas.tiled2d.Config;
+import com.mandas.tiled2d.renderer.FrameDumper;
+import com.mandas.tiled2d.renderer.RenderProfiler;
 import com.mandas.tiled2d.renderer.Renderer;
 
 import javax.swing.*;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
 
 public class Application {
     private GameApplication gameApp = null;
     private MainWindow window = null;
+    private LoopScheduler scheduler = null;
+    private RenderProfiler profiler = null;     // Of the renderer, null while nothing is rendered
 
     private String windowTitle = "Mandas Java Tiled2D Engine";
 
@@ -24,15 +31,116 @@ public class Application {
     }
 
     public void createWindowAndRun() {
+        profiler = Renderer.getRenderer().getProfiler();
         window = new MainWindow(windowTitle, Renderer.getRenderer(), this);
         window.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         window.setVisible(true);
 
-        Thread updateThread = new Thread(new ApplicationUpdater(this));
+        scheduler = new LoopScheduler(Config.TickRate, Config.MaxFrameRate, Config.MaxTicksPerIteration,
+                new LoopScheduler.Callback() {
+                    @Override
+                    public void onTick(float timestep) {
+                        OnUpdate(timestep);
+                    }
+
+                    @Override
+                    public void onRender() {
+                        window.repaint();
+                    }
+                });
+        Thread updateThread = new Thread(scheduler, "ApplicationUpdater");
         updateThread.setDaemon(true);
         updateThread.start();
     }
 
+    /**
+     * Run the game without a window on the calling thread, e.g. for a dedicated server.
+     * @param tickRate Simulation ticks per second
+     */
+    public void runHeadless(int tickRate) {
+        scheduler = new LoopScheduler(tickRate, 0, Config.MaxTicksPerIteration,
+                new LoopScheduler.Callback() {
+                    @Override
+                    public void onTick(float timestep) {
+                        OnUpdate(timestep);
+                    }
+
+                    @Override
+                    public void onRender() {
+                    }
+                });
+        scheduler.run();
+    }
+
+    /**
+     * Run the game without a window on the calling thread, rendering the scene into an offscreen image.
+     * No AWT window or input hook is created, so this works with -Djava.awt.headless=true, e.g. on CI machines.
+     * Average time of every Renderer.Stage is logged when it stops.
+     * @param tickRate      Simulation ticks per second
+     * @param frameRate     Frames per second
+     * @param frameCount    Stop after this many frames, <= 0 to run until stop()
+     * @param frameDumper   Where frames go, null to only render them
+     */
+    public void runHeadless(int tickRate, int frameRate, long frameCount, FrameDumper frameDumper) {
+        if (frameRate <= 0) {
+            throw new IllegalArgumentException("frameRate must be positive!");
+        }
+        Renderer renderer = Renderer.getRenderer();
+        profiler = renderer.getProfiler();
+        Dimension size = renderer.getPreferredSize();
+        BufferedImage frame = new BufferedImage(size.width, size.height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D frameGraphics = frame.createGraphics();
+        Renderer.Stage[] stages = Renderer.Stage.values();
+        long[] stageNanos = new long[stages.length];
+        long[] frames = {0};
+
+        scheduler = new LoopScheduler(tickRate, frameRate, Config.MaxTicksPerIteration,
+                new LoopScheduler.Callback() {
+                    @Override
+                    public void onTick(float timestep) {
+                        OnUpdate(timestep);
+                    }
+
+                    @Override
+                    public void onRender() {
+                        OnRender();
+                        renderer.paint(frameGraphics);
+                        for (Renderer.Stage stage : stages) {
+                            stageNanos[stage.ordinal()] += renderer.getStageNanos(stage);
+                        }
+                        try {
+                            if (frameDumper != null) {
+                                frameDumper.dump(frame, frames[0]);
+                            }
+                        } catch (IOException e) {
+                            Log.mandas().error(Application.class.getName() + ": Cannot dump frame " + frames[0] + ": " + e.getMessage());
+                            stop();
+                        }
+                        frames[0]++;
+                        if (frameCount > 0 && frames[0] >= frameCount) {
+                            stop();
+                        }
+                    }
+                });
+        scheduler.run();
+        frameGraphics.dispose();
+
+        if (frames[0] > 0) {
+            StringBuilder builder = new StringBuilder("Rendered " + frames[0] + " frames, average us per frame:");
+            for (Renderer.Stage stage : stages) {
+                builder.append(' ').append(stage).append('=').append(stageNanos[stage.ordinal()] / frames[0] / 1000);
+            }
+            Log.mandas().info(builder.toString());
+            Log.mandas().info("Last frames: " + profiler.snapshot());
+        }
+    }
+
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.stop();
+        }
+    }
+
     /**
      * This function will be called when the window repaints.
      */
@@ -40,42 +148,24 @@ public class Application {
         if (gameApp == null) {
             throw new IllegalStateException("Please setGameApplication first!");
         }
+        long startTime = System.nanoTime();
         gameApp.OnRender();
+        if (profiler != null) {
+            profiler.gameRenderFinished(System.nanoTime() - startTime);
+        }
+        // Everything recorded for this frame is painted together
+        Renderer.getRenderer().getCommandBuffer().swap();
     }
 
     void OnUpdate(float timestep) {
         if (gameApp == null) {
             throw new IllegalStateException("Please setGameApplication first!");
         }
+        long startTime = System.nanoTime();
         gameApp.OnUpdate(timestep);
-        window.repaint();
-    }
-
-    private static class ApplicationUpdater implements Runnable {
-
-        private long oldTime = 0;
-        private final Application app;
-
-        public ApplicationUpdater(Application app) {
-            this.app = app;
-        }
-
-        @Override
-        public void run() {
-            while (true) {
-                if (oldTime == 0) {
-                    oldTime = System.currentTimeMillis();
-                }
-                else {
-                    long time = System.currentTimeMillis();
-                    if (time - oldTime >= (1000.0f / Config.MaxFrameRate)) {
-                        app.OnUpdate((time - oldTime) / 1000.0f);
-                        oldTime = time;
-                    }
-                }
-            }
+        if (profiler != null) {
+            profiler.tickFinished(System.nanoTime() - startTime);
         }
-
     }
     
 }
@@ -0,0 +1,111 @@
+package com.mandas.tiled2d.core;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Fixed timestep loop.
+ * The simulation always advances by exactly 1 / tickRate seconds per tick, an accumulator carries
+ * the remaining time to the next iteration. Rendering runs at its own rate (or not at all),
+ * and the thread parks until the next tick or frame is due instead of spinning.
+ */
+public class LoopScheduler implements Runnable {
+
+    public interface Callback {
+        /**
+         * @param timestep Fixed simulation step in seconds
+         */
+        void onTick(float timestep);
+
+        void onRender();
+    }
+
+    private final long tickNanos;
+    private final long renderNanos;     // <= 0 means never render
+    private final int maxTicksPerIteration;
+    private final Callback callback;
+
+    private volatile boolean running = true;
+    private volatile Thread thread = null;
+    private long ticks = 0;
+
+    /**
+     * @param tickRate Simulation ticks per second
+     * @param renderRate Frames per second, <= 0 for a headless loop
+     * @param maxTicksPerIteration Max ticks to catch up before rendering, the rest of a long stall is dropped
+     * @param callback What to do on every tick / frame
+     */
+    public LoopScheduler(int tickRate, int renderRate, int maxTicksPerIteration, Callback callback) {
+        if (tickRate <= 0) {
+            throw new IllegalArgumentException("tickRate must be positive!");
+        }
+        this.tickNanos = 1_000_000_000L / tickRate;
+        this.renderNanos = renderRate > 0 ? 1_000_000_000L / renderRate : 0;
+        this.maxTicksPerIteration = Math.max(1, maxTicksPerIteration);
+        this.callback = callback;
+    }
+
+    public float getTimestep() {
+        return tickNanos / 1e9f;
+    }
+
+    public long getTicks() {
+        return ticks;
+    }
+
+    public void stop() {
+        running = false;
+        Thread t = thread;
+        if (t != null) {
+            LockSupport.unpark(t);
+        }
+    }
+
+    @Override
+    public void run() {
+        thread = Thread.currentThread();
+        float timestep = getTimestep();
+        long accumulator = 0;
+        long lastTime = System.nanoTime();
+        long nextRender = lastTime;
+
+        while (running) {
+            long now = System.nanoTime();
+            accumulator += now - lastTime;
+            lastTime = now;
+
+            int ticksThisIteration = 0;
+            while (accumulator >= tickNanos && ticksThisIteration < maxTicksPerIteration) {
+                callback.onTick(timestep);
+                accumulator -= tickNanos;
+                ticks++;
+                ticksThisIteration++;
+            }
+            if (accumulator >= tickNanos) {
+                // Too far behind, drop the backlog instead of spiralling
+                accumulator %= tickNanos;
+            }
+
+            long nextWake = lastTime + (tickNanos - accumulator);
+            if (renderNanos > 0) {
+                now = System.nanoTime();
+                if (now - nextRender >= 0) {
+                    callback.onRender();
+                    nextRender += renderNanos;
+                    if (now - nextRender >= 0) {
+                        nextRender = now + renderNanos;     // Skip missed frames
+                    }
+                }
+                if (nextRender - nextWake < 0) {
+                    nextWake = nextRender;
+                }
+            }
+
+            long sleep = nextWake - System.nanoTime();
+            if (sleep > 0) {
+                LockSupport.parkNanos(this, sleep);
+            }
+        }
+        thread = null;
+    }
+
+}
@@ -0,0 +1,78 @@
+package com.mandas.tiled2d.renderer;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.*;
+
+/**
+ * Writes rendered frames somewhere, for running without a display.
+ * Use png() for a directory of numbered images, or rawRgba() for a stream of 4-byte RGBA pixels,
+ * row by row with no header, which tools like ffmpeg read with "-f rawvideo -pix_fmt rgba".
+ */
+public abstract class FrameDumper implements Closeable {
+
+    /**
+     * @param frame         The frame, only valid during this call
+     * @param frameIndex    0 for the first frame
+     */
+    public abstract void dump(BufferedImage frame, long frameIndex) throws IOException;
+
+    @Override
+    public void close() throws IOException {
+    }
+
+    /**
+     * Frames are written to directory as frame000000.png, frame000001.png, ...
+     */
+    public static FrameDumper png(File directory) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create directory " + directory + ".");
+        }
+        return new FrameDumper() {
+            @Override
+            public void dump(BufferedImage frame, long frameIndex) throws IOException {
+                File file = new File(directory, String.format("frame%06d.png", frameIndex));
+                if (!ImageIO.write(frame, "png", file)) {
+                    throw new IOException("No PNG writer for " + file + ".");
+                }
+            }
+        };
+    }
+
+    /**
+     * Frames are written one after another, closing the dumper closes output.
+     * @param output A file or a pipe, e.g. System.out
+     */
+    public static FrameDumper rawRgba(OutputStream output) {
+        return new FrameDumper() {
+            private final OutputStream stream = new BufferedOutputStream(output, 1 << 16);
+            private int[] pixels = new int[0];
+            private byte[] bytes = new byte[0];
+
+            @Override
+            public void dump(BufferedImage frame, long frameIndex) throws IOException {
+                int width = frame.getWidth(), height = frame.getHeight();
+                if (pixels.length != width * height) {
+                    pixels = new int[width * height];
+                    bytes = new byte[width * height * 4];
+                }
+                frame.getRGB(0, 0, width, height, pixels, 0, width);
+                for (int i = 0; i < pixels.length; i++) {
+                    int argb = pixels[i];
+                    bytes[i * 4] = (byte) (argb >>> 16);
+                    bytes[i * 4 + 1] = (byte) (argb >>> 8);
+                    bytes[i * 4 + 2] = (byte) argb;
+                    bytes[i * 4 + 3] = (byte) (argb >>> 24);
+                }
+                stream.write(bytes);
+                stream.flush();
+            }
+
+            @Override
+            public void close() throws IOException {
+                stream.close();
+            }
+        };
+    }
+
+}
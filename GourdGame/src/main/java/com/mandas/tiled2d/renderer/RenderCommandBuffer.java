@@ -0,0 +1,303 @@
+package com.mandas.tiled2d.renderer;
+
+import com.mandas.tiled2d.Config;
+import com.mandas.tiled2d.scene.CameraComponent;
+import com.mandas.tiled2d.scene.Entity;
+import com.mandas.tiled2d.scene.TileTextureRenderComponent;
+import com.mandas.tiled2d.scene.TransformComponent;
+import com.mandas.tiled2d.utils.FloatPair;
+import com.mandas.tiled2d.utils.Pair;
+import com.mandas.tiled2d.utils.TileBitSet;
+
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Draw commands recorded by the simulation and replayed by the Renderer when it paints.
+ * <p>
+ * Commands are recorded into a back frame, which swap() publishes at the end of a tick.
+ * The painting thread takes the published frame with one atomic exchange, so it never waits for the simulation.
+ * If the previous frame was not painted yet, the new frame is merged into it instead of being dropped,
+ * later commands replace earlier ones for the same tile, and a clear drops what it clears.
+ * Entities are recorded as immutable DrawCommands, so the painting thread never reads the scene.
+ * Recording is synchronized, so more than one thread may record; only the painting thread calls replay().
+ */
+public class RenderCommandBuffer {
+
+    private static final RenderLayer.Type[] LayerTypes = RenderLayer.Type.values();
+    private static final int LayerCount = LayerTypes.length;
+
+    /**
+     * A texture drawn at a position in tiles, which need not be a whole tile.
+     */
+    public static final class DrawCommand {
+        public final Texture texture;
+        public final double x, y;
+        public final RenderLayer.Type layer;     // Sprites or Overlay
+
+        public DrawCommand(Texture texture, double x, double y, RenderLayer.Type layer) {
+            this.texture = texture;
+            this.x = x;
+            this.y = y;
+            this.layer = layer;
+        }
+    }
+
+    /**
+     * Commands of one tick, in the order they are replayed.
+     */
+    private static final class Frame {
+        boolean clear = false;
+        // Key is (x + y * width) * LayerCount + layer ordinal, value is the texture or null
+        final LinkedHashMap<Integer, Texture> textures = new LinkedHashMap<>();
+        final TileBitSet dirtyTiles;
+        boolean clearScoreboard = false;
+        final ArrayList<ScoreboardCommand> scoreboardCommands = new ArrayList<>();
+        // Every entity of the scene, null if they were not recorded. Painted until the next entities are replayed.
+        List<DrawCommand> entities = null;
+        Camera camera = null;       // Of the recorded entities, null for the default camera
+        final ArrayList<DrawCommand> floatingTiles = new ArrayList<>();
+
+        Frame(int width, int height) {
+            dirtyTiles = new TileBitSet(width, height);
+        }
+
+        boolean isEmpty() {
+            return !clear && textures.isEmpty() && dirtyTiles.isEmpty() && !clearScoreboard && scoreboardCommands.isEmpty()
+                    && entities == null && floatingTiles.isEmpty();
+        }
+
+        void reset() {
+            clear = false;
+            textures.clear();
+            dirtyTiles.clear();
+            clearScoreboard = false;
+            scoreboardCommands.clear();
+            entities = null;
+            camera = null;
+            floatingTiles.clear();
+        }
+
+        /**
+         * Add the commands of a later frame.
+         */
+        void append(Frame later) {
+            if (later.clear) {
+                reset();
+                clear = true;
+            }
+            textures.putAll(later.textures);
+            dirtyTiles.or(later.dirtyTiles);
+            if (later.clearScoreboard) {
+                clearScoreboard = true;
+                scoreboardCommands.clear();
+            }
+            scoreboardCommands.addAll(later.scoreboardCommands);
+            if (later.entities != null) {
+                entities = later.entities;
+                camera = later.camera;
+            }
+            floatingTiles.addAll(later.floatingTiles);
+        }
+    }
+
+    private interface ScoreboardCommand {
+        void execute(Renderer renderer);
+    }
+
+    private final int width, height;
+    private Frame back;                                                   // Guarded by this
+    private final AtomicReference<Frame> front = new AtomicReference<>();   // Published, not painted yet
+    private final AtomicReference<Frame> spare = new AtomicReference<>();   // Painted, ready for reuse
+
+    /**
+     * @param width     Width of the map in tiles
+     * @param height    Height of the map in tiles
+     */
+    public RenderCommandBuffer(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.back = new Frame(width, height);
+    }
+
+    private void checkPosition(int x, int y) {
+        if (x < 0 || x >= width)
+            throw new IllegalArgumentException("x " + x + " must be within range [0," + width + ")");
+        if (y < 0 || y >= height)
+            throw new IllegalArgumentException("y " + y + " must be within range [0," + height + ")");
+    }
+
+    // ---------------------- Recording ----------------------
+    /**
+     * Same as Renderer.setTexture(layerType, texture, x, y) when replayed.
+     */
+    public void setTexture(RenderLayer.Type layerType, Texture texture, int x, int y) {
+        if (!layerType.isTileLayer()) {
+            throw new IllegalArgumentException(layerType + " is not a tile layer.");
+        }
+        checkPosition(x, y);
+        synchronized (this) {
+            back.textures.put((x + y * width) * LayerCount + layerType.ordinal(), texture);
+        }
+    }
+
+    /**
+     * Same as Renderer.markDirty(tiles) when replayed, tiles is copied.
+     */
+    public void markDirty(TileBitSet tiles) {
+        synchronized (this) {
+            back.dirtyTiles.or(tiles);
+        }
+    }
+
+    /**
+     * Same as Renderer.clear() when replayed.
+     */
+    public void clear() {
+        synchronized (this) {
+            back.reset();
+            back.clear = true;
+        }
+    }
+
+    public void clearScoreboard() {
+        synchronized (this) {
+            back.clearScoreboard = true;
+            back.scoreboardCommands.clear();
+        }
+    }
+
+    public void drawScoreboardString(int startX, int startY, String string) {
+        drawScoreboardString(startX, startY, string, Config.ScoreboardTextFont);
+    }
+
+    public void drawScoreboardString(int startX, int startY, String string, Font font) {
+        synchronized (this) {
+            back.scoreboardCommands.add(renderer -> renderer.drawScoreboardString(startX, startY, string, font));
+        }
+    }
+
+    public void drawScoreboardTile(int startX, int startY, Texture texture) {
+        synchronized (this) {
+            back.scoreboardCommands.add(renderer -> renderer.drawScoreboardTile(startX, startY, texture));
+        }
+    }
+
+    /**
+     * Record where every entity is drawn now, replacing the entities recorded before.
+     * Textures of TileTextureRenderComponents are drawn at their position plus the TransformComponent's translation,
+     * the camera of the last entity with a rendering CameraComponent is used instead of the default camera.
+     * Must be called while nobody changes the entities, e.g. holding the scene's lock.
+     */
+    public void drawEntities(Collection<? extends Entity> entities) {
+        ArrayList<DrawCommand> commands = new ArrayList<>();
+        Camera camera = null;
+        for (Entity entity : entities) {
+            TransformComponent transComponent = entity.getTransformComponent();
+            double translationX = 0, translationY = 0;
+            if (transComponent != null) {
+                translationX = transComponent.getTranslateX();
+                translationY = transComponent.getTranslateY();
+            }
+
+            TileTextureRenderComponent ttrComponent = entity.getTileTextureRenderComponent();
+            if (ttrComponent != null) {
+                for (Pair<FloatPair, Texture> positionAndTex : ttrComponent.getPositionsAndTextures()) {
+                    commands.add(new DrawCommand(positionAndTex.second, positionAndTex.first.first + translationX,
+                            positionAndTex.first.second + translationY, RenderLayer.Type.Sprites));
+                }
+            }
+
+            CameraComponent cameraComponent = entity.getCameraComponent();
+            if (cameraComponent != null && cameraComponent.isRenderingCamera()) {
+                camera = copyCamera(cameraComponent.getCamera());
+            }
+        }
+        List<DrawCommand> recorded = Collections.unmodifiableList(commands);
+        synchronized (this) {
+            back.entities = recorded;
+            back.camera = camera;
+        }
+    }
+
+    private static Camera copyCamera(Camera camera) {
+        Camera copy = new Camera(camera.getWidthInTiles(), camera.getHeightInTiles());
+        copy.setTranslation(camera.getTranslateX(), camera.getTranslateY());
+        copy.setScale(camera.getScaleX(), camera.getScaleY());
+        return copy;
+    }
+
+    /**
+     * Same as Renderer.addFloatingTile(position, texture) when replayed, painted in one frame only.
+     */
+    public void addFloatingTile(float x, float y, Texture texture) {
+        synchronized (this) {
+            back.floatingTiles.add(new DrawCommand(texture, x, y, RenderLayer.Type.Overlay));
+        }
+    }
+
+    /**
+     * Publish the commands recorded so far, called at the end of a tick.
+     */
+    public void swap() {
+        synchronized (this) {
+            if (back.isEmpty()) {
+                return;
+            }
+            Frame unpainted = front.getAndSet(null);
+            if (unpainted != null) {
+                // Not painted yet, paint both at once
+                unpainted.append(back);
+                back.reset();
+                front.set(unpainted);
+                return;
+            }
+            front.set(back);
+            Frame reused = spare.getAndSet(null);
+            back = reused != null ? reused : new Frame(width, height);
+        }
+    }
+
+    // ---------------------- Replaying ----------------------
+    /**
+     * Apply the published commands to renderer, does nothing if nothing was published since the last call.
+     * Called by the painting thread, never blocks.
+     */
+    public void replay(Renderer renderer) {
+        Frame frame = front.getAndSet(null);
+        if (frame == null) {
+            return;
+        }
+        if (frame.clear) {
+            renderer.clear();
+        }
+        for (Map.Entry<Integer, Texture> entry : frame.textures.entrySet()) {
+            int key = entry.getKey(), index = key / LayerCount;
+            renderer.setTexture(LayerTypes[key % LayerCount], entry.getValue(), index % width, index / width);
+        }
+        if (!frame.dirtyTiles.isEmpty()) {
+            renderer.markDirty(frame.dirtyTiles);
+        }
+        if (frame.clearScoreboard) {
+            renderer.clearScoreboard();
+        }
+        for (ScoreboardCommand command : frame.scoreboardCommands) {
+            command.execute(renderer);
+        }
+        if (frame.entities != null) {
+            renderer.setEntities(frame.entities, frame.camera);
+        }
+        for (DrawCommand command : frame.floatingTiles) {
+            renderer.addFloatingTile(new FloatPair((float) command.x, (float) command.y), command.texture);
+        }
+        frame.reset();
+        spare.set(frame);
+    }
+
+}
@@ -0,0 +1,221 @@
+package com.mandas.tiled2d.renderer;
+
+import com.mandas.tiled2d.utils.TileBitSet;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+
+/**
+ * A grid of textures, one per tile, painted by the Renderer in the order of Type.
+ * Only changed tiles are repainted, so a layer costs nothing while it does not change.
+ */
+public class RenderLayer {
+
+    /**
+     * Layers in painting order. Sprites (the entities of the scene) and Overlay (the floating tiles)
+     * are not tile grids, they are painted by the Renderer directly.
+     */
+    public enum Type {
+        Terrain, Things, Sprites, Overlay;
+
+        public boolean isTileLayer() {
+            return this == Terrain || this == Things;
+        }
+    }
+
+    private final Type type;
+    private final int widthInTiles, heightInTiles;
+    private final int tileWidth, tileHeight;
+    private final Texture[] textures;          // Indexed by x + y * widthInTiles, null means nothing
+    private final TileBitSet changedTiles;
+
+    // Pre-composited image of the tiles in a window of the layer, null if this layer is not cached.
+    // The window scrolls with the camera, so the image does not grow with the map.
+    private final BufferedImage cachedImage;
+    private final Graphics2D cachedGraphics;
+    private int cacheX = 0, cacheY = 0;                // Left-top tile of the window
+    private final int cacheWidthInTiles, cacheHeightInTiles;
+    private final TileBitSet staleCacheTiles;         // Indexed by the position inside the window
+
+    public RenderLayer(Type type, int widthInTiles, int heightInTiles, int tileWidth, int tileHeight) {
+        this(type, widthInTiles, heightInTiles, tileWidth, tileHeight, 0, 0);
+    }
+
+    /**
+     * A layer which keeps a pre-composited image of a window of its tiles, for layers which seldom change.
+     * @param cacheWidthInTiles     Width of the window, 0 to keep no image
+     * @param cacheHeightInTiles    Height of the window, 0 to keep no image
+     */
+    public RenderLayer(Type type, int widthInTiles, int heightInTiles, int tileWidth, int tileHeight,
+                       int cacheWidthInTiles, int cacheHeightInTiles) {
+        if (!type.isTileLayer()) {
+            throw new IllegalArgumentException(type + " is not a tile layer.");
+        }
+        this.type = type;
+        this.widthInTiles = widthInTiles;
+        this.heightInTiles = heightInTiles;
+        this.tileWidth = tileWidth;
+        this.tileHeight = tileHeight;
+        this.textures = new Texture[widthInTiles * heightInTiles];
+        this.changedTiles = new TileBitSet(widthInTiles, heightInTiles);
+        if (cacheWidthInTiles > 0 && cacheHeightInTiles > 0) {
+            this.cacheWidthInTiles = Math.min(cacheWidthInTiles, widthInTiles);
+            this.cacheHeightInTiles = Math.min(cacheHeightInTiles, heightInTiles);
+            cachedImage = new BufferedImage(tileWidth * this.cacheWidthInTiles, tileHeight * this.cacheHeightInTiles,
+                    BufferedImage.TYPE_INT_ARGB);
+            cachedGraphics = cachedImage.createGraphics();
+            // Pixels are replaced, so copying and clearing keep the alpha of the textures
+            cachedGraphics.setComposite(AlphaComposite.Src);
+            cachedGraphics.setBackground(new Color(0, 0, 0, 0));
+            staleCacheTiles = new TileBitSet(this.cacheWidthInTiles, this.cacheHeightInTiles);
+        } else {
+            this.cacheWidthInTiles = 0;
+            this.cacheHeightInTiles = 0;
+            cachedImage = null;
+            cachedGraphics = null;
+            staleCacheTiles = null;
+        }
+        // Nothing is painted yet
+        changedTiles.set(0, 0, widthInTiles - 1, heightInTiles - 1);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public boolean isCached() {
+        return cachedImage != null;
+    }
+
+    public Texture getTexture(int x, int y) {
+        return textures[x + y * widthInTiles];
+    }
+
+    /**
+     * The tile is marked as changed only if the texture is a different one.
+     * @param texture Texture of the tile, null to leave the tile empty in this layer
+     */
+    public void setTexture(Texture texture, int x, int y) {
+        int index = x + y * widthInTiles;
+        if (textures[index] != texture) {
+            textures[index] = texture;
+            changedTiles.set(x, y);
+        }
+    }
+
+    /**
+     * Mark a tile as changed even though its texture is the same object, e.g. the image of the texture was replaced.
+     */
+    public void invalidate(int x, int y) {
+        changedTiles.set(x, y);
+    }
+
+    public void invalidateAll() {
+        changedTiles.set(0, 0, widthInTiles - 1, heightInTiles - 1);
+    }
+
+    public TileBitSet getChangedTiles() {
+        return changedTiles;
+    }
+
+    /**
+     * Empty all tiles without marking them as changed, the owner repaints what it needs.
+     */
+    public void clear() {
+        Arrays.fill(textures, null);
+        changedTiles.clear();
+        if (cachedGraphics != null) {
+            cachedGraphics.clearRect(0, 0, cachedImage.getWidth(), cachedImage.getHeight());
+            staleCacheTiles.clear();
+        }
+    }
+
+    private boolean insideCache(int x, int y) {
+        return x >= cacheX && x < cacheX + cacheWidthInTiles && y >= cacheY && y < cacheY + cacheHeightInTiles;
+    }
+
+    /**
+     * Move the window of the pre-composited image so that (x, y) is its left-top tile,
+     * does nothing if this layer is not cached. The overlapping part is kept, the rest is drawn by updateCache().
+     */
+    void moveCache(int x, int y) {
+        if (cachedGraphics == null || (x == cacheX && y == cacheY)) {
+            return;
+        }
+        int dx = cacheX - x, dy = cacheY - y;
+        cacheX = x;
+        cacheY = y;
+        if (Math.abs(dx) >= cacheWidthInTiles || Math.abs(dy) >= cacheHeightInTiles) {
+            staleCacheTiles.set(0, 0, cacheWidthInTiles - 1, cacheHeightInTiles - 1);
+            return;
+        }
+        cachedGraphics.copyArea(0, 0, cachedImage.getWidth(), cachedImage.getHeight(), dx * tileWidth, dy * tileHeight);
+        if (dx > 0) {
+            staleCacheTiles.set(0, 0, dx - 1, cacheHeightInTiles - 1);
+        } else if (dx < 0) {
+            staleCacheTiles.set(cacheWidthInTiles + dx, 0, cacheWidthInTiles - 1, cacheHeightInTiles - 1);
+        }
+        if (dy > 0) {
+            staleCacheTiles.set(0, 0, cacheWidthInTiles - 1, dy - 1);
+        } else if (dy < 0) {
+            staleCacheTiles.set(0, cacheHeightInTiles + dy, cacheWidthInTiles - 1, cacheHeightInTiles - 1);
+        }
+    }
+
+    /**
+     * Redraw changed tiles inside the window into the pre-composited image, does nothing if this layer is not cached.
+     * Changed tiles are not cleared, the Renderer still needs them to repaint.
+     */
+    void updateCache() {
+        if (cachedGraphics == null) {
+            return;
+        }
+        for (int index = changedTiles.nextSetBit(0); index >= 0; index = changedTiles.nextSetBit(index + 1)) {
+            staleCacheTiles.set(index % widthInTiles - cacheX, index / widthInTiles - cacheY);
+        }
+        for (int index = staleCacheTiles.nextSetBit(0); index >= 0; index = staleCacheTiles.nextSetBit(index + 1)) {
+            int cacheTileX = index % cacheWidthInTiles, cacheTileY = index / cacheWidthInTiles;
+            Texture texture = textures[(cacheX + cacheTileX) + (cacheY + cacheTileY) * widthInTiles];
+            if (texture == null) {
+                cachedGraphics.clearRect(cacheTileX * tileWidth, cacheTileY * tileHeight, tileWidth, tileHeight);
+            } else {
+                texture.draw(cachedGraphics, cacheTileX * tileWidth, cacheTileY * tileHeight, tileWidth, tileHeight);
+            }
+        }
+        staleCacheTiles.clear();
+    }
+
+    /**
+     * Paint tile (x, y) of this layer at the same position in g.
+     * @return Whether anything is painted
+     */
+    boolean paintTile(Graphics2D g, int x, int y) {
+        Texture texture = textures[x + y * widthInTiles];
+        if (texture == null) {
+            return false;
+        }
+        int left = x * tileWidth, top = y * tileHeight;
+        if (cachedImage != null && insideCache(x, y)) {
+            int cacheLeft = (x - cacheX) * tileWidth, cacheTop = (y - cacheY) * tileHeight;
+            g.drawImage(cachedImage, left, top, left + tileWidth, top + tileHeight,
+                    cacheLeft, cacheTop, cacheLeft + tileWidth, cacheTop + tileHeight, null);
+        } else {
+            texture.draw(g, left, top, tileWidth, tileHeight);
+        }
+        return true;
+    }
+
+    /**
+     * Paint the whole window of the pre-composited image at the same position in g with one copy.
+     * @return Whether this layer is cached
+     */
+    boolean paintCache(Graphics2D g) {
+        if (cachedImage == null) {
+            return false;
+        }
+        g.drawImage(cachedImage, cacheX * tileWidth, cacheY * tileHeight, null);
+        return true;
+    }
+
+}
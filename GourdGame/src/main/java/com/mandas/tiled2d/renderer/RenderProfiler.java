@@ -0,0 +1,150 @@
+package com.mandas.tiled2d.renderer;
+
+import java.util.Arrays;
+
+/**
+ * Timings and counters of recent frames, recorded by the Renderer and the Application.
+ * Recording costs a few array writes, percentiles are only computed by snapshot().
+ * Thread safe.
+ */
+public class RenderProfiler {
+
+    /**
+     * Metrics at one moment, immutable.
+     */
+    public static class Snapshot {
+        public final long frames;                   // Frames painted since the start
+        public final double fps;                    // Frames painted in the last second
+        public final long p50FrameNanos, p99FrameNanos, maxFrameNanos;  // Of paint() over recent frames
+        private final long[] stageNanos;            // Of the last frame, by Renderer.Stage
+        public final int repaintedTiles;            // Tiles painted into the offscreen window by the last frame
+        public final int blittedTiles;              // Dirty tiles copied to the camera by the last frame, -1 for all
+        public final long imagesAllocated;          // Scaled images created during the last frame
+        public final long tickNanos;                // Of the last simulation tick
+        public final long gameRenderNanos;          // Of the last GameApplication.OnRender
+
+        Snapshot(RenderProfiler profiler, long[] sortedFrameNanos) {
+            frames = profiler.frames;
+            fps = profiler.fps();
+            int count = sortedFrameNanos.length;
+            p50FrameNanos = count == 0 ? 0 : sortedFrameNanos[(count - 1) / 2];
+            p99FrameNanos = count == 0 ? 0 : sortedFrameNanos[(int) Math.ceil(count * 0.99) - 1];
+            maxFrameNanos = count == 0 ? 0 : sortedFrameNanos[count - 1];
+            stageNanos = profiler.stageNanos.clone();
+            repaintedTiles = profiler.repaintedTiles;
+            blittedTiles = profiler.blittedTiles;
+            imagesAllocated = profiler.imagesAllocated;
+            tickNanos = profiler.tickNanos;
+            gameRenderNanos = profiler.gameRenderNanos;
+        }
+
+        public long getStageNanos(Renderer.Stage stage) {
+            return stageNanos[stage.ordinal()];
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder();
+            builder.append(String.format("fps=%.1f p50=%.2fms p99=%.2fms max=%.2fms",
+                    fps, p50FrameNanos / 1e6, p99FrameNanos / 1e6, maxFrameNanos / 1e6));
+            for (Renderer.Stage stage : Renderer.Stage.values()) {
+                builder.append(String.format(" %s=%.2fms", stage, getStageNanos(stage) / 1e6));
+            }
+            builder.append(" repainted=").append(repaintedTiles).append(" blitted=").append(blittedTiles)
+                    .append(" images=").append(imagesAllocated)
+                    .append(String.format(" tick=%.2fms gameRender=%.2fms", tickNanos / 1e6, gameRenderNanos / 1e6));
+            return builder.toString();
+        }
+    }
+
+    private final long[] frameNanos;        // Ring of recent paint() durations
+    private final long[] frameStarts;       // Ring of recent paint() start times, for fps
+    private long frames = 0;
+    private final long[] stageNanos = new long[Renderer.Stage.values().length];
+    private int repaintedTiles = 0, blittedTiles = 0;
+    private long imagesAllocated = 0, scaledImagesAtStart = 0;
+    private long tickNanos = 0, gameRenderNanos = 0;
+
+    /**
+     * @param historyFrames How many recent frames percentiles and fps are computed from
+     */
+    public RenderProfiler(int historyFrames) {
+        if (historyFrames < 1) {
+            throw new IllegalArgumentException("historyFrames " + historyFrames + " must be positive.");
+        }
+        frameNanos = new long[historyFrames];
+        frameStarts = new long[historyFrames];
+    }
+
+    // ---------------------- Recording ----------------------
+    synchronized void frameStarted(long startNanos) {
+        frameStarts[(int) (frames % frameStarts.length)] = startNanos;
+        scaledImagesAtStart = ScaledImageCache.getSharedCache().getMisses();
+        repaintedTiles = 0;
+        blittedTiles = 0;
+    }
+
+    synchronized void stageFinished(Renderer.Stage stage, long nanos) {
+        stageNanos[stage.ordinal()] = nanos;
+    }
+
+    synchronized void tilesRepainted(int count) {
+        repaintedTiles += count;
+    }
+
+    /**
+     * @param count -1 if the whole window was copied
+     */
+    synchronized void tilesBlitted(int count) {
+        blittedTiles = count;
+    }
+
+    synchronized void frameFinished(long startNanos, long endNanos) {
+        frameNanos[(int) (frames % frameNanos.length)] = endNanos - startNanos;
+        imagesAllocated = ScaledImageCache.getSharedCache().getMisses() - scaledImagesAtStart;
+        frames++;
+    }
+
+    public synchronized void tickFinished(long nanos) {
+        tickNanos = nanos;
+    }
+
+    public synchronized void gameRenderFinished(long nanos) {
+        gameRenderNanos = nanos;
+    }
+
+    // ---------------------- Reading ----------------------
+    public synchronized long getStageNanos(Renderer.Stage stage) {
+        return stageNanos[stage.ordinal()];
+    }
+
+    public synchronized long getFrames() {
+        return frames;
+    }
+
+    private double fps() {
+        int count = (int) Math.min(frames, frameStarts.length);
+        if (count < 2) {
+            return 0;
+        }
+        long last = frameStarts[(int) ((frames - 1) % frameStarts.length)];
+        int inLastSecond = 1;
+        long first = last;
+        for (int i = 2; i <= count; i++) {
+            long start = frameStarts[(int) ((frames - i) % frameStarts.length)];
+            if (last - start > 1_000_000_000L) {
+                break;
+            }
+            first = start;
+            inLastSecond++;
+        }
+        return first == last ? 0 : (inLastSecond - 1) * 1e9 / (last - first);
+    }
+
+    public synchronized Snapshot snapshot() {
+        long[] sorted = Arrays.copyOf(frameNanos, (int) Math.min(frames, frameNanos.length));
+        Arrays.sort(sorted);
+        return new Snapshot(this, sorted);
+    }
+
+}
@@ -1,27 +1,44 @@
 package com.mandas.tiled2d.renderer;
 
 import com.mandas.tiled2d.Config;
-import com.mandas.tiled2d.scene.*;
 import com.mandas.tiled2d.utils.FloatPair;
 import com.mandas.tiled2d.utils.IntPair;
 import com.mandas.tiled2d.utils.Pair;
+import com.mandas.tiled2d.utils.TileBitSet;
 
 import java.awt.*;
+import java.awt.geom.AffineTransform;
 import java.awt.image.BufferedImage;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Set;
-import java.util.TreeSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 import javax.swing.JPanel;
 
 /**
  * 2D Renderer for the game.
+ *
+ * The renderer belongs to the painting thread, it takes no locks. Other threads record into getCommandBuffer(),
+ * which paint() replays, and the entities of the scene are painted from what was recorded last.
  * 
  * @author Ma Yingshuo
  */
 public class Renderer extends JPanel {
 
+    /**
+     * Stages of paint(), in order, see getProfiler().
+     */
+    public enum Stage {
+        Repaint,            // Apply commands, move the window, collect changed tiles, update pre-composited layers
+        Tiles,              // Paint tiles of the tile layers
+        Scene,              // Paint entities
+        FloatingTiles,
+        Camera              // Copy to the camera back-buffer and the target
+    }
+
     private static Renderer globalRenderer = null;
     /**
      * Initialize the rendering configuration
@@ -34,9 +51,9 @@ public class Renderer extends JPanel {
      * @param emptyTextureColor If there are unset tiles in the map, set to this pure color.
      */
     public static void Init(int widthInTiles, int heightInTiles, int tileWidth, int tileHeight,
-                            int scoreboardWidth, Color emptyTextureColor, Scene scene, Camera defaultCamera) {
+                            int scoreboardWidth, Color emptyTextureColor, Camera defaultCamera) {
         globalRenderer = new Renderer(widthInTiles, heightInTiles, tileWidth, tileHeight,
-                scoreboardWidth, Texture.getPureColorTexture(tileWidth, tileHeight, emptyTextureColor), scene, defaultCamera);
+                scoreboardWidth, Texture.getPureColorTexture(tileWidth, tileHeight, emptyTextureColor), defaultCamera);
         globalRenderer.Init();
     }
     /**
@@ -50,9 +67,9 @@ public class Renderer extends JPanel {
      * @param emptyTexture If there are unset tiles in the map, set to this texture.
      */
     public static void Init(int widthInTiles, int heightInTiles, int tileWidth, int tileHeight,
-                            int scoreboardWidth, Texture emptyTexture, Scene scene, Camera defaultCamera) {
+                            int scoreboardWidth, Texture emptyTexture, Camera defaultCamera) {
         globalRenderer = new Renderer(widthInTiles, heightInTiles, tileWidth, tileHeight,
-                scoreboardWidth, emptyTexture, scene, defaultCamera);
+                scoreboardWidth, emptyTexture, defaultCamera);
         globalRenderer.Init();
     }
     public static Renderer getRenderer() {
@@ -68,21 +85,50 @@ public class Renderer extends JPanel {
     private int renderWidthInTiles, renderHeightInTiles;
     private int tileWidth, tileHeight;
 
-    private Texture[][] tiles;
-    private Texture[][] oldTiles;
+    // offscreenBuffer only holds a window of the map around the camera, its left-top tile is (windowX, windowY).
+    // offscreenGraphics is translated, so everything is drawn with map pixel positions.
+    private int windowX = 0, windowY = 0;
+    private int windowWidthInTiles, windowHeightInTiles;
+    private boolean windowValid = false;
+
+    // Tile layers in painting order, a tile empty in all of them shows emptyTexture
+    private RenderLayer terrainLayer, thingsLayer;
+    private RenderLayer[] tileLayers;
     private Texture emptyTexture;
     private int scoreboardWidth;
-    private Scene scene;
     private Camera defaultCamera;
     private Camera renderingCamera = null;
+    // Entities recorded by the simulation and their camera, null for defaultCamera
+    private List<RenderCommandBuffer.DrawCommand> entities = Collections.emptyList();
+    private Camera entitiesCamera = null;
+
+    // Camera back-buffer, kept between frames. Only tiles drawn since the last frame are copied into it
+    // unless the camera moved.
+    private BufferedImage cameraBuffer;
+    private Graphics2D cameraGraphics;
+    private final AffineTransform cameraTransform = new AffineTransform();
+    private boolean cameraBufferValid = false;
+    private int cameraTranslateX, cameraTranslateY;
+    private double cameraScaleX, cameraScaleY;
+    private TileBitSet dirtyTiles;      // Tiles drawn in offscreenBuffer since the last frame
 
     // Before every rendering, set this variable to clear tiles inside.
-    private Set<IntPair> repaintTilePositions;
+    private TileBitSet repaintTiles;
+    // Paints tiles in horizontal strips of the window when not null. Fewer tiles than
+    // MinParallelTiles are painted on the calling thread, as the threads would cost more than they save.
+    private ForkJoinPool rasterizationPool = null;
+    private static final int MinParallelTiles = 256;
     // Additional things to render
     private ArrayList<Pair<FloatPair, Texture>> flotingTiles;
+    // Commands from the simulation, replayed at the start of paint()
+    private RenderCommandBuffer commandBuffer;
+    // Timings and counters of recent frames, drawn over the scoreboard if profilerOverlay
+    private final RenderProfiler profiler = new RenderProfiler(Config.ProfilerHistoryFrames);
+    private boolean profilerOverlay = Config.ShowProfilerOverlay;
+    private static final Font ProfilerFont = new Font(Font.MONOSPACED, Font.PLAIN, 12);
 
     Renderer(int mapWidthInTiles, int mapHeightInTiles, int tileWidth, int tileHeight, int scoreboardWidth,
-             Texture emptyTexture, Scene scene, Camera defaultCamera) {
+             Texture emptyTexture, Camera defaultCamera) {
         super();
         if (emptyTexture == null) {
             throw new IllegalArgumentException("emptyTexture cannot be null!");
@@ -100,7 +146,6 @@ public class Renderer extends JPanel {
         this.tileHeight = tileHeight;
         this.emptyTexture = emptyTexture;
         this.scoreboardWidth = scoreboardWidth;
-        this.scene = scene;
         this.defaultCamera = defaultCamera;
         this.renderWidthInTiles = (int) defaultCamera.getWidthInTiles();
         this.renderHeightInTiles = (int) defaultCamera.getHeightInTiles();
@@ -109,28 +154,87 @@ public class Renderer extends JPanel {
                 tileHeight * (int)(defaultCamera.getHeightInTiles()));
         setPreferredSize(panelSize);
         
-        offscreenBuffer = new BufferedImage(tileWidth * mapWidthInTiles, tileHeight * mapHeightInTiles, BufferedImage.TYPE_INT_ARGB);
+        // The camera may show a part of one more tile at each side
+        windowWidthInTiles = Math.min(renderWidthInTiles + 1, mapWidthInTiles);
+        windowHeightInTiles = Math.min(renderHeightInTiles + 1, mapHeightInTiles);
+        offscreenBuffer = new BufferedImage(tileWidth * windowWidthInTiles, tileHeight * windowHeightInTiles, BufferedImage.TYPE_INT_ARGB);
         offscreenGraphics = offscreenBuffer.createGraphics();
         scoreboardBuffer = new BufferedImage(scoreboardWidth, tileHeight * (int)(defaultCamera.getHeightInTiles()), BufferedImage.TYPE_INT_ARGB);
         scoreboardGraphics = scoreboardBuffer.createGraphics();
-
-        tiles = new Texture[mapWidthInTiles][mapHeightInTiles];
-        oldTiles = new Texture[mapWidthInTiles][mapHeightInTiles];
-
-        repaintTilePositions = new TreeSet<>();
+        cameraBuffer = new BufferedImage(Math.max(tileWidth * renderWidthInTiles, 1), Math.max(tileHeight * renderHeightInTiles, 1),
+                BufferedImage.TYPE_INT_ARGB);
+        cameraGraphics = cameraBuffer.createGraphics();
+        dirtyTiles = new TileBitSet(mapWidthInTiles, mapHeightInTiles);
+
+        // Terrain seldom changes, so it is kept pre-composited
+        terrainLayer = new RenderLayer(RenderLayer.Type.Terrain, mapWidthInTiles, mapHeightInTiles, tileWidth, tileHeight,
+                windowWidthInTiles, windowHeightInTiles);
+        thingsLayer = new RenderLayer(RenderLayer.Type.Things, mapWidthInTiles, mapHeightInTiles, tileWidth, tileHeight);
+        tileLayers = new RenderLayer[] {terrainLayer, thingsLayer};
+
+        repaintTiles = new TileBitSet(mapWidthInTiles, mapHeightInTiles);
         flotingTiles = new ArrayList<>();
+        commandBuffer = new RenderCommandBuffer(mapWidthInTiles, mapHeightInTiles);
+        setParallelRasterization(Config.ParallelRasterization);
 
         Init();
     }
 
     private void Init() {
-        synchronized (this) {
-            // Set Clear Color First
-            offscreenGraphics.setColor(Config.DefaultBackgroundColor);
-            offscreenGraphics.fillRect(0, 0, mapWidthInTiles * tileWidth + scoreboardWidth, mapHeightInTiles * tileHeight);
+        // Set Clear Color First
+        fillWindow();
+        cameraBufferValid = false;
+    }
+
+    /**
+     * Paint tiles in horizontal strips on Config.RasterizationThreads threads, or all on the painting thread.
+     * Either way the result is the same.
+     */
+    public void setParallelRasterization(boolean parallel) {
+        if (parallel == (rasterizationPool != null)) {
+            return;
+        }
+        if (parallel) {
+            rasterizationPool = new ForkJoinPool(Math.max(Config.RasterizationThreads, 1));
+        } else {
+            rasterizationPool.shutdown();
+            rasterizationPool = null;
         }
     }
 
+    public boolean isParallelRasterization() {
+        return rasterizationPool != null;
+    }
+
+    /**
+     * Threads other than the painting thread record here instead of calling the setters.
+     */
+    public RenderCommandBuffer getCommandBuffer() {
+        return commandBuffer;
+    }
+
+    /**
+     * @return Nanoseconds the last paint() spent in stage
+     */
+    public long getStageNanos(Stage stage) {
+        return profiler.getStageNanos(stage);
+    }
+
+    public RenderProfiler getProfiler() {
+        return profiler;
+    }
+
+    /**
+     * Draw the metrics of getProfiler() over the scoreboard area, or over the left-top of the camera without a scoreboard.
+     */
+    public void setProfilerOverlay(boolean profilerOverlay) {
+        this.profilerOverlay = profilerOverlay;
+    }
+
+    public boolean isProfilerOverlay() {
+        return profilerOverlay;
+    }
+
     public Camera getDefaultCamera() {
         return defaultCamera;
     }
@@ -144,36 +248,58 @@ public class Renderer extends JPanel {
      *
      */
     public void clear() {
-        synchronized (this) {
-            for (int i = 0; i < mapWidthInTiles; i++) {
-                for (int j = 0; j < mapHeightInTiles; j++) {
-                    tiles[i][j] = emptyTexture;
-                    oldTiles[i][j] = emptyTexture;
-                }
-            }
-            repaintTilePositions.clear();
-            flotingTiles.clear();
-            offscreenGraphics.fillRect(0, 0, tileWidth * mapWidthInTiles + scoreboardWidth, tileHeight * mapHeightInTiles);
+        for (RenderLayer layer : tileLayers) {
+            layer.clear();
         }
+        repaintTiles.clear();
+        flotingTiles.clear();
+        entities = Collections.emptyList();
+        entitiesCamera = null;
+        fillWindow();
+        cameraBufferValid = false;
     }
 
     /**
-     * Write a tile to the specified position. This updates the cursor's
-     * position.
+     * Write a tile to the specified position of the things layer.
      *
      * @param texture   the tile to write
      * @param x         the distance from the left to begin writing from
      * @param y         the distance from the top to begin writing from
      */
     public void setTexture(Texture texture, int x, int y) {
-        synchronized (this) {
-            if (x < 0 || x >= mapWidthInTiles)
-                throw new IllegalArgumentException("x " + x + " must be within range [0," + mapWidthInTiles + ")");
+        setTexture(RenderLayer.Type.Things, texture, x, y);
+    }
+
+    /**
+     * Write a tile to the specified position of a tile layer.
+     * Only tiles whose texture changes are repainted.
+     *
+     * @param layerType Terrain or Things
+     * @param texture   the tile to write, null to leave this layer empty here
+     * @param x         the distance from the left to begin writing from
+     * @param y         the distance from the top to begin writing from
+     */
+    public void setTexture(RenderLayer.Type layerType, Texture texture, int x, int y) {
+        if (x < 0 || x >= mapWidthInTiles)
+            throw new IllegalArgumentException("x " + x + " must be within range [0," + mapWidthInTiles + ")");
 
-            if (y < 0 || y >= mapHeightInTiles)
-                throw new IllegalArgumentException("y " + y + " must be within range [0," + mapHeightInTiles + ")");
+        if (y < 0 || y >= mapHeightInTiles)
+            throw new IllegalArgumentException("y " + y + " must be within range [0," + mapHeightInTiles + ")");
 
-            tiles[x][y] = texture;
+        getLayer(layerType).setTexture(texture, x, y);
+    }
+
+    /**
+     * @param layerType Terrain or Things
+     */
+    public RenderLayer getLayer(RenderLayer.Type layerType) {
+        switch (layerType) {
+            case Terrain:
+                return terrainLayer;
+            case Things:
+                return thingsLayer;
+            default:
+                throw new IllegalArgumentException(layerType + " is not a tile layer.");
         }
     }
 
@@ -182,11 +308,33 @@ public class Renderer extends JPanel {
      * @param repaintPositions Positions of tiles to repaint
      */
     public void addRepaintTilePositions(Collection<IntPair> repaintPositions) {
-        synchronized (this) {
-            this.repaintTilePositions.addAll(repaintPositions);
+        for (IntPair position : repaintPositions) {
+            repaintTiles.set(position.first, position.second);
         }
     }
 
+    /**
+     * Set a tile to be repainted next time. Positions outside the map are ignored.
+     */
+    public void markDirty(int x, int y) {
+        repaintTiles.set(x, y);
+    }
+
+    /**
+     * Set tiles in [left, right] x [top, bottom] to be repainted next time, clipped by the map.
+     */
+    public void markDirty(int left, int top, int right, int bottom) {
+        repaintTiles.set(left, top, right, bottom);
+    }
+
+    /**
+     * Set tiles to be repainted next time.
+     * @param tiles Must have the same size as the map
+     */
+    public void markDirty(TileBitSet tiles) {
+        repaintTiles.or(tiles);
+    }
+
 
     /**
      * This function is used for set some additional render tiles.
@@ -195,12 +343,19 @@ public class Renderer extends JPanel {
      * @param texture           Texture to show.
      */
     public void addFloatingTile(FloatPair position, Texture texture) {
-        synchronized (this) {
-            this.flotingTiles.add(new Pair<>(position, texture));
-        }
+        this.flotingTiles.add(new Pair<>(position, texture));
     }
 
 
+    /**
+     * Paint these entities from now on, instead of the ones set before.
+     * @param camera Camera to render with, null for the default camera
+     */
+    void setEntities(List<RenderCommandBuffer.DrawCommand> entities, Camera camera) {
+        this.entities = entities;
+        this.entitiesCamera = camera;
+    }
+
     public void clearScoreboard() {
         scoreboardGraphics.setColor(Config.DefaultBackgroundColor);
         scoreboardGraphics.fillRect(0, 0, scoreboardWidth, mapHeightInTiles * tileHeight);
@@ -236,7 +391,7 @@ public class Renderer extends JPanel {
      * @param texture texture to draw
      */
     public void drawScoreboardTile(int startX, int startY, Texture texture) {
-        scoreboardGraphics.drawImage(texture.getImage(tileWidth, tileHeight), startX, startY, null);
+        texture.draw(scoreboardGraphics, startX, startY, tileWidth, tileHeight);
     }
 
 
@@ -248,194 +403,353 @@ public class Renderer extends JPanel {
 
     @Override
     public void paint(Graphics g) {
-        synchronized (this) {
-            if (g == null)
-                throw new NullPointerException();
+        if (g == null)
+            throw new NullPointerException();
+
+        long startTime = System.nanoTime(), time = startTime, lastTime = time;
+        profiler.frameStarted(startTime);
+
+        // 0: Apply commands published by the simulation.
+        // Note: An entity may provide the camera
+        commandBuffer.replay(this);
+        renderingCamera = entitiesCamera != null ? entitiesCamera : defaultCamera;
+        moveWindow();
+        paint_repaintTiles();
+        time = System.nanoTime();
+        profiler.stageFinished(Stage.Repaint, time - lastTime);
+        lastTime = time;
+
+        // 1: Repaint specified positions and changed tiles of tile layers
+        paint_tiles();
+        time = System.nanoTime();
+        profiler.stageFinished(Stage.Tiles, time - lastTime);
+        lastTime = time;
+
+        // 2: Paint the recorded entities
+        paint_scene();
+        time = System.nanoTime();
+        profiler.stageFinished(Stage.Scene, time - lastTime);
+        lastTime = time;
+
+        // 3: Drawing floting tiles
+        paint_floatingTiles();
+        time = System.nanoTime();
+        profiler.stageFinished(Stage.FloatingTiles, time - lastTime);
+        lastTime = time;
+
+        // 4: Camera
+        BufferedImage cameraBufferedImage = paint_camera();
+
+        int scoreboardLeft = renderWidthInTiles * tileWidth;
+        g.drawImage(cameraBufferedImage, 0, 0, cameraBufferedImage.getWidth(), cameraBufferedImage.getHeight(), this);
+        g.drawImage(scoreboardBuffer, scoreboardLeft, 0, this);
+        time = System.nanoTime();
+        profiler.stageFinished(Stage.Camera, time - lastTime);
+        profiler.frameFinished(startTime, time);
+
+        if (profilerOverlay) {
+            paint_profilerOverlay(g, scoreboardWidth > 0 ? scoreboardLeft : 0);
+        }
+    }
 
-            renderingCamera = defaultCamera;
+    private void paint_profilerOverlay(Graphics g, int left) {
+        RenderProfiler.Snapshot snapshot = profiler.snapshot();
+        ArrayList<String> lines = new ArrayList<>();
+        lines.add(String.format("FPS %.1f", snapshot.fps));
+        lines.add(String.format("p50 %.2fms", snapshot.p50FrameNanos / 1e6));
+        lines.add(String.format("p99 %.2fms", snapshot.p99FrameNanos / 1e6));
+        for (Stage stage : Stage.values()) {
+            lines.add(String.format("%-13s %.2fms", stage, snapshot.getStageNanos(stage) / 1e6));
+        }
+        lines.add("Repainted " + snapshot.repaintedTiles);
+        lines.add("Blitted " + (snapshot.blittedTiles < 0 ? "all" : String.valueOf(snapshot.blittedTiles)));
+        lines.add("Images " + snapshot.imagesAllocated);
+        lines.add(String.format("Tick %.2fms", snapshot.tickNanos / 1e6));
+        lines.add(String.format("Game %.2fms", snapshot.gameRenderNanos / 1e6));
+
+        g.setFont(ProfilerFont);
+        FontMetrics metrics = g.getFontMetrics();
+        int width = 0;
+        for (String line : lines) {
+            width = Math.max(width, metrics.stringWidth(line));
+        }
+        g.setColor(Color.BLACK);
+        g.fillRect(left, 0, width + 4, metrics.getHeight() * lines.size() + 4);
+        g.setColor(Color.WHITE);
+        for (int i = 0; i < lines.size(); i++) {
+            g.drawString(lines.get(i), left + 2, metrics.getHeight() * (i + 1));
+        }
+    }
 
-            // 1: Repaint specified positions
-            paint_repaintTiles();
 
-            // 2: Drawing tiles
-            paint_tiles();
+    private void fillWindow() {
+        offscreenGraphics.setColor(Config.DefaultBackgroundColor);
+        offscreenGraphics.fillRect(windowX * tileWidth, windowY * tileHeight, offscreenBuffer.getWidth(), offscreenBuffer.getHeight());
+    }
 
-            // 3: Paint all entities in Scene
-            // Note: This may change renderingCamera!
-            paint_scene();
+    private boolean insideWindow(int x, int y) {
+        return x >= windowX && x < windowX + windowWidthInTiles && y >= windowY && y < windowY + windowHeightInTiles;
+    }
 
-            // 4: Drawing floting tiles
-            paint_floatingTiles();
+    /**
+     * Move the offscreen window to the tiles seen by renderingCamera.
+     */
+    private void moveWindow() {
+        int translateX = (int) (renderingCamera.getTranslateX() * tileWidth);
+        int translateY = (int) (renderingCamera.getTranslateY() * tileHeight);
+        int x = Math.max(0, Math.min(Math.floorDiv(translateX, tileWidth), mapWidthInTiles - windowWidthInTiles));
+        int y = Math.max(0, Math.min(Math.floorDiv(translateY, tileHeight), mapHeightInTiles - windowHeightInTiles));
+        if (x == windowX && y == windowY) {
+            return;
+        }
+        offscreenGraphics.translate((windowX - x) * tileWidth, (windowY - y) * tileHeight);
+        windowX = x;
+        windowY = y;
+        for (RenderLayer layer : tileLayers) {
+            layer.moveCache(x, y);
+        }
+        windowValid = false;
+        cameraBufferValid = false;
+    }
 
-            // 5: Camera
-            BufferedImage cameraBufferedImage = paint_camera();
+    /**
+     * Add changed tiles of tile layers to repaintTiles, and bring the pre-composited layers up to date.
+     */
+    private void paint_repaintTiles() {
+        for (RenderLayer layer : tileLayers) {
+            layer.updateCache();
+            repaintTiles.or(layer.getChangedTiles());
+            layer.getChangedTiles().clear();
+        }
+    }
 
-            int scoreboardLeft = renderWidthInTiles * tileWidth;
-            g.drawImage(cameraBufferedImage, 0, 0, cameraBufferedImage.getWidth(), cameraBufferedImage.getHeight(), this);
-            g.drawImage(scoreboardBuffer, scoreboardLeft, 0, this);
+    private void paint_tiles() {
+        if (!windowValid) {
+            // Paint the whole window, cached layers (at the bottom) are copied at once
+            fillWindow();
+            for (RenderLayer layer : tileLayers) {
+                layer.paintCache(offscreenGraphics);
+            }
+            paint_tileRows(true, windowWidthInTiles * windowHeightInTiles);
+            profiler.tilesRepainted(windowWidthInTiles * windowHeightInTiles);
+            // The camera copies the whole window as well
+            repaintTiles.clear();
+            windowValid = true;
+            return;
+        }
+
+        int repaintCount = 0;
+        paint_tileRows(false, repaintTiles.cardinality());
+        for (int index = repaintTiles.nextSetBit(0); index >= 0; index = repaintTiles.nextSetBit(index + 1)) {
+            // Tiles outside the window are not kept, they are painted when the window moves there
+            int x = index % mapWidthInTiles, y = index / mapWidthInTiles;
+            if (insideWindow(x, y)) {
+                dirtyTiles.set(x, y);
+                repaintCount++;
+            }
         }
+        profiler.tilesRepainted(repaintCount);
+        repaintTiles.clear();
     }
 
+    /**
+     * Paint the tiles of the window, split into horizontal strips painted in parallel if there are enough tiles.
+     * Tiles only cover their own rectangle and strips do not overlap, so the strips need no ordering.
+     * @param wholeWindow   Paint every tile on top of the cached layers, or only repaintTiles over the background
+     * @param tileCount     Estimated number of tiles to paint
+     */
+    private void paint_tileRows(boolean wholeWindow, int tileCount) {
+        int strips = rasterizationPool == null || tileCount < MinParallelTiles ? 1
+                : Math.min(rasterizationPool.getParallelism(), windowHeightInTiles);
+        if (strips <= 1) {
+            paint_tileStrip(offscreenGraphics, wholeWindow, windowY, windowY + windowHeightInTiles);
+            return;
+        }
 
-    private void paint_repaintTiles() {
-        synchronized (this) {
-            for (IntPair pos : repaintTilePositions) {
-                int x = pos.first, y = pos.second;
-                offscreenGraphics.setColor(Config.DefaultBackgroundColor);
-                offscreenGraphics.fillRect(x * tileWidth, y * tileHeight, tileWidth, tileHeight);
-
-                if (tiles[x][y] == null) {
-                    tiles[x][y] = emptyTexture;
+        ForkJoinTask<?>[] tasks = new ForkJoinTask<?>[strips];
+        for (int i = 0; i < strips; i++) {
+            int top = windowY + windowHeightInTiles * i / strips, bottom = windowY + windowHeightInTiles * (i + 1) / strips;
+            tasks[i] = rasterizationPool.submit(() -> {
+                // Every strip has its own Graphics2D, clipped to the strip
+                Graphics2D graphics2D = offscreenBuffer.createGraphics();
+                try {
+                    graphics2D.translate(-windowX * tileWidth, -windowY * tileHeight);
+                    graphics2D.clipRect(windowX * tileWidth, top * tileHeight, windowWidthInTiles * tileWidth, (bottom - top) * tileHeight);
+                    paint_tileStrip(graphics2D, wholeWindow, top, bottom);
+                } finally {
+                    graphics2D.dispose();
                 }
-                BufferedImage img = tiles[x][y].getImage(tileWidth, tileHeight);
-                offscreenGraphics.drawImage(img, x * tileWidth, y * tileHeight, null);
-            }
-            this.repaintTilePositions.clear();
+            });
+        }
+        for (ForkJoinTask<?> task : tasks) {
+            task.join();
         }
     }
 
-    private void paint_tiles() {
-        synchronized (this) {
-            for (int x = 0; x < mapWidthInTiles; x++) {
-                for (int y = 0; y < mapHeightInTiles; y++) {
-                    if (oldTiles[x][y] == tiles[x][y]) {
-                        continue;
+    /**
+     * Paint the tiles of the window in rows [top, bottom) with g.
+     */
+    private void paint_tileStrip(Graphics2D g, boolean wholeWindow, int top, int bottom) {
+        for (int y = top; y < bottom; y++) {
+            int rowStart = y * mapWidthInTiles;
+            int from = rowStart + windowX, to = rowStart + windowX + windowWidthInTiles;
+            for (int index = wholeWindow ? from : repaintTiles.nextSetBit(from); index >= 0 && index < to;
+                 index = wholeWindow ? index + 1 : repaintTiles.nextSetBit(index + 1)) {
+                int x = index - rowStart;
+                boolean painted = false;
+                if (wholeWindow) {
+                    for (RenderLayer layer : tileLayers) {
+                        if (layer.isCached()) {
+                            painted |= layer.getTexture(x, y) != null;
+                        } else {
+                            painted |= layer.paintTile(g, x, y);
+                        }
                     }
-                    if (tiles[x][y] == null) {
-                        tiles[x][y] = emptyTexture;
+                } else {
+                    g.setColor(Config.DefaultBackgroundColor);
+                    g.fillRect(x * tileWidth, y * tileHeight, tileWidth, tileHeight);
+                    for (RenderLayer layer : tileLayers) {
+                        painted |= layer.paintTile(g, x, y);
                     }
-                    offscreenGraphics.setColor(Config.DefaultBackgroundColor);
-                    offscreenGraphics.fillRect(x * tileWidth, y * tileHeight, tileWidth, tileHeight);
-                    BufferedImage img = tiles[x][y].getImage(tileWidth, tileHeight);
-                    offscreenGraphics.drawImage(img, x * tileWidth, y * tileHeight, null);
-
-                    oldTiles[x][y] = tiles[x][y];
+                }
+                if (!painted) {
+                    emptyTexture.draw(g, x * tileWidth, y * tileHeight, tileWidth, tileHeight);
                 }
             }
         }
     }
 
-    private void paint_scene() {
-        synchronized (this) {
-            for (Entity entity : scene.getEntities()) {
-                TransformComponent transComponent = entity.getTransformComponent();
-                double translationX = 0, translationY = 0;
-                if (transComponent != null) {
-                    translationX = transComponent.getTranslateX();
-                    translationY = transComponent.getTranslateY();
-                }
-
-                TileTextureRenderComponent ttrComponent = entity.getTileTextureRenderComponent();
-                if (ttrComponent != null) {
-                    for (Pair<FloatPair, Texture> positionAndTex : ttrComponent.getPositionsAndTextures()) {
-                        BufferedImage img = positionAndTex.second.getImage(tileWidth, tileHeight);
-
-                        double leftTileIndex = positionAndTex.first.first + translationX;
-                        double topTileIndex = positionAndTex.first.second + translationY;
+    /**
+     * Whether tiles [left, right] x [top, bottom] are outside the offscreen window, so nothing there is drawn.
+     */
+    private boolean culled(int left, int top, int right, int bottom) {
+        return right < windowX || left >= windowX + windowWidthInTiles || bottom < windowY || top >= windowY + windowHeightInTiles;
+    }
 
-                        int leftPixel = (int) Math.round(leftTileIndex * tileWidth);
-                        int topPixel = (int) Math.round(topTileIndex * tileHeight);
+    private void paint_scene() {
+        for (RenderCommandBuffer.DrawCommand command : entities) {
+            int left = (int) Math.round(Math.floor(command.x));
+            int right = (int) Math.round(Math.ceil(command.x));
+            int top = (int) Math.round(Math.floor(command.y));
+            int bottom = (int) Math.round(Math.ceil(command.y));
+            if (culled(left, top, right, bottom)) {
+                continue;
+            }
 
-                        offscreenGraphics.drawImage(img, leftPixel, topPixel, null);
+            int leftPixel = (int) Math.round(command.x * tileWidth);
+            int topPixel = (int) Math.round(command.y * tileHeight);
 
-                        // Repaint nearby area next time
-                        int left = (int) Math.round(Math.floor(leftTileIndex));
-                        int right = (int) Math.round(Math.ceil(leftTileIndex));
-                        int top = (int) Math.round(Math.floor(topTileIndex));
-                        int bottom = (int) Math.round(Math.ceil(topTileIndex));
-                        for (int x = Math.max(left, 0); x <= right && x < mapWidthInTiles; x++) {
-                            for (int y = Math.max(top, 0); y <= bottom && y < mapHeightInTiles; y++) {
-                                this.repaintTilePositions.add(new IntPair(x, y));
-                            }
-                        }
-                    }
-                }
+            command.texture.draw(offscreenGraphics, leftPixel, topPixel, tileWidth, tileHeight);
 
-                CameraComponent cameraComponent = entity.getCameraComponent();
-                if (cameraComponent != null && cameraComponent.isRenderingCamera()) {
-                    renderingCamera = cameraComponent.getCamera();
-                }
-            }
+            // Repaint nearby area next time
+            repaintTiles.set(left, top, right, bottom);
+            dirtyTiles.set(left, top, right, bottom);
         }
     }
 
     private void paint_floatingTiles() {
-        synchronized (this) {
-            for (Pair<FloatPair, Texture> flotingTile : flotingTiles) {
-                FloatPair position = flotingTile.first;
-                Texture texture = flotingTile.second;
-                if (texture != null) {
-                    BufferedImage img = texture.getImage(tileWidth, tileHeight);
-                    int leftPixel = Math.round(position.first * tileWidth);
-                    int topPixel = Math.round(position.second * tileHeight);
-                    offscreenGraphics.drawImage(img, leftPixel, topPixel, null);
-                }
+        for (Pair<FloatPair, Texture> flotingTile : flotingTiles) {
+            FloatPair position = flotingTile.first;
+            Texture texture = flotingTile.second;
+            int left = (int) Math.round(Math.floor(position.first));
+            int right = (int) Math.round(Math.ceil(position.first));
+            int top = (int) Math.round(Math.floor(position.second));
+            int bottom = (int) Math.round(Math.ceil(position.second));
+            if (culled(left, top, right, bottom)) {
+                continue;
+            }
+
+            if (texture != null) {
+                int leftPixel = Math.round(position.first * tileWidth);
+                int topPixel = Math.round(position.second * tileHeight);
+                texture.draw(offscreenGraphics, leftPixel, topPixel, tileWidth, tileHeight);
+            }
 
-                // Repaint nearby area next time
-                int left = (int) Math.round(Math.floor(position.first));
-                int right = (int) Math.round(Math.ceil(position.first));
-                int top = (int) Math.round(Math.floor(position.second));
-                int bottom = (int) Math.round(Math.ceil(position.second));
+            // Repaint nearby area next time
+            repaintTiles.set(left, top, right, bottom);
+            dirtyTiles.set(left, top, right, bottom);
+        }
+        flotingTiles.clear();
+    }
 
-                for (int x = Math.max(left, 0); x <= right && x < mapWidthInTiles; x++) {
-                    for (int y = Math.max(top, 0); y <= bottom && y < mapHeightInTiles; y++) {
-                        this.repaintTilePositions.add(new IntPair(x, y));
-                    }
+    private BufferedImage paint_camera() {
+        int translateX = (int) (renderingCamera.getTranslateX() * tileWidth);
+        int translateY = (int) (renderingCamera.getTranslateY() * tileHeight);
+        double scaleX = renderingCamera.getScaleX(), scaleY = renderingCamera.getScaleY();
+
+        if (!cameraBufferValid || translateX != cameraTranslateX || translateY != cameraTranslateY
+                || scaleX != cameraScaleX || scaleY != cameraScaleY) {
+            // Camera moved, redraw everything
+            cameraTranslateX = translateX;
+            cameraTranslateY = translateY;
+            cameraScaleX = scaleX;
+            cameraScaleY = scaleY;
+            // offscreenBuffer starts at the left-top of the window
+            cameraTransform.setToScale(scaleX, scaleY);
+            cameraTransform.translate(windowX * tileWidth - translateX, windowY * tileHeight - translateY);
+
+            cameraGraphics.setClip(null);
+            cameraGraphics.setColor(Config.DefaultBackgroundColor);
+            cameraGraphics.fillRect(0, 0, cameraBuffer.getWidth(), cameraBuffer.getHeight());
+            blitToCamera(windowX * tileWidth, windowY * tileHeight, offscreenBuffer.getWidth(), offscreenBuffer.getHeight());
+            cameraBufferValid = true;
+            profiler.tilesBlitted(-1);
+        } else {
+            profiler.tilesBlitted(dirtyTiles.cardinality());
+            // Only copy dirty tiles, a row of adjacent dirty tiles is copied at once.
+            // blitToCamera() skips the parts outside the viewport.
+            int index = dirtyTiles.nextSetBit(0);
+            while (index >= 0) {
+                int y = index / mapWidthInTiles;
+                int rowEnd = (y + 1) * mapWidthInTiles;
+                int runEnd = index + 1;
+                int next = dirtyTiles.nextSetBit(runEnd);
+                while (next == runEnd && runEnd < rowEnd) {
+                    runEnd++;
+                    next = dirtyTiles.nextSetBit(runEnd);
                 }
+                blitToCamera((index - y * mapWidthInTiles) * tileWidth, y * tileHeight, (runEnd - index) * tileWidth, tileHeight);
+                index = next;
             }
-            flotingTiles.clear();
         }
+        dirtyTiles.clear();
+
+        return cameraBuffer;
     }
 
-    private BufferedImage paint_camera() {
-        synchronized (this) {
-            int cameraWidth = Math.max(renderWidthInTiles * tileWidth, 0);
-            int cameraHeight = Math.max(renderHeightInTiles * tileHeight, 0);
-            int cameraTranslateX = (int) (renderingCamera.getTranslateX() * tileWidth);
-            int cameraTranslateY = (int) (renderingCamera.getTranslateY() * tileHeight);
-            int cameraScaledWidth = Math.max((int) (cameraWidth * renderingCamera.getScaleX()), 0);
-            int cameraScaledHeight = Math.max((int) (cameraHeight * renderingCamera.getScaleY()), 0);
-
-            Graphics2D graphics2D;
-
-            // Get targeted area
-            BufferedImage offScreenSubImage = new BufferedImage(
-                    Math.max(Math.min(cameraWidth, offscreenBuffer.getWidth() - cameraTranslateX), 0),
-                    Math.max(Math.min(cameraHeight, offscreenBuffer.getHeight() - cameraTranslateY), 0), BufferedImage.TYPE_INT_ARGB);
-            graphics2D = offScreenSubImage.createGraphics();
-            graphics2D.drawImage(offscreenBuffer.getSubimage(
-                    Math.max(cameraTranslateX, 0), Math.max(cameraTranslateY, 0),
-                    Math.max(Math.min(cameraWidth, offscreenBuffer.getWidth() - cameraTranslateX), 0),
-                    Math.max(Math.min(cameraHeight, offscreenBuffer.getHeight() - cameraTranslateY), 0)),
-                    Math.max(0, -cameraTranslateX),
-                    Math.max(0, -cameraTranslateY), null
-            );
-            graphics2D.dispose();
-            // Get scaled image
-            Image scaledOffScreenSubImage = offScreenSubImage.getScaledInstance(
-                    (int) (offScreenSubImage.getWidth() * renderingCamera.getScaleX()),
-                    (int) (offScreenSubImage.getHeight() * renderingCamera.getScaleY()),
-                    Image.SCALE_DEFAULT);
-            // Paint scaled image into a BufferedImage
-            BufferedImage scaledOffScreenSubBuffedImage = new BufferedImage(cameraScaledWidth, cameraScaledHeight, BufferedImage.TYPE_INT_ARGB);
-            graphics2D = scaledOffScreenSubBuffedImage.createGraphics();
-            graphics2D.drawImage(scaledOffScreenSubImage, 0, 0, null);
-            graphics2D.dispose();
-
-            // Paint subBufferedImage of it
-            BufferedImage cameraBufferedImage = new BufferedImage(cameraWidth, cameraHeight, BufferedImage.TYPE_INT_ARGB);
-            graphics2D = cameraBufferedImage.createGraphics();
-            graphics2D.setColor(Config.DefaultBackgroundColor);
-            graphics2D.fillRect(0, 0, cameraWidth, cameraHeight);
-            graphics2D.drawImage(
-                    scaledOffScreenSubBuffedImage.getSubimage(0, 0,
-                            Math.min(cameraWidth, scaledOffScreenSubBuffedImage.getWidth()),
-                            Math.min(cameraHeight, scaledOffScreenSubBuffedImage.getHeight())),
-                    0, 0, null);
-            graphics2D.dispose();
-
-            return cameraBufferedImage;
+    /**
+     * Copy a rectangle (in map pixels) of the window into the camera back-buffer through the camera transform.
+     * Only [cameraTranslate, cameraTranslate + camera size) of the map is visible, the rest stays background.
+     */
+    private void blitToCamera(int srcX, int srcY, int srcWidth, int srcHeight) {
+        int cameraWidth = renderWidthInTiles * tileWidth, cameraHeight = renderHeightInTiles * tileHeight;
+        int windowLeft = windowX * tileWidth, windowTop = windowY * tileHeight;
+        int x1 = Math.max(Math.max(srcX, windowLeft), Math.max(cameraTranslateX, 0));
+        int y1 = Math.max(Math.max(srcY, windowTop), Math.max(cameraTranslateY, 0));
+        int x2 = Math.min(Math.min(srcX + srcWidth, windowLeft + offscreenBuffer.getWidth()),
+                Math.min(cameraTranslateX + cameraWidth, mapWidthInTiles * tileWidth));
+        int y2 = Math.min(Math.min(srcY + srcHeight, windowTop + offscreenBuffer.getHeight()),
+                Math.min(cameraTranslateY + cameraHeight, mapHeightInTiles * tileHeight));
+        if (x1 >= x2 || y1 >= y2) {
+            return;
+        }
+
+        if (cameraScaleX == 1.0 && cameraScaleY == 1.0) {
+            // Fast path, a plain copy
+            cameraGraphics.drawImage(offscreenBuffer,
+                    x1 - cameraTranslateX, y1 - cameraTranslateY, x2 - cameraTranslateX, y2 - cameraTranslateY,
+                    x1 - windowLeft, y1 - windowTop, x2 - windowLeft, y2 - windowTop, null);
+            return;
         }
+        int destX1 = (int) Math.floor((x1 - cameraTranslateX) * cameraScaleX);
+        int destY1 = (int) Math.floor((y1 - cameraTranslateY) * cameraScaleY);
+        int destX2 = (int) Math.ceil((x2 - cameraTranslateX) * cameraScaleX);
+        int destY2 = (int) Math.ceil((y2 - cameraTranslateY) * cameraScaleY);
+        cameraGraphics.setClip(destX1, destY1, destX2 - destX1, destY2 - destY1);
+        cameraGraphics.setColor(Config.DefaultBackgroundColor);
+        cameraGraphics.fillRect(destX1, destY1, destX2 - destX1, destY2 - destY1);
+        cameraGraphics.drawImage(offscreenBuffer, cameraTransform, null);
+        cameraGraphics.setClip(null);
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,151 @@
+package com.mandas.tiled2d.renderer;
+
+import com.mandas.tiled2d.Config;
+
+import java.awt.image.BufferedImage;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class ScaledImageCache {
+
+    /**
+     * Scaled copies of images, shared by all textures and limited by a byte budget.
+     * When the budget is exceeded, the least recently used copies are dropped.
+     * An entry is keyed by the identity of the source image and the size, so replacing the image of a texture
+     * simply stops hitting its old entries, which are dropped in time.
+     * Thread safe.
+     */
+    private static final ScaledImageCache sharedCache = new ScaledImageCache(Config.ScaledImageCacheBytes);
+
+    public static ScaledImageCache getSharedCache() {
+        return sharedCache;
+    }
+
+    public interface Scaler {
+        BufferedImage scale(BufferedImage source, int width, int height);
+    }
+
+    private static final class Key {
+        BufferedImage source;
+        int width, height;
+
+        Key(BufferedImage source, int width, int height) {
+            this.source = source;
+            this.width = width;
+            this.height = height;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return source == key.source && width == key.width && height == key.height;
+        }
+
+        @Override
+        public int hashCode() {
+            return (System.identityHashCode(source) * 31 + width) * 31 + height;
+        }
+    }
+
+    private final long maxBytes;
+    private final LinkedHashMap<Key, BufferedImage> images = new LinkedHashMap<>(16, 0.75f, true);  // In access order
+    private final Key lookupKey = new Key(null, 0, 0);     // Reused for lookups, guarded by this
+    private long bytes = 0;
+    private long hits = 0, misses = 0, evictions = 0;
+
+    public ScaledImageCache(long maxBytes) {
+        if (maxBytes < 0) {
+            throw new IllegalArgumentException("maxBytes " + maxBytes + " must not be negative.");
+        }
+        this.maxBytes = maxBytes;
+    }
+
+    private static long sizeOf(BufferedImage image) {
+        return (long) image.getWidth() * image.getHeight() * 4;
+    }
+
+    /**
+     * @return source scaled to width * height, made by scaler if it is not cached
+     */
+    public BufferedImage get(BufferedImage source, int width, int height, Scaler scaler) {
+        synchronized (this) {
+            lookupKey.source = source;
+            lookupKey.width = width;
+            lookupKey.height = height;
+            BufferedImage image = images.get(lookupKey);
+            lookupKey.source = null;
+            if (image != null) {
+                hits++;
+                return image;
+            }
+            misses++;
+        }
+
+        // Scale without holding the lock, another thread may do the same work meanwhile
+        BufferedImage image = scaler.scale(source, width, height);
+        long size = sizeOf(image);
+        synchronized (this) {
+            if (size > maxBytes) {
+                return image;
+            }
+            BufferedImage previous = images.put(new Key(source, width, height), image);
+            if (previous != null) {
+                bytes -= sizeOf(previous);
+            }
+            bytes += size;
+            evict();
+        }
+        return image;
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<Key, BufferedImage>> iterator = images.entrySet().iterator();
+        while (bytes > maxBytes && iterator.hasNext()) {
+            bytes -= sizeOf(iterator.next().getValue());
+            iterator.remove();
+            evictions++;
+        }
+    }
+
+    public void clear() {
+        synchronized (this) {
+            images.clear();
+            bytes = 0;
+        }
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    public synchronized int size() {
+        return images.size();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "ScaledImageCache{images=" + images.size() + ", bytes=" + bytes + "/" + maxBytes
+                + ", hits=" + hits + ", misses=" + misses + ", evictions=" + evictions + "}";
+    }
+
+}
@@ -1,29 +1,40 @@
 package com.mandas.tiled2d.renderer;
 
-import com.mandas.tiled2d.utils.IntPair;
-
 import java.awt.*;
 import java.awt.image.BufferedImage;
-import java.util.Map;
-import java.util.TreeMap;
 
 public class Texture {
 
+    // Scaled images are kept in ScaledImageCache.getSharedCache(), keyed by img
     protected BufferedImage img;
-    protected Map<IntPair, BufferedImage> differentSizeImgs;
+
+    // A texture of an atlas is a region of the atlas' image, img is only created if someone asks for it
+    protected TextureAtlas atlas = null;
+    protected int regionX, regionY;
 
     public Texture(BufferedImage img) {
         if (img == null) {
             throw new IllegalArgumentException("img cannot be null!");
         }
         this.img = img;
-        differentSizeImgs = new TreeMap<>();
     }
-    
+
+    Texture(TextureAtlas atlas, int regionX, int regionY) {
+        this.atlas = atlas;
+        this.regionX = regionX;
+        this.regionY = regionY;
+    }
+
+    public TextureAtlas getAtlas() {
+        return atlas;
+    }
+
     public void setImage(BufferedImage img) {
         if (img == null) {
             throw new IllegalArgumentException("img cannot be null!");
         }
+        // No longer a region of the atlas
+        this.atlas = null;
         this.img = img;
     }
 
@@ -36,25 +47,42 @@ public class Texture {
     }
 
     public BufferedImage getImage() {
+        if (img == null) {
+            // Shares the pixels of the atlas
+            img = atlas.getImage().getSubimage(regionX * atlas.getRegionWidth(), regionY * atlas.getRegionHeight(),
+                    atlas.getRegionWidth(), atlas.getRegionHeight());
+        }
         return img;
     }
 
     public BufferedImage getImage(int width, int height) {
+        if (atlas != null) {
+            return atlas.getImage(width, height).getSubimage(regionX * width, regionY * height, width, height);
+        }
         if (width == img.getWidth() && height == img.getHeight()) {
             return img;
         }
-        IntPair size = new IntPair(width, height);
-        if (differentSizeImgs.containsKey(size)) {
-            return differentSizeImgs.get(size);
+        return ScaledImageCache.getSharedCache().get(img, width, height, Texture::scale);
+    }
+
+    /**
+     * Draw this texture scaled to width * height at (x, y).
+     * A texture of an atlas is copied from the atlas without creating any image.
+     */
+    public void draw(Graphics g, int x, int y, int width, int height) {
+        if (atlas != null) {
+            atlas.draw(g, regionX, regionY, x, y, width, height);
+        } else {
+            g.drawImage(getImage(width, height), x, y, null);
         }
+    }
 
+    static BufferedImage scale(BufferedImage img, int width, int height) {
         Image scaledImage = img.getScaledInstance(width, height, Image.SCALE_DEFAULT);
         BufferedImage scaledBufferedImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
         Graphics2D graphics2D = scaledBufferedImage.createGraphics();
         graphics2D.drawImage(scaledImage, 0, 0, null);
         graphics2D.dispose();
-
-        differentSizeImgs.put(size, scaledBufferedImage);
         return scaledBufferedImage;
     }
 
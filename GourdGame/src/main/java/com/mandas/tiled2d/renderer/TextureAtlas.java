@@ -0,0 +1,155 @@
+package com.mandas.tiled2d.renderer;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.function.Supplier;
+
+public class TextureAtlas {
+
+    /**
+     * A grid of equally sized regions kept in one image, e.g. a tile file.
+     * Textures of the regions do not own images, they are drawn as a sub-rectangle of the atlas,
+     * so Java2D can keep the atlas accelerated and blit from it directly.
+     * A scaled variant of the whole atlas is baked for every region size requested and kept in ScaledImageCache.
+     * An atlas may be loaded lazily, then textures can be handed out (e.g. on a server) without reading any image.
+     */
+    private final int regionWidth, regionHeight;
+    private final int widthInRegions, heightInRegions;
+    private volatile BufferedImage image;
+    private Supplier<BufferedImage> loader;     // Not null until the lazy atlas is loaded, guarded by this
+    private final Texture[] textures;
+
+    /**
+     * @param source    Image to copy the regions from, null for an empty atlas
+     */
+    public TextureAtlas(BufferedImage source, int regionWidth, int regionHeight, int widthInRegions, int heightInRegions) {
+        this(regionWidth, regionHeight, widthInRegions, heightInRegions);
+        image = copyRegions(source);
+    }
+
+    /**
+     * An atlas whose image is only loaded when it is first needed.
+     * @param loader    Gives the image to copy the regions from, or null for an empty atlas
+     */
+    public TextureAtlas(Supplier<BufferedImage> loader, int regionWidth, int regionHeight, int widthInRegions, int heightInRegions) {
+        this(regionWidth, regionHeight, widthInRegions, heightInRegions);
+        this.loader = loader;
+    }
+
+    private TextureAtlas(int regionWidth, int regionHeight, int widthInRegions, int heightInRegions) {
+        if (regionWidth < 1 || regionHeight < 1 || widthInRegions < 1 || heightInRegions < 1) {
+            throw new IllegalArgumentException("Atlas size must be positive.");
+        }
+        this.regionWidth = regionWidth;
+        this.regionHeight = regionHeight;
+        this.widthInRegions = widthInRegions;
+        this.heightInRegions = heightInRegions;
+
+        textures = new Texture[widthInRegions * heightInRegions];
+        for (int i = 0; i < textures.length; i++) {
+            textures[i] = new Texture(this, i % widthInRegions, i / widthInRegions);
+        }
+    }
+
+    private BufferedImage copyRegions(BufferedImage source) {
+        BufferedImage atlasImage = createCompatibleImage(regionWidth * widthInRegions, regionHeight * heightInRegions);
+        if (source != null) {
+            Graphics2D graphics2D = atlasImage.createGraphics();
+            graphics2D.drawImage(source, 0, 0, null);
+            graphics2D.dispose();
+        }
+        return atlasImage;
+    }
+
+    /**
+     * An image in the format of the screen, so drawing it needs no conversion.
+     * Without a screen (headless) this is a plain ARGB image.
+     */
+    static BufferedImage createCompatibleImage(int width, int height) {
+        if (GraphicsEnvironment.isHeadless()) {
+            return new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        }
+        return GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice().getDefaultConfiguration()
+                .createCompatibleImage(width, height, Transparency.TRANSLUCENT);
+    }
+
+    public int getRegionWidth() {
+        return regionWidth;
+    }
+
+    public int getRegionHeight() {
+        return regionHeight;
+    }
+
+    public int getWidthInRegions() {
+        return widthInRegions;
+    }
+
+    public int getHeightInRegions() {
+        return heightInRegions;
+    }
+
+    public BufferedImage getImage() {
+        BufferedImage atlasImage = image;
+        if (atlasImage == null) {
+            synchronized (this) {
+                if (image == null) {
+                    image = copyRegions(loader.get());
+                    loader = null;
+                }
+                atlasImage = image;
+            }
+        }
+        return atlasImage;
+    }
+
+    public boolean isLoaded() {
+        return image != null;
+    }
+
+    /**
+     * @return The texture of region (x, y), the same object every time
+     */
+    public Texture getTexture(int x, int y) {
+        if (x < 0 || y < 0 || x >= widthInRegions || y >= heightInRegions) {
+            throw new IllegalArgumentException("Illegal position!");
+        }
+        return textures[x + y * widthInRegions];
+    }
+
+    /**
+     * The whole atlas with every region scaled to width * height, baked on the first request
+     * and baked again if the cache dropped it.
+     * Regions are scaled one by one, so they look the same as Texture.getImage(width, height).
+     */
+    public BufferedImage getImage(int width, int height) {
+        BufferedImage atlasImage = getImage();
+        if (width == regionWidth && height == regionHeight) {
+            return atlasImage;
+        }
+        return ScaledImageCache.getSharedCache().get(atlasImage, width, height, this::bake);
+    }
+
+    private BufferedImage bake(BufferedImage source, int width, int height) {
+        BufferedImage scaledImage = createCompatibleImage(width * widthInRegions, height * heightInRegions);
+        Graphics2D graphics2D = scaledImage.createGraphics();
+        for (int y = 0; y < heightInRegions; y++) {
+            for (int x = 0; x < widthInRegions; x++) {
+                BufferedImage region = source.getSubimage(x * regionWidth, y * regionHeight, regionWidth, regionHeight);
+                graphics2D.drawImage(Texture.scale(region, width, height), x * width, y * height, null);
+            }
+        }
+        graphics2D.dispose();
+        return scaledImage;
+    }
+
+    /**
+     * Draw region (regionX, regionY) scaled to width * height, with one sub-rectangle copy.
+     */
+    void draw(Graphics g, int regionX, int regionY, int x, int y, int width, int height) {
+        BufferedImage scaledImage = getImage(width, height);
+        int sx = regionX * width, sy = regionY * height;
+        g.drawImage(scaledImage, x, y, x + width, y + height, sx, sy, sx + width, sy + height, null);
+    }
+
+}
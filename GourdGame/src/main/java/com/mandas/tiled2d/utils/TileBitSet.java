@@ -0,0 +1,148 @@
+package com.mandas.tiled2d.utils;
+
+import java.util.Arrays;
+
+public class TileBitSet {
+
+    /**
+     * A set of tile positions in a width * height map, one bit per tile.
+     * Tile (x, y) is bit x + y * width, so iterating set bits visits tiles row by row.
+     * Not thread safe.
+     */
+    private final int width, height;
+    private final long[] words;
+    private boolean empty = true;
+
+    public TileBitSet(int width, int height) {
+        if (width < 1 || height < 1) {
+            throw new IllegalArgumentException("size " + width + "x" + height + " must be positive.");
+        }
+        this.width = width;
+        this.height = height;
+        this.words = new long[(width * height + 63) >>> 6];
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public boolean isEmpty() {
+        return empty;
+    }
+
+    /**
+     * Add (x, y), positions outside the map are ignored.
+     */
+    public void set(int x, int y) {
+        if (x < 0 || x >= width || y < 0 || y >= height) {
+            return;
+        }
+        int index = x + y * width;
+        words[index >>> 6] |= 1L << index;
+        empty = false;
+    }
+
+    /**
+     * Add all tiles in [left, right] x [top, bottom], clipped by the map.
+     */
+    public void set(int left, int top, int right, int bottom) {
+        left = Math.max(left, 0);
+        top = Math.max(top, 0);
+        right = Math.min(right, width - 1);
+        bottom = Math.min(bottom, height - 1);
+        if (left > right || top > bottom) {
+            return;
+        }
+        for (int y = top; y <= bottom; y++) {
+            int from = left + y * width, to = right + y * width + 1;   // [from, to)
+            int fromWord = from >>> 6, toWord = (to - 1) >>> 6;
+            long firstMask = -1L << from, lastMask = -1L >>> -to;
+            if (fromWord == toWord) {
+                words[fromWord] |= firstMask & lastMask;
+            } else {
+                words[fromWord] |= firstMask;
+                for (int i = fromWord + 1; i < toWord; i++) {
+                    words[i] = -1L;
+                }
+                words[toWord] |= lastMask;
+            }
+        }
+        empty = false;
+    }
+
+    /**
+     * Add all tiles of another set of the same size.
+     */
+    public void or(TileBitSet other) {
+        if (other.width != width || other.height != height) {
+            throw new IllegalArgumentException("size " + other.width + "x" + other.height
+                    + " does not match " + width + "x" + height + ".");
+        }
+        if (other.empty) {
+            return;
+        }
+        for (int i = 0; i < words.length; i++) {
+            words[i] |= other.words[i];
+        }
+        empty = false;
+    }
+
+    /**
+     * @return Number of tiles in the set
+     */
+    public int cardinality() {
+        if (empty) {
+            return 0;
+        }
+        int count = 0;
+        for (long word : words) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    public boolean get(int x, int y) {
+        if (x < 0 || x >= width || y < 0 || y >= height) {
+            return false;
+        }
+        int index = x + y * width;
+        return (words[index >>> 6] & (1L << index)) != 0;
+    }
+
+    /**
+     * Use x = index % getWidth(), y = index / getWidth() to get the position.
+     * @param fromIndex First index to check
+     * @return Index of the first tile in the set at or after fromIndex, -1 if there is none
+     */
+    public int nextSetBit(int fromIndex) {
+        if (empty) {
+            return -1;
+        }
+        int wordIndex = fromIndex >>> 6;
+        if (wordIndex >= words.length) {
+            return -1;
+        }
+        long word = words[wordIndex] & (-1L << fromIndex);
+        while (true) {
+            if (word != 0) {
+                return (wordIndex << 6) + Long.numberOfTrailingZeros(word);
+            }
+            if (++wordIndex == words.length) {
+                return -1;
+            }
+            word = words[wordIndex];
+        }
+    }
+
+    public void clear() {
+        if (!empty) {
+            Arrays.fill(words, 0L);
+            empty = true;
+        }
+    }
+
+}
@@ -2,6 +2,7 @@ package com.mandas.tiled2d.utils;
 
 import com.mandas.tiled2d.core.Log;
 import com.mandas.tiled2d.renderer.Texture;
+import com.mandas.tiled2d.renderer.TextureAtlas;
 
 import java.awt.image.BufferedImage;
 import java.io.File;
@@ -14,7 +15,7 @@ public class TileFileParser {
     private String filename;
     private int tileWidth, tileHeight;
     private int fileWidthInTiles, fileHeightInTiles;
-    private Texture[] textures;
+    private TextureAtlas atlas;
     private Texture emptyTexture;
 
     public TileFileParser(String filename, int tileWidth, int tileHeight, int fileWidthInTiles, int fileHeightInTiles, int emptyTextureX, int emptyTextureY) {
@@ -23,9 +24,9 @@ public class TileFileParser {
         this.tileHeight = tileHeight;
         this.fileWidthInTiles = fileWidthInTiles;
         this.fileHeightInTiles = fileHeightInTiles;
-        textures = new Texture[fileWidthInTiles * fileHeightInTiles];
 
-        loadTileFile();
+        // All tiles stay in one image, read when something is drawn first
+        atlas = new TextureAtlas(this::loadTileFile, tileWidth, tileHeight, fileWidthInTiles, fileHeightInTiles);
 
         emptyTexture = getTile(emptyTextureX, emptyTextureY);
     }
@@ -34,30 +35,25 @@ public class TileFileParser {
         if (x < 0 || y < 0 || x >= fileWidthInTiles || y >= fileHeightInTiles) {
             throw new IllegalArgumentException("Illegal position!");
         }
-        int index = x + y * fileWidthInTiles;
-        return textures[index];
+        return atlas.getTexture(x, y);
+    }
+
+    public TextureAtlas getAtlas() {
+        return atlas;
     }
 
     public Texture getEmptyTexture() {
         return emptyTexture;
     }
 
-    private void loadTileFile() {
+    private BufferedImage loadTileFile() {
         BufferedImage tileFileImg = null;
         try {
             tileFileImg = ImageIO.read(new File(filename));
         } catch (IOException e) {
             Log.mandas().error(this.getClass().getName() + ": loadTileFile(): " + e.getMessage());
         }
-
-        for (int i = 0; i < fileWidthInTiles * fileHeightInTiles; i++) {
-            int sx = (i % fileWidthInTiles) * tileWidth;
-            int sy = (i / fileWidthInTiles) * tileHeight;
-            
-            textures[i] = new Texture(new BufferedImage(tileWidth, tileHeight, BufferedImage.TYPE_INT_ARGB));
-            textures[i].getImage().getGraphics().drawImage(tileFileImg, 0, 0, tileWidth, tileHeight, sx, sy, sx + tileWidth,
-                    sy + tileHeight, null);
-        }
+        return tileFileImg;
     }
 
 }
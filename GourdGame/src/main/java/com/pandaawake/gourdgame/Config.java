@@ -2,6 +2,8 @@ package com.pandaawake.gourdgame;
 
 import com.mandas.tiled2d.utils.IntPair;
 import com.mandas.tiled2d.utils.TileFileParser;
+import com.pandaawake.gourdgame.network.room.RoomExecutor;
+import com.pandaawake.gourdgame.scene.BlastShape;
 
 import java.util.ArrayList;
 
@@ -17,6 +19,17 @@ public class Config {
     // Network settings
     public static final String ServerHostName = "localhost";
     public final static int ServerPort = 9093;
+    public static final int FrameBufferInitialSize = 4096;  // Initial size of a connection's reassembly buffer
+    public static final int MaxFrameLength = 1 << 20;       // Max payload bytes of one frame, larger frames close the connection
+    public static final int OutboundQueueCapacity = 256;    // Max frames queued for one client, a client falling further behind is closed
+    public static final long SelectTimeoutMillis = 50;      // Max time an idle network loop blocks before checking its state again
+    public static final int SerializeBufferInitialSize = 64 * 1024; // Initial size of every thread's serializing buffer
+    public static final boolean ClientPrediction = true;    // Move the main player at once, corrected by the server's state
+    public static final int ReplicationRate = 20;           // Max times per second a server sends the changed sprites
+    public static final boolean ClientInterpolation = true; // Render other sprites in the past, between replicated positions
+    public static final float InterpolationDelay = 0.1f;    // Seconds other sprites are rendered in the past
+    public static final float MaxExtrapolation = 0.1f;      // Max seconds a sprite goes on moving when positions are late
+    public static final RoomExecutor.Kind RoomExecutorKind = RoomExecutor.Kind.VirtualThreads;  // How a RoomManager ticks its rooms
 
     // Tile settings
     public static final int TileSize = 50;      // A tile's size
@@ -92,6 +105,7 @@ public class Config {
     public static final float HumanPlayerMovingSpeed = 4.0f;     // How many tiles will this sprite move in 1 second
     public static final float ComputerPlayerMovingSpeed = 4.0f;     // How many tiles will this sprite move in 1 second
     public static final int BombExtendedRadius = 1;       // Extended radius of the bomb center, describes the exploding area
+    public static final BlastShape BombBlastShape = new BlastShape.Square(BombExtendedRadius);   // Or e.g. new BlastShape.Cross(2), a line stops at walls
 
 
 }
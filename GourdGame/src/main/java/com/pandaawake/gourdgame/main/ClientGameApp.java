@@ -8,6 +8,7 @@ import com.pandaawake.gourdgame.Config;
 import com.pandaawake.gourdgame.network.GameClient;
 import com.pandaawake.gourdgame.network.data.action.ConnectionAction;
 import com.pandaawake.gourdgame.network.data.action.PlayerAction;
+import com.pandaawake.gourdgame.network.replication.InputPredictor;
 import com.pandaawake.gourdgame.player.HumanPlayer;
 import com.pandaawake.gourdgame.player.Replayer;
 import com.pandaawake.gourdgame.render.RenderCommand;
@@ -21,10 +22,14 @@ import com.pandaawake.gourdgame.sprites.Snake;
 import com.pandaawake.gourdgame.sprites.Sprite;
 import com.pandaawake.gourdgame.utils.Direction;
 
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
 public class ClientGameApp extends GameApp {
 
     protected GameMap gameMap;
     protected Scene scene;
+    protected ClientSceneUpdater sceneUpdater;
     protected Level level;
     protected SceneTilesInitializer sceneTilesInitializer;
     protected HumanPlayer mainPlayer = null;
@@ -35,6 +40,9 @@ public class ClientGameApp extends GameApp {
 
     protected Replayer replayer = null;
 
+    // Moves of the key thread, predicted and sent on the update thread which owns the scene
+    protected final Queue<Direction> movesToSend = new ConcurrentLinkedQueue<>();
+
     protected GameClient gameClient;
 
     public boolean pause = true;
@@ -49,6 +57,10 @@ public class ClientGameApp extends GameApp {
         return scene;
     }
 
+    public ClientSceneUpdater getSceneUpdater() {
+        return sceneUpdater;
+    }
+
     public HumanPlayer getMainPlayer() {
         return mainPlayer;
     }
@@ -85,7 +97,8 @@ public class ClientGameApp extends GameApp {
 
     public ClientGameApp() {
         gameMap = new GameMap(Config.MapWidth, Config.MapHeight);
-        scene = new Scene(gameMap, new ClientSceneUpdater());
+        sceneUpdater = new ClientSceneUpdater();
+        scene = new Scene(gameMap, sceneUpdater);
         level = new Level(Config.level1TileMap, null, null);
         //sceneTilesInitializer = new SceneTilesInitializer(scene);
         if (Config.ReplayMode) {
@@ -122,6 +135,7 @@ public class ClientGameApp extends GameApp {
         mainPlayer = null;
         mainPlayerSpriteId = -1;
         mainPlayerName = "";
+        movesToSend.clear();
 
         initializeMapTileAndLevel();
     }
@@ -153,7 +167,7 @@ public class ClientGameApp extends GameApp {
     // ---------------------- GameApplication Functions ----------------------
     @Override
     public void InitRenderer() {
-        RenderCommand.Init(scene);
+        RenderCommand.Init();
     }
 
     @Override
@@ -180,25 +194,43 @@ public class ClientGameApp extends GameApp {
         }
 
         if (mainPlayerSpriteId != -1 && mainPlayer == null) {
-            for (Sprite sprite : scene.getSprites()) {
-                if (sprite.getId() == mainPlayerSpriteId) {
-                    mainPlayer = new HumanPlayer((Calabash) sprite, clientId, mainPlayerName);
-                    sprite.getCameraComponent().setRenderingCamera(true);
+            Sprite sprite = scene.getSpriteById(mainPlayerSpriteId);
+            if (sprite != null) {
+                mainPlayer = new HumanPlayer((Calabash) sprite, clientId, mainPlayerName);
+                sprite.getCameraComponent().setRenderingCamera(true);
+                if (Config.ClientPrediction && !Config.ReplayMode) {
+                    sceneUpdater.setPredictor(new InputPredictor(mainPlayer.sprite));
                 }
             }
         }
 
         checkGameEnds();
+        sendMoves();
 
         //scene.OnUpdate(timestep);
         scene.setEntities(scene.getSprites());
-        scene.getSceneUpdater().OnUpdate(timestep);
+        sceneUpdater.OnUpdate(timestep);
+        if (sceneUpdater.pollResyncNeeded()) {
+            gameClient.sendAction(new ConnectionAction.ClientRequestResync(-1));
+        }
 
         if (replayer != null) {
             replayer.OnUpdate(timestep);
         }
     }
 
+    private void sendMoves() {
+        Direction direction;
+        while ((direction = movesToSend.poll()) != null) {
+            if (mainPlayer == null) {
+                continue;
+            }
+            // Moved at once if predicted, the server acknowledges the sequence (0 is not predicted)
+            int sequence = sceneUpdater.predictMove(direction);
+            gameClient.sendAction(new PlayerAction.DoMove(-1, mainPlayerSpriteId, direction, sequence));
+        }
+    }
+
     @Override
     public void OnDestroy() {
 
@@ -247,7 +279,7 @@ public class ClientGameApp extends GameApp {
         }
 
         if (direction != null) {
-            gameClient.sendAction(new PlayerAction.DoMove(-1, mainPlayerSpriteId, direction));
+            movesToSend.offer(direction);
         }
     }
 
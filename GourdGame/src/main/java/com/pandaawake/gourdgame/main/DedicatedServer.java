@@ -0,0 +1,158 @@
+package com.pandaawake.gourdgame.main;
+
+import com.mandas.tiled2d.core.Log;
+import com.mandas.tiled2d.core.LoopScheduler;
+import com.pandaawake.gourdgame.Config;
+import com.pandaawake.gourdgame.network.room.Room;
+import com.pandaawake.gourdgame.network.room.RoomExecutor;
+import com.pandaawake.gourdgame.network.room.RoomManager;
+import com.pandaawake.gourdgame.scene.Level;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * A game server without window or keyboard, ticked by its own LoopScheduler on the calling thread.
+ * The game starts by itself once enough clients entered, instead of waiting for F1.
+ * No Renderer, Swing or input hook is touched; only images of textures are loaded, headless.
+ * With --rooms many matches are hosted on the same port by a RoomManager instead.
+ */
+public class DedicatedServer {
+
+    private static final String Usage = "Usage: DedicatedServer [--host name] [--port port] [--tick-rate ticks]"
+            + " [--map file] [--start-players count] [--rooms] [--room-executor Pooled|PlatformThreads|VirtualThreads]";
+
+    private final ServerGameApp app;
+    private final LoopScheduler scheduler;
+    private final int startPlayers;
+    private boolean started = false;
+
+    /**
+     * @param tickRate      Simulation ticks per second
+     * @param startPlayers  Start the game when this many clients entered, 0 to start at once
+     */
+    public DedicatedServer(String hostName, int port, int tickRate, Level level, int startPlayers) {
+        this.startPlayers = startPlayers;
+        this.app = new ServerGameApp(hostName, port, level) {
+            @Override
+            protected void initializeEventDispatcher() {
+                // No keyboard
+            }
+        };
+        this.scheduler = new LoopScheduler(tickRate, 0, com.mandas.tiled2d.Config.MaxTicksPerIteration,
+                new LoopScheduler.Callback() {
+                    @Override
+                    public void onTick(float timestep) {
+                        OnUpdate(timestep);
+                    }
+
+                    @Override
+                    public void onRender() {
+                    }
+                });
+    }
+
+    public ServerGameApp getApp() {
+        return app;
+    }
+
+    private void OnUpdate(float timestep) {
+        if (!started && app.getClientIdsAndSpriteIdsNames().size() >= startPlayers) {
+            started = true;
+            Log.app().info("DedicatedServer: " + app.getClientIdsAndSpriteIdsNames().size() + " clients entered, game starts");
+            app.startGame();
+        }
+        app.OnUpdate(timestep);
+    }
+
+    /**
+     * Tick until stop() is called.
+     */
+    public void run() {
+        scheduler.run();
+        app.OnDestroy();
+    }
+
+    public void stop() {
+        scheduler.stop();
+    }
+
+    public static void main(String[] args) {
+        // Textures are still loaded as images, make sure that never needs a display
+        System.setProperty("java.awt.headless", "true");
+
+        String hostName = Config.ServerHostName;
+        int port = Config.ServerPort;
+        int tickRate = com.mandas.tiled2d.Config.TickRate;
+        String mapPath = null;
+        int startPlayers = -1;
+        boolean rooms = false;
+        RoomExecutor.Kind roomExecutorKind = Config.RoomExecutorKind;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                if (args[i].equals("--rooms")) {
+                    rooms = true;
+                    continue;
+                }
+                String value = i + 1 < args.length ? args[i + 1] : null;
+                if (value == null) {
+                    throw new IllegalArgumentException("Missing value of " + args[i]);
+                }
+                switch (args[i]) {
+                    case "--host":
+                        hostName = value;
+                        break;
+                    case "--port":
+                        port = Integer.parseInt(value);
+                        break;
+                    case "--tick-rate":
+                        tickRate = Integer.parseInt(value);
+                        break;
+                    case "--map":
+                        mapPath = value;
+                        break;
+                    case "--start-players":
+                        startPlayers = Integer.parseInt(value);
+                        break;
+                    case "--room-executor":
+                        roomExecutorKind = RoomExecutor.Kind.valueOf(value);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option " + args[i]);
+                }
+                i++;
+            }
+        } catch (IllegalArgumentException e) {
+            Log.app().fatal("DedicatedServer: " + e.getMessage());
+            System.err.println(Usage);
+            System.exit(2);
+        }
+
+        Level level = new Level(Config.level1TileMap, Config.level1HumanPlayerPositions, Config.level1ComputerPlayerPositions);
+        if (mapPath != null) {
+            try {
+                level = Level.load(new File(mapPath), level, Config.MapWidth, Config.MapHeight);
+            } catch (IOException e) {
+                Log.app().fatal("DedicatedServer: Cannot load map: " + e.getMessage());
+                System.exit(1);
+            }
+        }
+
+        if (rooms) {
+            // Rooms fill up before starting by default
+            RoomManager roomManager = new RoomManager(hostName, port, tickRate, level,
+                    startPlayers >= 0 ? startPlayers : Room.getCapacity(level), RoomExecutor.create(roomExecutorKind));
+            Runtime.getRuntime().addShutdownHook(new Thread(roomManager::stop));
+            Log.app().info("DedicatedServer: " + hostName + ":" + port + ", " + tickRate + " ticks per second, rooms of "
+                    + roomManager.getStartPlayers() + " players, " + roomExecutorKind);
+            roomManager.run();
+            return;
+        }
+
+        DedicatedServer server = new DedicatedServer(hostName, port, tickRate, level, Math.max(startPlayers, 1));
+        Runtime.getRuntime().addShutdownHook(new Thread(server::stop));
+        Log.app().info("DedicatedServer: " + hostName + ":" + port + ", " + tickRate + " ticks per second");
+        server.run();
+    }
+
+}
@@ -1,14 +1,46 @@
 package com.pandaawake.gourdgame.main;
 
 import com.mandas.tiled2d.core.Application;
+import com.mandas.tiled2d.renderer.FrameDumper;
 import com.pandaawake.gourdgame.Config;
 
+import static com.mandas.tiled2d.Config.MaxFrameRate;
+import static com.mandas.tiled2d.Config.TickRate;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
 public class Main {
 
-    public static void main(String[] args) {
+    /**
+     * Without arguments the game opens a window.
+     * "--headless frames [output]" renders frames without a display (use -Djava.awt.headless=true):
+     * output is a file ending with ".rgba" or an existing file such as a named pipe for raw RGBA frames,
+     * otherwise a directory for PNG images. Logs go to standard output, so frames cannot.
+     */
+    public static void main(String[] args) throws IOException {
         ControllerApp app = new ControllerApp();
         Application engineApp = new Application(app, Config.WindowTitle);
 
+        if (args.length >= 2 && args[0].equals("--headless")) {
+            long frames = Long.parseLong(args[1]);
+            FrameDumper frameDumper = null;
+            if (args.length >= 3) {
+                File output = new File(args[2]);
+                if (args[2].endsWith(".rgba") || (output.exists() && !output.isDirectory())) {
+                    frameDumper = FrameDumper.rawRgba(new FileOutputStream(output));
+                } else {
+                    frameDumper = FrameDumper.png(output);
+                }
+            }
+            engineApp.runHeadless(TickRate, MaxFrameRate, frames, frameDumper);
+            if (frameDumper != null) {
+                frameDumper.close();
+            }
+            System.exit(0);
+        }
+
         engineApp.createWindowAndRun();
     }
 
@@ -1,5 +1,6 @@
 package com.pandaawake.gourdgame.main;
 
+import com.mandas.tiled2d.core.Log;
 import com.mandas.tiled2d.event.EventDispatcher;
 import com.mandas.tiled2d.event.KeyCodes;
 import com.mandas.tiled2d.event.KeyEvents;
@@ -8,6 +9,7 @@ import com.mandas.tiled2d.utils.Pair;
 import com.pandaawake.gourdgame.Config;
 import com.pandaawake.gourdgame.network.GameServer;
 import com.pandaawake.gourdgame.network.data.action.GameAction;
+import com.pandaawake.gourdgame.network.replication.SceneReplicator;
 import com.pandaawake.gourdgame.player.ComputerPlayer;
 import com.pandaawake.gourdgame.player.Player;
 import com.pandaawake.gourdgame.scene.GameMap;
@@ -19,11 +21,15 @@ import com.pandaawake.gourdgame.sprites.Calabash;
 import com.pandaawake.gourdgame.sprites.Snake;
 import com.pandaawake.gourdgame.sprites.Sprite;
 import com.pandaawake.gourdgame.utils.Direction;
+import com.pandaawake.gourdgame.utils.IntObjectMap;
 
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 
 public class ServerGameApp {
 
@@ -32,6 +38,8 @@ public class ServerGameApp {
     protected Level level;
     protected SceneTilesInitializer sceneTilesInitializer;
     protected Set<Player> players;
+    protected IntObjectMap<Player> playersById;          // Kept in step with [players]
+    protected IntObjectMap<Player> playersBySpriteId;    // Kept in step with [players]
 
     protected Map<Integer, Pair<Integer, String>> clientIdsAndSpriteIdsNames;
 
@@ -40,6 +48,8 @@ public class ServerGameApp {
     }
 
     protected GameServer gameServer;
+    protected Thread gameServerThread = null;     // Runs the GameServer's network loop, null if it is run elsewhere
+    protected SceneReplicator sceneReplicator;
 
     public boolean pause = true;
     public void setPause(boolean pause) {
@@ -53,28 +63,62 @@ public class ServerGameApp {
         return scene;
     }
 
+    public Level getLevel() {
+        return level;
+    }
+
+    public SceneReplicator getSceneReplicator() {
+        return sceneReplicator;
+    }
+
     public Set<Player> getPlayers() {
-        return players;
+        return Collections.unmodifiableSet(players);
+    }
+
+    public void addPlayer(Player player) {
+        players.add(player);
+        playersById.put(player.id, player);
+        playersBySpriteId.put(player.sprite.getId(), player);
     }
 
     public Player getPlayerById(int playerId) {
-        for (Player player : players) {
-            if (player.id == playerId) {
-                return player;
-            }
-        }
-        return null;
+        return playersById.get(playerId);
+    }
+
+    public Player getPlayerBySpriteId(int spriteId) {
+        return playersBySpriteId.get(spriteId);
     }
 
 
     public ServerGameApp() {
+        this(Config.ServerHostName, Config.ServerPort,
+                new Level(Config.level1TileMap, Config.level1HumanPlayerPositions, Config.level1ComputerPlayerPositions));
+    }
+
+    /**
+     * @param hostName  Host name or address to listen on
+     * @param port      Port to listen on
+     * @param level     Map and player positions, the map must be Config.MapWidth x Config.MapHeight
+     */
+    public ServerGameApp(String hostName, int port, Level level) {
+        this(app -> new GameServer(app, hostName, port), level);
+    }
+
+    /**
+     * @param gameServerFactory Creates the GameServer of this app, e.g. one sharing its SocketServer with other games
+     */
+    protected ServerGameApp(Function<ServerGameApp, ? extends GameServer> gameServerFactory, Level level) {
         gameMap = new GameMap(Config.MapWidth, Config.MapHeight);
-        gameServer = new GameServer(this);
-        scene = new Scene(gameMap, new ServerSceneUpdater(gameServer));
-        level = new Level(Config.level1TileMap, Config.level1HumanPlayerPositions, Config.level1ComputerPlayerPositions);
+        gameServer = gameServerFactory.apply(this);
+        sceneReplicator = new SceneReplicator();
+        scene = new Scene(gameMap, new ServerSceneUpdater(gameServer, sceneReplicator));
+        this.level = level;
         sceneTilesInitializer = new SceneTilesInitializer(scene);
-        clientIdsAndSpriteIdsNames = new HashMap<>();
+        // Clients enter on the network thread
+        clientIdsAndSpriteIdsNames = new ConcurrentHashMap<>();
         players = new HashSet<>();
+        playersById = new IntObjectMap<>();
+        playersBySpriteId = new IntObjectMap<>();
 
 
         initializeEventDispatcher();
@@ -97,13 +141,7 @@ public class ServerGameApp {
 //                pause = false;
 //                return;
             } else if (e.getKeyCode() == KeyCodes.VK_F1) {
-                pause = false;
-                for (int clientId : clientIdsAndSpriteIdsNames.keySet()) {
-                    gameServer.sendAction(
-                            new GameAction.GameInitialize(-1, clientIdsAndSpriteIdsNames.get(clientId).first, clientIdsAndSpriteIdsNames.get(clientId).second),
-                            clientId);
-                }
-                gameServer.sendAction(new GameAction.GameStart(-1));
+                startGame();
             }
 //            else if (e.getKeyCode() == KeyCodes.VK_F2) {
 //                pause = true;
@@ -115,6 +153,25 @@ public class ServerGameApp {
         });
     }
 
+    /**
+     * Tell every entered client its sprite and start the game.
+     */
+    public void startGame() {
+        pause = false;
+        for (Map.Entry<Integer, Pair<Integer, String>> entry : clientIdsAndSpriteIdsNames.entrySet()) {
+            gameServer.sendAction(new GameAction.GameInitialize(-1, entry.getValue().first, entry.getValue().second),
+                    entry.getKey());
+        }
+        gameServer.sendAction(new GameAction.GameStart(-1));
+    }
+
+    /**
+     * A client left or its connection was closed.
+     */
+    public void clientExited(int clientId) {
+        sceneReplicator.removeClient(clientId);
+    }
+
     protected void initializeMapTileAndLevel() {
         // ------ Initialize tiles ------
         sceneTilesInitializer.initializeTiles(level);
@@ -123,25 +180,29 @@ public class ServerGameApp {
         String[] names = {"Alice", "Bob", "Tom", "Jerry"};
         int index = 0;
         for (IntPair position : level.computerPlayerPositions) {
-            Snake computerSnake = new Snake(Scene.getNextSpriteId(), scene);
+            Snake computerSnake = new Snake(scene.getNextSpriteId(), scene);
             ComputerPlayer computerSnakePlayer = new ComputerPlayer(gameServer, computerSnake, Direction.down, index + 100, names[index++]);
             computerSnake.setPos(position.first, position.second);
             scene.getSceneUpdater().addSprite(computerSnake);
 
-            players.add(computerSnakePlayer);
+            addPlayer(computerSnakePlayer);
         }
     }
 
     protected void initializeServer() {
-        new Thread(new GameServer.GameServerRunnable(gameServer)).start();
+        gameServerThread = new Thread(new GameServer.GameServerRunnable(gameServer), "GameServer");
+        gameServerThread.start();
     }
 
     public void resetAll() {
         gameMap.resetAll();
         scene.resetAll();
+        sceneReplicator.resetAll();
 
         // Reset players
         players.clear();
+        playersById.clear();
+        playersBySpriteId.clear();
 
         initializeMapTileAndLevel();
     }
@@ -174,6 +235,8 @@ public class ServerGameApp {
     }
 
     public void OnUpdate(float timestep) {
+        // Actions of clients are performed here, so the game is confined to the tick thread
+        gameServer.handleReceived();
         if (pause) {
             return;
         }
@@ -189,7 +252,20 @@ public class ServerGameApp {
     }
 
     public void OnDestroy() {
-        gameServer.close();
+        if (gameServerThread == null) {
+            gameServer.close();
+            return;
+        }
+        // The network thread closes the SocketServer when its loop ends
+        gameServer.stop();
+        try {
+            gameServerThread.join(TimeUnit.SECONDS.toMillis(1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (gameServerThread.isAlive()) {
+            Log.app().error(getClass().getName() + ": GameServer thread did not stop!");
+        }
     }
 
 }
@@ -5,6 +5,7 @@ import com.pandaawake.gourdgame.main.ClientGameApp;
 import com.pandaawake.gourdgame.network.data.action.Action;
 import com.pandaawake.gourdgame.network.data.data.ClientDataProcessor;
 import com.pandaawake.gourdgame.network.data.performer.ClientActionPerformer;
+import com.pandaawake.gourdgame.network.data.socket.LoopMetrics;
 import com.pandaawake.gourdgame.network.data.socket.SocketClient;
 
 import java.io.IOException;
@@ -21,6 +22,11 @@ public class GameClient {
 
     public void stop() {
         running = false;
+        socketClient.wakeup();
+    }
+
+    public LoopMetrics getLoopMetrics() {
+        return socketClient.getLoopMetrics();
     }
 
     private final SocketClient socketClient;
@@ -77,6 +83,7 @@ public class GameClient {
             while (gameClient.isRunning()) {
                 gameClient.run();
             }
+            Log.app().info("GameClient loop stopped, " + gameClient.getLoopMetrics());
             gameClient.socketClient.close();
         }
     }
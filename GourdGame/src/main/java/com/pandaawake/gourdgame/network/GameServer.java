@@ -2,19 +2,26 @@ package com.pandaawake.gourdgame.network;
 
 import com.mandas.tiled2d.core.Log;
 import com.mandas.tiled2d.utils.Pair;
+import com.pandaawake.gourdgame.Config;
 import com.pandaawake.gourdgame.main.ServerGameApp;
 import com.pandaawake.gourdgame.network.data.action.Action;
 import com.pandaawake.gourdgame.network.data.data.ServerDataProcessor;
 import com.pandaawake.gourdgame.network.data.performer.ServerActionPerformer;
+import com.pandaawake.gourdgame.network.data.socket.LoopMetrics;
 import com.pandaawake.gourdgame.network.data.socket.SocketServer;
+import com.pandaawake.gourdgame.utils.BufferPool;
 
-import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 
 public class GameServer {
     
-    private boolean running = true;
+    private volatile boolean running = true;    // Cleared by stop() on another thread
 
     public boolean isRunning() {
         return running;
@@ -22,26 +29,72 @@ public class GameServer {
 
     public void stop() {
         running = false;
+        socketServer.wakeup();
+    }
+
+    public LoopMetrics getLoopMetrics() {
+        return socketServer.getLoopMetrics();
     }
 
     private final SocketServer socketServer;
     private final ServerDataProcessor dataProcessor;
     private final ServerActionPerformer actionPerformer;
+    private final Queue<Pair<Integer, byte[]>> received = new ConcurrentLinkedQueue<>();    // Client id -> data
 
     public GameServer(ServerGameApp app) {
-        socketServer = new SocketServer();
+        this(app, Config.ServerHostName, Config.ServerPort);
+    }
+
+    public GameServer(ServerGameApp app, String hostName, int port) {
+        this(app, new SocketServer(hostName, port));
+    }
+
+    /**
+     * @param socketServer  May be shared with other games, see write() and getClientIds()
+     */
+    protected GameServer(ServerGameApp app, SocketServer socketServer) {
+        this.socketServer = socketServer;
         dataProcessor = new ServerDataProcessor();
         actionPerformer = new ServerActionPerformer(app);
         actionPerformer.setGameServer(this);
     }
 
     public void sendAction(Action action) {
-        try {
-            byte[] data = dataProcessor.actionToData(action);
-            socketServer.addDataToWrite(data);
-        } catch (IOException e) {
-            Log.app().error(getClass().getName() + ": IOException when sendAction!");
-            e.printStackTrace();
+        byte[] data = dataProcessor.actionToData(action);
+        write(data);
+    }
+
+    /**
+     * Send several actions to all clients in one frame.
+     * @param actions Actions to send
+     */
+    public void sendActions(Collection<Action> actions) {
+        if (actions.isEmpty()) {
+            return;
+        }
+        byte[] data = dataProcessor.actionsToData(actions);
+        write(data);
+    }
+
+    /**
+     * Send [actions] to all clients, each client gets its own action appended in the same frame.
+     * @param actions Actions shared by all clients
+     * @param clientActions clientId -> Action only for this client
+     */
+    public void sendActions(Collection<Action> actions, Map<Integer, ? extends Action> clientActions) {
+        byte[] sharedData = dataProcessor.actionsToData(actions);
+        for (int clientId : new ArrayList<>(getClientIds())) {
+            byte[] data = sharedData;
+            Action clientAction = clientActions.get(clientId);
+            if (clientAction != null) {
+                data = BufferPool.toBytes(buffer -> {
+                    buffer.put(sharedData);
+                    dataProcessor.writeAction(clientAction, buffer);
+                });
+            }
+            if (data.length > 0) {
+                write(data, clientId);
+            }
         }
     }
 
@@ -58,13 +111,8 @@ public class GameServer {
     // }
 
     public void sendAction(Action action, int targetId) {
-        try {
-            byte[] data = dataProcessor.actionToData(action);
-            socketServer.addDataToWrite(data, targetId);
-        } catch (IOException e) {
-            Log.app().error(getClass().getName() + ": IOException when sendAction!");
-            e.printStackTrace();
-        }
+        byte[] data = dataProcessor.actionToData(action);
+        write(data, targetId);
     }
 
     public void close() {
@@ -76,7 +124,24 @@ public class GameServer {
     void run() {
         socketServer.run();
         while (socketServer.hasDataToHandle()) {
-            Pair<Integer, byte[]> data = socketServer.pollDataToHandle();
+            received.offer(socketServer.pollDataToHandle());
+        }
+    }
+
+    /**
+     * Queue data received from a client, its actions are performed by the next handleReceived().
+     */
+    protected void receive(int clientId, byte[] data) {
+        received.offer(new Pair<>(clientId, data));
+    }
+
+    /**
+     * Perform the actions received since the last call. Called on the game's tick, so the game is only
+     * touched by one thread and the I/O thread never waits for it.
+     */
+    public void handleReceived() {
+        Pair<Integer, byte[]> data;
+        while ((data = received.poll()) != null) {
             List<Action> actions = dataProcessor.dataToActions(data.first, data.second);
             for (Action action : actions) {
                 actionPerformer.performAction(action);
@@ -84,6 +149,25 @@ public class GameServer {
         }
     }
 
+    // ------------------- Transport, overridden when several games share one SocketServer -------------------
+    /**
+     * Ids of the clients in this game.
+     */
+    protected Collection<Integer> getClientIds() {
+        return socketServer.getClientIds();
+    }
+
+    /**
+     * Send data to every client in this game.
+     */
+    protected void write(byte[] data) {
+        socketServer.addDataToWrite(data);
+    }
+
+    protected void write(byte[] data, int clientId) {
+        socketServer.addDataToWrite(data, clientId);
+    }
+
 
 
     public static class GameServerRunnable implements Runnable {
@@ -98,6 +182,7 @@ public class GameServer {
             while (gameServer.isRunning()) {
                 gameServer.run();
             }
+            Log.app().info("GameServer loop stopped, " + gameServer.getLoopMetrics());
             gameServer.socketServer.close();
         }
     }
@@ -22,6 +22,14 @@ public abstract class ConnectionAction extends Action {
 
     }
 
+    public static class ClientRequestResync extends ConnectionAction {
+
+        public ClientRequestResync(int senderClientId) {
+            super(senderClientId);
+        }
+
+    }
+
     public static class ClientSuccessfullyAccepted extends ConnectionAction {
 
         public int playerId;
@@ -1,10 +1,9 @@
 package com.pandaawake.gourdgame.network.data.action;
 
-import com.mandas.tiled2d.core.Log;
+import com.pandaawake.gourdgame.utils.BufferWritable;
 import com.pandaawake.gourdgame.utils.DataUtils;
 
-import java.io.ByteArrayInputStream;
-import java.io.IOException;
+import java.nio.ByteBuffer;
 
 public abstract class GameAction extends Action {
 
@@ -49,7 +48,7 @@ public abstract class GameAction extends Action {
 
     }
 
-    public static class GameInitialize extends GameAction {
+    public static class GameInitialize extends GameAction implements BufferWritable {
         public int spriteId;
         public String playerName;
 
@@ -59,25 +58,15 @@ public abstract class GameAction extends Action {
             this.playerName = playerName;
         }
 
-        public byte[] toBytes() throws IOException {
-            return DataUtils.concatBytes(DataUtils.intToBytes(spriteId), DataUtils.addLengthHeader(playerName.getBytes()));
+        @Override
+        public void writeTo(ByteBuffer buffer) {
+            buffer.putInt(spriteId);
+            DataUtils.writeString(buffer, playerName);
         }
 
-        public static GameInitialize parseBytes(int senderClientId, ByteArrayInputStream iStream) throws IOException {
-            byte[] fourBytes = new byte[4];
-            if (iStream.read(fourBytes) != 4) {
-                Log.app().error("GameInitialize.parseBytes() : Illegal data format!");
-            }
-            int spriteId = DataUtils.bytesToInt(fourBytes);
-            if (iStream.read(fourBytes) != 4) {
-                Log.app().error("GameInitialize.parseBytes() : Illegal data format!");
-            }
-            int strBytesLen = DataUtils.bytesToInt(fourBytes);
-            byte[] strBytes = new byte[strBytesLen];
-            if (iStream.read(strBytes) != strBytesLen) {
-                Log.app().error("GameInitialize.parseBytes() : Illegal data format!");
-            }
-            String playerName = new String(strBytes);
+        public static GameInitialize readFrom(int senderClientId, ByteBuffer buffer) {
+            int spriteId = buffer.getInt();
+            String playerName = DataUtils.readString(buffer);
             return new GameInitialize(senderClientId, spriteId, playerName);
         }
     }
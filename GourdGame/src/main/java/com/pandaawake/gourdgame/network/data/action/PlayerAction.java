@@ -1,14 +1,13 @@
 package com.pandaawake.gourdgame.network.data.action;
 
 import com.mandas.tiled2d.core.Log;
-import com.pandaawake.gourdgame.utils.DataUtils;
+import com.pandaawake.gourdgame.utils.BufferWritable;
 import com.pandaawake.gourdgame.utils.Direction;
 
-import java.io.ByteArrayInputStream;
-import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.Date;
 
-public abstract class PlayerAction extends Action {
+public abstract class PlayerAction extends Action implements BufferWritable {
     // Player action numbers
     public static final int PLAYER_NO_ACTION = 0;
     public static final int PLAYER_DO_MOVE = 1;
@@ -31,32 +30,22 @@ public abstract class PlayerAction extends Action {
         time = new Date();
     }
 
-    public byte[] toBytes() throws IOException {
-        // [spriteId] [this.toBytes()]
-        // this.toBytes() = [type number (4)] [otherInfoNumbers (0 or 4)]
-        return DataUtils.intToBytes(spriteId);
+    @Override
+    public void writeTo(ByteBuffer buffer) {
+        // [spriteId] [this.writeTo()]
+        // this.writeTo() = [type number (4)] [otherInfoNumbers (0, or 8 of DoMove: direction and sequence)]
+        buffer.putInt(spriteId);
     }
 
-    public static PlayerAction parseBytes(int senderClientId, ByteArrayInputStream iStream) throws IOException {
-
-        byte[] fourBytes = new byte[4];
-        if (iStream.read(fourBytes) != 4) {
-            Log.app().error("PlayerAction.parseBytes() : Illegal data format!");
-        }
-        int spriteId = DataUtils.bytesToInt(fourBytes);
-        if (iStream.read(fourBytes) != 4) {
-            Log.app().error("PlayerAction.parseBytes() : Illegal data format!");
-        }
-        int playerActionNumber = DataUtils.bytesToInt(fourBytes);
+    public static PlayerAction readFrom(int senderClientId, ByteBuffer buffer) {
+        int spriteId = buffer.getInt();
+        int playerActionNumber = buffer.getInt();
 
         switch (playerActionNumber) {
             case PLAYER_NO_ACTION:
                 return new NoAction(senderClientId, spriteId);
             case PLAYER_DO_MOVE:
-                if (iStream.read(fourBytes) != 4) {
-                    Log.app().error("PlayerAction.parseBytes() : Illegal data format!");
-                }
-                int directionNumber = DataUtils.bytesToInt(fourBytes);
+                int directionNumber = buffer.getInt();
                 Direction direction = null;
 
                 switch (directionNumber) {
@@ -73,7 +62,7 @@ public abstract class PlayerAction extends Action {
                         direction = Direction.down;
                         break;
                 }
-                return new DoMove(senderClientId, spriteId, direction);
+                return new DoMove(senderClientId, spriteId, direction, buffer.getInt());
 
             case PLAYER_SET_BOMB:
                 return new SetBomb(senderClientId, spriteId);
@@ -159,16 +148,24 @@ public abstract class PlayerAction extends Action {
         }
 
         @Override
-        public byte[] toBytes() throws IOException {
-            return DataUtils.concatBytes(super.toBytes(), DataUtils.intToBytes(PLAYER_NO_ACTION));
+        public void writeTo(ByteBuffer buffer) {
+            super.writeTo(buffer);
+            buffer.putInt(PLAYER_NO_ACTION);
         }
     }
 
     public static class DoMove extends PlayerAction {
         public Direction direction;
+        public int sequence;        // Input sequence of a predicted move, echoed by the server; 0 if not predicted
+
         public DoMove(int senderClientId, int spriteId, Direction direction) {
+            this(senderClientId, spriteId, direction, 0);
+        }
+
+        public DoMove(int senderClientId, int spriteId, Direction direction, int sequence) {
             super(senderClientId, spriteId);
             this.direction = direction;
+            this.sequence = sequence;
         }
 
         @Override
@@ -177,25 +174,24 @@ public abstract class PlayerAction extends Action {
         }
 
         @Override
-        public byte[] toBytes() throws IOException {
-            byte[] data1 = super.toBytes();
-            byte[] data2 = DataUtils.intToBytes(PLAYER_DO_MOVE);
-            byte[] data3 = null;
-            switch (((DoMove) this).direction) {
+        public void writeTo(ByteBuffer buffer) {
+            super.writeTo(buffer);
+            buffer.putInt(PLAYER_DO_MOVE);
+            switch (direction) {
                 case left:
-                    data3 = DataUtils.intToBytes(EXTRA_INFO_DIRECTION_LEFT);
+                    buffer.putInt(EXTRA_INFO_DIRECTION_LEFT);
                     break;
                 case up:
-                    data3 = DataUtils.intToBytes(EXTRA_INFO_DIRECTION_UP);
+                    buffer.putInt(EXTRA_INFO_DIRECTION_UP);
                     break;
                 case right:
-                    data3 = DataUtils.intToBytes(EXTRA_INFO_DIRECTION_RIGHT);
+                    buffer.putInt(EXTRA_INFO_DIRECTION_RIGHT);
                     break;
                 case down:
-                    data3 = DataUtils.intToBytes(EXTRA_INFO_DIRECTION_DOWN);
+                    buffer.putInt(EXTRA_INFO_DIRECTION_DOWN);
                     break;
             }
-            return DataUtils.concatBytes(data1, data2, data3);
+            buffer.putInt(sequence);
         }
     }
 
@@ -210,8 +206,9 @@ public abstract class PlayerAction extends Action {
         }
 
         @Override
-        public byte[] toBytes() throws IOException {
-            return DataUtils.concatBytes(super.toBytes(), DataUtils.intToBytes(PLAYER_SET_BOMB));
+        public void writeTo(ByteBuffer buffer) {
+            super.writeTo(buffer);
+            buffer.putInt(PLAYER_SET_BOMB);
         }
     }
 
@@ -226,8 +223,9 @@ public abstract class PlayerAction extends Action {
         }
 
         @Override
-        public byte[] toBytes() throws IOException {
-            return DataUtils.concatBytes(super.toBytes(), DataUtils.intToBytes(PLAYER_EXPLODE_BOMB));
+        public void writeTo(ByteBuffer buffer) {
+            super.writeTo(buffer);
+            buffer.putInt(PLAYER_EXPLODE_BOMB);
         }
     }
     
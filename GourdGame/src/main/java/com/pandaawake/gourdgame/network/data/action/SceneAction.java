@@ -1,18 +1,19 @@
 package com.pandaawake.gourdgame.network.data.action;
 
 import com.mandas.tiled2d.core.Log;
+import com.pandaawake.gourdgame.network.replication.SpriteDelta;
 import com.pandaawake.gourdgame.scene.Scene;
 import com.pandaawake.gourdgame.sprites.Sprite;
 import com.pandaawake.gourdgame.tiles.Thing;
+import com.pandaawake.gourdgame.utils.BufferWritable;
 import com.pandaawake.gourdgame.utils.DataUtils;
 
-import java.io.ByteArrayInputStream;
-import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.HashSet;
-import java.util.Objects;
+import java.util.List;
 import java.util.Set;
 
-public abstract class SceneAction extends Action {
+public abstract class SceneAction extends Action implements BufferWritable {
 
     // Scene action numbers
     public static final int ADD_SPRITES = 1;
@@ -23,32 +24,36 @@ public abstract class SceneAction extends Action {
     public static final int REMOVE_THINGS = 5;
     public static final int UPDATE_THINGS = 6;
 
+    public static final int SYNC_SPRITES = 7;
+    public static final int UPDATE_SPRITE_DELTAS = 8;
+
     public SceneAction(int senderClientId) {
         super(senderClientId);
     }
 
-    public abstract byte[] toBytes() throws IOException;
-
-    public static SceneAction parseBytes(int senderClientId, ByteArrayInputStream iStream, Scene scene) throws IOException {
-        byte[] fourBytes = new byte[4];
-        iStream.read(fourBytes);
-        int sceneActionId = DataUtils.bytesToInt(fourBytes);
+    public static SceneAction readFrom(int senderClientId, ByteBuffer buffer, Scene scene) {
+        int sceneActionId = buffer.getInt();
         switch (sceneActionId) {
             case ADD_SPRITES:
-                return AddSprites.parseBytes(senderClientId, iStream, scene);
+                return AddSprites.readFrom(senderClientId, buffer, scene);
             case REMOVE_SPRITES:
-                return RemoveSprites.parseBytes(senderClientId, iStream, scene);
+                return RemoveSprites.readFrom(senderClientId, buffer, scene);
             case UPDATE_SPRITES:
-                return UpdateSprites.parseBytes(senderClientId, iStream, scene);
+                return UpdateSprites.readFrom(senderClientId, buffer, scene);
 
             case ADD_THINGS:
-                return AddThings.parseBytes(senderClientId, iStream, scene);
+                return AddThings.readFrom(senderClientId, buffer, scene);
             case REMOVE_THINGS:
-                return RemoveThings.parseBytes(senderClientId, iStream, scene);
+                return RemoveThings.readFrom(senderClientId, buffer, scene);
             case UPDATE_THINGS:
-                return UpdateThings.parseBytes(senderClientId, iStream, scene);
+                return UpdateThings.readFrom(senderClientId, buffer, scene);
+
+            case SYNC_SPRITES:
+                return SyncSprites.readFrom(senderClientId, buffer, scene);
+            case UPDATE_SPRITE_DELTAS:
+                return UpdateSpriteDeltas.readFrom(senderClientId, buffer);
             default:
-                Log.app().error("SceneAction.parseBytes() : Illegal data format!");
+                Log.app().error("SceneAction.readFrom() : Illegal data format!");
                 break;
         }
         return null;
@@ -63,17 +68,16 @@ public abstract class SceneAction extends Action {
             this.sprites = sprites;
         }
         
-        public byte[] toBytes() throws IOException {
+        @Override
+        public void writeTo(ByteBuffer buffer) {
             // [spriteCount (4)] [sprite, sprite, ..., sprite]
             // [sprite] = [spriteBytesCount(4)] [spriteBytes (spriteBytesCount)]
-            return DataUtils.concatBytes(DataUtils.intToBytes(ADD_SPRITES), DataUtils.collectionToBytes(sprites));
+            buffer.putInt(ADD_SPRITES);
+            DataUtils.writeCollection(buffer, sprites);
         }
 
-        public static AddSprites parseBytes(int senderClientId, ByteArrayInputStream iStream, Scene scene) throws IOException {
-            Set<Sprite> sprites = new HashSet<>();
-            for (byte[] infoBytes : Objects.requireNonNull(DataUtils.parseCollectionBytes(iStream))) {
-                sprites.add(Sprite.parseBytes(infoBytes, scene));
-            }
+        public static AddSprites readFrom(int senderClientId, ByteBuffer buffer, Scene scene) {
+            Set<Sprite> sprites = new HashSet<>(DataUtils.readCollection(buffer, elementBuffer -> Sprite.readFrom(elementBuffer, scene)));
             return new AddSprites(senderClientId, sprites);
         }
 
@@ -88,17 +92,16 @@ public abstract class SceneAction extends Action {
             this.sprites = sprites;
         }
 
-        public byte[] toBytes() throws IOException {
+        @Override
+        public void writeTo(ByteBuffer buffer) {
             // [spriteCount (4)] [sprite, sprite, ..., sprite]
             // [sprite] = [spriteBytesCount(4)] [spriteBytes (spriteBytesCount)]
-            return DataUtils.concatBytes(DataUtils.intToBytes(REMOVE_SPRITES), DataUtils.collectionToBytes(sprites));
+            buffer.putInt(REMOVE_SPRITES);
+            DataUtils.writeCollection(buffer, sprites);
         }
 
-        public static RemoveSprites parseBytes(int senderClientId, ByteArrayInputStream iStream, Scene scene) throws IOException {
-            Set<Sprite> sprites = new HashSet<>();
-            for (byte[] infoBytes : Objects.requireNonNull(DataUtils.parseCollectionBytes(iStream))) {
-                sprites.add(Sprite.parseBytes(infoBytes, scene));
-            }
+        public static RemoveSprites readFrom(int senderClientId, ByteBuffer buffer, Scene scene) {
+            Set<Sprite> sprites = new HashSet<>(DataUtils.readCollection(buffer, elementBuffer -> Sprite.readFrom(elementBuffer, scene)));
             return new RemoveSprites(senderClientId, sprites);
         }
 
@@ -113,23 +116,98 @@ public abstract class SceneAction extends Action {
             this.sprites = sprites;
         }
 
-        public byte[] toBytes() throws IOException {
+        @Override
+        public void writeTo(ByteBuffer buffer) {
             // [spriteCount (4)] [sprite, sprite, ..., sprite]
             // [sprite] = [spriteBytesCount(4)] [spriteBytes (spriteBytesCount)]
-            return DataUtils.concatBytes(DataUtils.intToBytes(UPDATE_SPRITES), DataUtils.collectionToBytes(sprites));
+            buffer.putInt(UPDATE_SPRITES);
+            DataUtils.writeCollection(buffer, sprites);
         }
 
-        public static UpdateSprites parseBytes(int senderClientId, ByteArrayInputStream iStream, Scene scene) throws IOException {
-            Set<Sprite> sprites = new HashSet<>();
-            for (byte[] infoBytes : Objects.requireNonNull(DataUtils.parseCollectionBytes(iStream))) {
-                sprites.add(Sprite.parseBytes(infoBytes, scene));
-            }
+        public static UpdateSprites readFrom(int senderClientId, ByteBuffer buffer, Scene scene) {
+            Set<Sprite> sprites = new HashSet<>(DataUtils.readCollection(buffer, elementBuffer -> Sprite.readFrom(elementBuffer, scene)));
             return new UpdateSprites(senderClientId, sprites);
         }
 
     }
 
 
+    public static class SyncSprites extends SceneAction {
+
+        /**
+         * Full snapshot of all sprites, the client should replace its sprites with these.
+         */
+        public Set<Sprite> sprites;
+        public int inputSequence;       // Last predicted input of the receiving client the server performed
+        public double serverTime;       // Seconds the server's scene has been updated when this was sent
+
+        public SyncSprites(int senderClientId, Set<Sprite> sprites) {
+            this(senderClientId, sprites, 0, 0.0);
+        }
+
+        public SyncSprites(int senderClientId, Set<Sprite> sprites, int inputSequence, double serverTime) {
+            super(senderClientId);
+            this.sprites = sprites;
+            this.inputSequence = inputSequence;
+            this.serverTime = serverTime;
+        }
+
+        @Override
+        public void writeTo(ByteBuffer buffer) {
+            // [inputSequence (4)] [serverTime (8)] [spriteCount (4)] [sprite, sprite, ..., sprite]
+            // [sprite] = [spriteBytesCount(4)] [spriteBytes (spriteBytesCount)]
+            buffer.putInt(SYNC_SPRITES);
+            buffer.putInt(inputSequence);
+            buffer.putDouble(serverTime);
+            DataUtils.writeCollection(buffer, sprites);
+        }
+
+        public static SyncSprites readFrom(int senderClientId, ByteBuffer buffer, Scene scene) {
+            int inputSequence = buffer.getInt();
+            double serverTime = buffer.getDouble();
+            Set<Sprite> sprites = new HashSet<>(DataUtils.readCollection(buffer, elementBuffer -> Sprite.readFrom(elementBuffer, scene)));
+            return new SyncSprites(senderClientId, sprites, inputSequence, serverTime);
+        }
+
+    }
+
+    public static class UpdateSpriteDeltas extends SceneAction {
+
+        public List<SpriteDelta> deltas;
+        public int inputSequence;       // Last predicted input of the receiving client the server performed
+        public double serverTime;       // Seconds the server's scene has been updated when this was sent
+
+        public UpdateSpriteDeltas(int senderClientId, List<SpriteDelta> deltas) {
+            this(senderClientId, deltas, 0, 0.0);
+        }
+
+        public UpdateSpriteDeltas(int senderClientId, List<SpriteDelta> deltas, int inputSequence, double serverTime) {
+            super(senderClientId);
+            this.deltas = deltas;
+            this.inputSequence = inputSequence;
+            this.serverTime = serverTime;
+        }
+
+        @Override
+        public void writeTo(ByteBuffer buffer) {
+            // [inputSequence (4)] [serverTime (8)] [deltaCount (4)] [delta, delta, ..., delta]
+            // [delta] = [deltaBytesCount(4)] [deltaBytes (deltaBytesCount)]
+            buffer.putInt(UPDATE_SPRITE_DELTAS);
+            buffer.putInt(inputSequence);
+            buffer.putDouble(serverTime);
+            DataUtils.writeCollection(buffer, deltas);
+        }
+
+        public static UpdateSpriteDeltas readFrom(int senderClientId, ByteBuffer buffer) {
+            int inputSequence = buffer.getInt();
+            double serverTime = buffer.getDouble();
+            List<SpriteDelta> deltas = DataUtils.readCollection(buffer, SpriteDelta::readFrom);
+            return new UpdateSpriteDeltas(senderClientId, deltas, inputSequence, serverTime);
+        }
+
+    }
+
+
     public static class AddThings extends SceneAction {
 
         public Set<Thing> things;
@@ -139,17 +217,16 @@ public abstract class SceneAction extends Action {
             this.things = things;
         }
 
-        public byte[] toBytes() throws IOException {
-            // [spriteCount (4)] [sprite, sprite, ..., sprite]
-            // [sprite] = [spriteBytesCount(4)] [spriteBytes (spriteBytesCount)]
-            return DataUtils.concatBytes(DataUtils.intToBytes(ADD_THINGS), DataUtils.collectionToBytes(things));
+        @Override
+        public void writeTo(ByteBuffer buffer) {
+            // [thingCount (4)] [thing, thing, ..., thing]
+            // [thing] = [thingBytesCount(4)] [thingBytes (thingBytesCount)]
+            buffer.putInt(ADD_THINGS);
+            DataUtils.writeCollection(buffer, things);
         }
 
-        public static AddThings parseBytes(int senderClientId, ByteArrayInputStream iStream, Scene scene) throws IOException {
-            Set<Thing> things = new HashSet<>();
-            for (byte[] infoBytes : Objects.requireNonNull(DataUtils.parseCollectionBytes(iStream))) {
-                things.add(Thing.parseBytes(infoBytes, scene));
-            }
+        public static AddThings readFrom(int senderClientId, ByteBuffer buffer, Scene scene) {
+            Set<Thing> things = new HashSet<>(DataUtils.readCollection(buffer, elementBuffer -> Thing.readFrom(elementBuffer, scene)));
             return new AddThings(senderClientId, things);
         }
 
@@ -164,17 +241,16 @@ public abstract class SceneAction extends Action {
             this.things = things;
         }
 
-        public byte[] toBytes() throws IOException {
-            // [spriteCount (4)] [sprite, sprite, ..., sprite]
-            // [sprite] = [spriteBytesCount(4)] [spriteBytes (spriteBytesCount)]
-            return DataUtils.concatBytes(DataUtils.intToBytes(REMOVE_THINGS), DataUtils.collectionToBytes(things));
+        @Override
+        public void writeTo(ByteBuffer buffer) {
+            // [thingCount (4)] [thing, thing, ..., thing]
+            // [thing] = [thingBytesCount(4)] [thingBytes (thingBytesCount)]
+            buffer.putInt(REMOVE_THINGS);
+            DataUtils.writeCollection(buffer, things);
         }
 
-        public static RemoveThings parseBytes(int senderClientId, ByteArrayInputStream iStream, Scene scene) throws IOException {
-            Set<Thing> things = new HashSet<>();
-            for (byte[] infoBytes : Objects.requireNonNull(DataUtils.parseCollectionBytes(iStream))) {
-                things.add(Thing.parseBytes(infoBytes, scene));
-            }
+        public static RemoveThings readFrom(int senderClientId, ByteBuffer buffer, Scene scene) {
+            Set<Thing> things = new HashSet<>(DataUtils.readCollection(buffer, elementBuffer -> Thing.readFrom(elementBuffer, scene)));
             return new RemoveThings(senderClientId, things);
         }
 
@@ -189,17 +265,16 @@ public abstract class SceneAction extends Action {
             this.things = things;
         }
 
-        public byte[] toBytes() throws IOException {
-            // [spriteCount (4)] [sprite, sprite, ..., sprite]
-            // [sprite] = [spriteBytesCount(4)] [spriteBytes (spriteBytesCount)]
-            return DataUtils.concatBytes(DataUtils.intToBytes(UPDATE_THINGS), DataUtils.collectionToBytes(things));
+        @Override
+        public void writeTo(ByteBuffer buffer) {
+            // [thingCount (4)] [thing, thing, ..., thing]
+            // [thing] = [thingBytesCount(4)] [thingBytes (thingBytesCount)]
+            buffer.putInt(UPDATE_THINGS);
+            DataUtils.writeCollection(buffer, things);
         }
 
-        public static UpdateThings parseBytes(int senderClientId, ByteArrayInputStream iStream, Scene scene) throws IOException {
-            Set<Thing> things = new HashSet<>();
-            for (byte[] infoBytes : Objects.requireNonNull(DataUtils.parseCollectionBytes(iStream))) {
-                things.add(Thing.parseBytes(infoBytes, scene));
-            }
+        public static UpdateThings readFrom(int senderClientId, ByteBuffer buffer, Scene scene) {
+            Set<Thing> things = new HashSet<>(DataUtils.readCollection(buffer, elementBuffer -> Thing.readFrom(elementBuffer, scene)));
             return new UpdateThings(senderClientId, things);
         }
 
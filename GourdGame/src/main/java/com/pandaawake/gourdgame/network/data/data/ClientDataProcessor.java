@@ -5,8 +5,8 @@ import com.pandaawake.gourdgame.network.data.action.*;
 import com.pandaawake.gourdgame.scene.Scene;
 import com.pandaawake.gourdgame.utils.DataUtils;
 
-import java.io.ByteArrayInputStream;
-import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -23,19 +23,11 @@ public class ClientDataProcessor extends DataProcessor {
     @Override
     public List<Action> dataToActions(int senderClientId, byte[] data) {
         List<Action> result = new ArrayList<>();
-        ByteArrayInputStream iStream = new ByteArrayInputStream(data);
+        ByteBuffer buffer = ByteBuffer.wrap(data);
 
         try {
-            while (true) {
-                byte[] fourBytes = new byte[4];
-                int numRead = iStream.read(fourBytes);
-                if (numRead == -1) {
-                    break;
-                }
-                if (numRead != 4) {
-                    Log.app().error(this.getClass().getName() + "dataToActions: Illegal data format!");
-                }
-                int number = DataUtils.bytesToInt(fourBytes);
+            while (buffer.hasRemaining()) {
+                int number = buffer.getInt();
                 switch (number) {
                     // Game Signals
                     case GAME_START:
@@ -48,31 +40,17 @@ public class ClientDataProcessor extends DataProcessor {
                         result.add(new GameAction.GameResume(senderClientId));
                         break;
                     case GAME_END:
-                        if (iStream.read(fourBytes) != 4) {
-                            Log.app().error(this.getClass().getName() + "dataToActions: Illegal data format!");
-                        }
-                        boolean humanWins = (DataUtils.bytesToInt(fourBytes) == 1);
+                        boolean humanWins = (buffer.getInt() == 1);
                         result.add(new GameAction.GameEnd(senderClientId, humanWins));
                         break;
 
                     // Connection Signals
                     case SERVER_CLIENT_SUCCESSFULLY_ACCEPTED:
-                        if (iStream.read(fourBytes) != 4) {
-                            Log.app().error(this.getClass().getName() + "dataToActions: Illegal data format!");
-                        }
-                        int playerId = DataUtils.bytesToInt(fourBytes);
+                        int playerId = buffer.getInt();
                         result.add(new ConnectionAction.ClientSuccessfullyAccepted(senderClientId, playerId));
                         break;
                     case SERVER_CLIENT_UNSUCCESSFULLY_ACCEPTED:
-                        if (iStream.read(fourBytes) != 4) {
-                            Log.app().error(this.getClass().getName() + "dataToActions: Illegal data format!");
-                        }
-                        int errorReasonBytesLen = DataUtils.bytesToInt(fourBytes);
-                        byte[] errorReasonBytes = new byte[errorReasonBytesLen];
-                        if (iStream.read(errorReasonBytes) != errorReasonBytesLen) {
-                            Log.app().error(this.getClass().getName() + "dataToActions: Illegal data format!");
-                        }
-                        String errorReason = new String(errorReasonBytes);
+                        String errorReason = DataUtils.readString(buffer);
                         result.add(new ConnectionAction.ClientUnsuccessfullyAccepted(senderClientId, errorReason));
                         break;
                     case SERVER_CLOSED:
@@ -81,15 +59,15 @@ public class ClientDataProcessor extends DataProcessor {
 
                     // Player Action Signals
                     case SERVER_GAME_INITIALIZE:
-                        result.add(GameAction.GameInitialize.parseBytes(senderClientId, iStream));
+                        result.add(GameAction.GameInitialize.readFrom(senderClientId, buffer));
                         break;
                     case SERVER_CLIENT_PLAYER_ACTION:
-                        result.add(PlayerAction.parseBytes(senderClientId, iStream));
+                        result.add(PlayerAction.readFrom(senderClientId, buffer));
                         break;
 
                     // Scene Action Signals
                     case SERVER_SCENE_ACTION:
-                        result.add(SceneAction.parseBytes(senderClientId, iStream, scene));
+                        result.add(SceneAction.readFrom(senderClientId, buffer, scene));
                         break;
 
                     default:
@@ -97,8 +75,8 @@ public class ClientDataProcessor extends DataProcessor {
                         break;
                 }
             }
-        } catch (IOException e) {
-            Log.app().error(this.getClass().getName() + ": IOException when dataToActions!");
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            Log.app().error(this.getClass().getName() + ": dataToActions: Illegal data format!");
             e.printStackTrace();
         }
 
@@ -108,32 +86,32 @@ public class ClientDataProcessor extends DataProcessor {
 
     // ---------------------- Describes which data to send ----------------------
     @Override
-    protected byte[] actionToData(GameAction action) throws IOException {
-        return null;
+    protected void writeAction(GameAction action, ByteBuffer buffer) {
+        // Game actions are only sent by the server
     }
 
     @Override
-    protected byte[] actionToData(ConnectionAction action) throws IOException {
+    protected void writeAction(ConnectionAction action, ByteBuffer buffer) {
         if (action instanceof ConnectionAction.ClientEnter) {
-            return DataUtils.intToBytes(CLIENT_ENTER);
+            buffer.putInt(CLIENT_ENTER);
         } else if (action instanceof ConnectionAction.ClientExit) {
-            return DataUtils.intToBytes(CLIENT_EXIT);
+            buffer.putInt(CLIENT_EXIT);
+        } else if (action instanceof ConnectionAction.ClientRequestResync) {
+            buffer.putInt(CLIENT_REQUEST_RESYNC);
         } else {
             Log.app().error(this.getClass().getName() + ": Null action or illegal action to send!");
         }
-        return null;
     }
 
     @Override
-    protected byte[] actionToData(PlayerAction action) throws IOException {
-        byte[] number = DataUtils.intToBytes(CLIENT_SERVER_PLAYER_ACTION);
-        byte[] actionBytes = action.toBytes();
-        return DataUtils.concatBytes(number, actionBytes);
+    protected void writeAction(PlayerAction action, ByteBuffer buffer) {
+        buffer.putInt(CLIENT_SERVER_PLAYER_ACTION);
+        action.writeTo(buffer);
     }
 
     @Override
-    protected byte[] actionToData(SceneAction action) throws IOException {
-        return null;
+    protected void writeAction(SceneAction action, ByteBuffer buffer) {
+        // Scene actions are only sent by the server
     }
 
 }
@@ -2,8 +2,10 @@ package com.pandaawake.gourdgame.network.data.data;
 
 import com.mandas.tiled2d.core.Log;
 import com.pandaawake.gourdgame.network.data.action.*;
+import com.pandaawake.gourdgame.utils.BufferPool;
 
-import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Collection;
 import java.util.List;
 
 public abstract class DataProcessor {
@@ -24,6 +26,7 @@ public abstract class DataProcessor {
     public static final int SERVER_CLIENT_SUCCESSFULLY_ACCEPTED = 202;
     public static final int SERVER_CLIENT_UNSUCCESSFULLY_ACCEPTED = 203;
     public static final int SERVER_CLOSED = 204;
+    public static final int CLIENT_REQUEST_RESYNC = 205;
 
     // Game Action Signals
     public static final int SERVER_GAME_INITIALIZE = 300;
@@ -36,24 +39,47 @@ public abstract class DataProcessor {
     // -------------- Functions --------------
     public abstract List<Action> dataToActions(int senderClientId, byte[] data);
 
-    protected abstract byte[] actionToData(GameAction action) throws IOException;
-    protected abstract byte[] actionToData(ConnectionAction action) throws IOException;
-    protected abstract byte[] actionToData(PlayerAction action) throws IOException;
-    protected abstract byte[] actionToData(SceneAction action) throws IOException;
+    protected abstract void writeAction(GameAction action, ByteBuffer buffer);
+    protected abstract void writeAction(ConnectionAction action, ByteBuffer buffer);
+    protected abstract void writeAction(PlayerAction action, ByteBuffer buffer);
+    protected abstract void writeAction(SceneAction action, ByteBuffer buffer);
 
-    public byte[] actionToData(Action action) throws IOException {
+    /**
+     * Write the action with its signal number straight into the buffer.
+     * @param action Action to write
+     * @param buffer Buffer to write
+     */
+    public void writeAction(Action action, ByteBuffer buffer) {
         if (action instanceof GameAction) {
-            return actionToData((GameAction) action);
+            writeAction((GameAction) action, buffer);
         } else if (action instanceof ConnectionAction) {
-            return actionToData((ConnectionAction) action);
+            writeAction((ConnectionAction) action, buffer);
         } else if (action instanceof PlayerAction) {
-            return actionToData((PlayerAction) action);
+            writeAction((PlayerAction) action, buffer);
         } else if (action instanceof SceneAction) {
-            return actionToData((SceneAction) action);
+            writeAction((SceneAction) action, buffer);
         } else {
             Log.app().error(getClass().getName() + ": Null action or unsupported action!");
         }
-        return null;
+    }
+
+    public void writeActions(Collection<Action> actions, ByteBuffer buffer) {
+        for (Action action : actions) {
+            writeAction(action, buffer);
+        }
+    }
+
+    public byte[] actionToData(Action action) {
+        return BufferPool.toBytes(buffer -> writeAction(action, buffer));
+    }
+
+    /**
+     * Pack several actions into one payload, so that they are sent in one frame.
+     * @param actions Actions to pack
+     * @return Data of all actions
+     */
+    public byte[] actionsToData(Collection<Action> actions) {
+        return BufferPool.toBytes(buffer -> writeActions(actions, buffer));
     }
 
 }
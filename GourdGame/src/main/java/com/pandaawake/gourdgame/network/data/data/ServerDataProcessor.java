@@ -4,8 +4,8 @@ import com.mandas.tiled2d.core.Log;
 import com.pandaawake.gourdgame.network.data.action.*;
 import com.pandaawake.gourdgame.utils.DataUtils;
 
-import java.io.ByteArrayInputStream;
-import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -19,19 +19,11 @@ public class ServerDataProcessor extends DataProcessor {
     @Override
     public List<Action> dataToActions(int senderClientId, byte[] data) {
         List<Action> result = new ArrayList<>();
-        ByteArrayInputStream iStream = new ByteArrayInputStream(data);
+        ByteBuffer buffer = ByteBuffer.wrap(data);
 
         try {
-            while (true) {
-                byte[] fourBytes = new byte[4];
-                int numRead = iStream.read(fourBytes);
-                if (numRead == -1) {
-                    break;
-                }
-                if (numRead != 4) {
-                    Log.app().error(this.getClass().getName() + "dataToActions: Illegal data format!");
-                }
-                int number = DataUtils.bytesToInt(fourBytes);
+            while (buffer.hasRemaining()) {
+                int number = buffer.getInt();
                 switch (number) {
                     // Connection Signals
                     case CLIENT_ENTER:
@@ -40,18 +32,21 @@ public class ServerDataProcessor extends DataProcessor {
                     case CLIENT_EXIT:
                         result.add(new ConnectionAction.ClientExit(senderClientId));
                         break;
+                    case CLIENT_REQUEST_RESYNC:
+                        result.add(new ConnectionAction.ClientRequestResync(senderClientId));
+                        break;
 
                     // Player Action Signals
                     case CLIENT_SERVER_PLAYER_ACTION:
-                        result.add(PlayerAction.parseBytes(senderClientId, iStream));
+                        result.add(PlayerAction.readFrom(senderClientId, buffer));
                         break;
                     default:
                         Log.app().error(this.getClass().getName() + ": Received some illegal data?");
                         break;
                 }
             }
-        } catch (IOException e) {
-            Log.app().error(this.getClass().getName() + ": IOException when dataToActions!");
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            Log.app().error(this.getClass().getName() + ": dataToActions: Illegal data format!");
             e.printStackTrace();
         }
         return result;
@@ -60,60 +55,47 @@ public class ServerDataProcessor extends DataProcessor {
 
     // ---------------------- Describes which data to send ----------------------
     @Override
-    protected byte[] actionToData(GameAction action) throws IOException {
+    protected void writeAction(GameAction action, ByteBuffer buffer) {
         if (action instanceof GameAction.GameStart) {
-            return DataUtils.intToBytes(GAME_START);
+            buffer.putInt(GAME_START);
         } else if (action instanceof GameAction.GamePause) {
-            return DataUtils.intToBytes(GAME_PAUSE);
+            buffer.putInt(GAME_PAUSE);
         } else if (action instanceof GameAction.GameResume) {
-            return DataUtils.intToBytes(GAME_RESUME);
+            buffer.putInt(GAME_RESUME);
         } else if (action instanceof GameAction.GameEnd) {
-            return DataUtils.concatBytes(
-                    DataUtils.intToBytes(GAME_END),
-                    DataUtils.intToBytes(((GameAction.GameEnd) action).humanWins ? 1 : 0)
-            );
+            buffer.putInt(GAME_END);
+            buffer.putInt(((GameAction.GameEnd) action).humanWins ? 1 : 0);
         } else if (action instanceof GameAction.GameInitialize) {
-            byte[] number = DataUtils.intToBytes(SERVER_GAME_INITIALIZE);
-            byte[] actionBytes = ((GameAction.GameInitialize) action).toBytes();
-            return DataUtils.concatBytes(number, actionBytes);
+            buffer.putInt(SERVER_GAME_INITIALIZE);
+            ((GameAction.GameInitialize) action).writeTo(buffer);
         }
-        return null;
     }
 
     @Override
-    protected byte[] actionToData(ConnectionAction action) throws IOException {
+    protected void writeAction(ConnectionAction action, ByteBuffer buffer) {
         if (action instanceof ConnectionAction.ClientSuccessfullyAccepted) {
-            return DataUtils.concatBytes(
-                    DataUtils.intToBytes(SERVER_CLIENT_SUCCESSFULLY_ACCEPTED),
-                    DataUtils.intToBytes(((ConnectionAction.ClientSuccessfullyAccepted) action).playerId)
-            );
+            buffer.putInt(SERVER_CLIENT_SUCCESSFULLY_ACCEPTED);
+            buffer.putInt(((ConnectionAction.ClientSuccessfullyAccepted) action).playerId);
         } else if (action instanceof ConnectionAction.ClientUnsuccessfullyAccepted) {
-            byte[] errorReasonBytes = ((ConnectionAction.ClientUnsuccessfullyAccepted) action).errorReason.getBytes();
-            return DataUtils.concatBytes(
-                    DataUtils.intToBytes(SERVER_CLIENT_UNSUCCESSFULLY_ACCEPTED),
-                    DataUtils.intToBytes(errorReasonBytes.length),
-                    errorReasonBytes
-            );
+            buffer.putInt(SERVER_CLIENT_UNSUCCESSFULLY_ACCEPTED);
+            DataUtils.writeString(buffer, ((ConnectionAction.ClientUnsuccessfullyAccepted) action).errorReason);
         } else if (action instanceof ConnectionAction.ServerClosed) {
-            return DataUtils.intToBytes(SERVER_CLOSED);
+            buffer.putInt(SERVER_CLOSED);
         } else {
             Log.app().error(this.getClass().getName() + ": Null action or illegal action to send!");
         }
-        return null;
     }
 
     @Override
-    protected byte[] actionToData(PlayerAction action) throws IOException {
-        byte[] number = DataUtils.intToBytes(SERVER_CLIENT_PLAYER_ACTION);
-        byte[] actionBytes = action.toBytes();
-        return DataUtils.concatBytes(number, actionBytes);
+    protected void writeAction(PlayerAction action, ByteBuffer buffer) {
+        buffer.putInt(SERVER_CLIENT_PLAYER_ACTION);
+        action.writeTo(buffer);
     }
 
     @Override
-    protected byte[] actionToData(SceneAction action) throws IOException {
-        byte[] number = DataUtils.intToBytes(SERVER_SCENE_ACTION);
-        byte[] actionBytes = action.toBytes();
-        return DataUtils.concatBytes(number, actionBytes);
+    protected void writeAction(SceneAction action, ByteBuffer buffer) {
+        buffer.putInt(SERVER_SCENE_ACTION);
+        action.writeTo(buffer);
     }
 
 }
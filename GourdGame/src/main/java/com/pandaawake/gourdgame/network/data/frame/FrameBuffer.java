@@ -0,0 +1,117 @@
+package com.pandaawake.gourdgame.network.data.frame;
+
+import com.pandaawake.gourdgame.Config;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+public class FrameBuffer {
+
+    /**
+     * Reassembly buffer of one connection.
+     * TCP may split a frame into several reads or merge several frames into one read,
+     * so bytes are accumulated here and only complete frames are handed out by pollFrame().
+     *
+     * The buffer always stays in write mode, unconsumed data lies in [frameStart, position).
+     */
+    private ByteBuffer buffer;
+    private int frameStart = 0;
+
+    public FrameBuffer() {
+        this(Config.FrameBufferInitialSize);
+    }
+
+    public FrameBuffer(int initialSize) {
+        buffer = ByteBuffer.allocate(Math.max(initialSize, FrameCodec.HEADER_LENGTH));
+    }
+
+    /**
+     * Read from the channel once, the buffer grows if there is no space left.
+     * @param channel Channel to read
+     * @return Count of bytes read, -1 if the channel has reached end-of-stream
+     */
+    public int readFrom(ReadableByteChannel channel) throws IOException {
+        ensureWritableSpace();
+        return channel.read(buffer);
+    }
+
+    /**
+     * Append bytes directly, mainly for feeding data that was not read from a channel.
+     * @param data Bytes to append
+     */
+    public void append(byte[] data) {
+        int offset = 0;
+        while (offset < data.length) {
+            ensureWritableSpace();
+            int length = Math.min(buffer.remaining(), data.length - offset);
+            buffer.put(data, offset, length);
+            offset += length;
+        }
+    }
+
+    /**
+     * Take out the next complete frame.
+     * @return Payload of the frame, null if no complete frame is buffered yet
+     * @throws IOException If the frame header is illegal, the connection should be closed then
+     */
+    public byte[] pollFrame() throws IOException {
+        int available = buffer.position() - frameStart;
+        if (available < FrameCodec.HEADER_LENGTH) {
+            resetIfConsumed();
+            return null;
+        }
+        int payloadLength = buffer.getInt(frameStart);
+        if (payloadLength < 0 || payloadLength > Config.MaxFrameLength) {
+            throw new IOException("Illegal frame length " + payloadLength + "!");
+        }
+        if (available < FrameCodec.HEADER_LENGTH + payloadLength) {
+            return null;
+        }
+        byte[] payload = new byte[payloadLength];
+        System.arraycopy(buffer.array(), buffer.arrayOffset() + frameStart + FrameCodec.HEADER_LENGTH,
+                payload, 0, payloadLength);
+        frameStart += FrameCodec.HEADER_LENGTH + payloadLength;
+        resetIfConsumed();
+        return payload;
+    }
+
+    /**
+     * @return Count of buffered bytes which are not handed out yet
+     */
+    public int pendingBytes() {
+        return buffer.position() - frameStart;
+    }
+
+    public void clear() {
+        buffer.clear();
+        frameStart = 0;
+    }
+
+    private void resetIfConsumed() {
+        if (frameStart == buffer.position()) {
+            clear();
+        }
+    }
+
+    private void ensureWritableSpace() {
+        if (buffer.hasRemaining()) {
+            return;
+        }
+        int pending = pendingBytes();
+        if (frameStart > 0) {
+            // Move the unfinished frame to the front
+            System.arraycopy(buffer.array(), buffer.arrayOffset() + frameStart, buffer.array(), buffer.arrayOffset(), pending);
+            buffer.position(pending);
+            frameStart = 0;
+            if (buffer.hasRemaining()) {
+                return;
+            }
+        }
+        ByteBuffer newBuffer = ByteBuffer.allocate(buffer.capacity() * 2);
+        buffer.flip();
+        newBuffer.put(buffer);
+        buffer = newBuffer;
+    }
+
+}
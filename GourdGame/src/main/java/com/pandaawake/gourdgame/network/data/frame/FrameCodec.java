@@ -0,0 +1,26 @@
+package com.pandaawake.gourdgame.network.data.frame;
+
+import java.nio.ByteBuffer;
+
+public class FrameCodec {
+
+    /**
+     * Every frame on the wire is [payloadLength (4)] [payload (payloadLength)].
+     * A payload holds one or more whole actions, so a DataProcessor never sees half an action.
+     */
+    public static final int HEADER_LENGTH = 4;
+
+    /**
+     * Wrap a payload into a frame.
+     * @param payload Data of one or more actions
+     * @return A frame buffer ready to be written (already flipped)
+     */
+    public static ByteBuffer encode(byte[] payload) {
+        ByteBuffer frame = ByteBuffer.allocate(HEADER_LENGTH + payload.length);
+        frame.putInt(payload.length);
+        frame.put(payload);
+        frame.flip();
+        return frame;
+    }
+
+}
@@ -93,14 +93,7 @@ public class ClientActionPerformer extends ActionPerformer {
 
     @Override
     protected void performAction(PlayerAction action) {
-        Sprite matchedSprite = null;
-
-        for (Sprite sprite : app.getScene().getSprites()) {
-            if (sprite.getId() == action.spriteId) {
-                matchedSprite = sprite;
-                break;
-            }
-        }
+        Sprite matchedSprite = app.getScene().getSpriteById(action.spriteId);
 
         if (matchedSprite == null) {
             return;
@@ -150,6 +143,12 @@ public class ClientActionPerformer extends ActionPerformer {
             app.getScene().getSceneUpdater().updateSprites(((SceneAction.UpdateSprites) action).sprites);
 //            app.getScene().getSprites().clear();
 //            app.getScene().getSprites().addAll(((SceneAction.UpdateSprites) action).sprites);
+        } else if (action instanceof SceneAction.SyncSprites) {
+            SceneAction.SyncSprites syncSprites = (SceneAction.SyncSprites) action;
+            app.getSceneUpdater().syncSprites(syncSprites.sprites, syncSprites.inputSequence, syncSprites.serverTime);
+        } else if (action instanceof SceneAction.UpdateSpriteDeltas) {
+            SceneAction.UpdateSpriteDeltas updateSpriteDeltas = (SceneAction.UpdateSpriteDeltas) action;
+            app.getSceneUpdater().updateSpriteDeltas(updateSpriteDeltas.deltas, updateSpriteDeltas.inputSequence, updateSpriteDeltas.serverTime);
         } else if (action instanceof SceneAction.AddThings) {
             for (Thing thing : ((SceneAction.AddThings) action).things) {
                 app.getScene().getSceneUpdater().addThing(thing);
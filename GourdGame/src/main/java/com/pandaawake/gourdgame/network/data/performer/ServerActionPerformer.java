@@ -1,6 +1,7 @@
 package com.pandaawake.gourdgame.network.data.performer;
 
 import com.mandas.tiled2d.core.Log;
+import com.mandas.tiled2d.utils.IntPair;
 import com.mandas.tiled2d.utils.Pair;
 import com.pandaawake.gourdgame.Config;
 import com.pandaawake.gourdgame.main.ServerGameApp;
@@ -11,12 +12,9 @@ import com.pandaawake.gourdgame.network.data.action.PlayerAction;
 import com.pandaawake.gourdgame.network.data.action.SceneAction;
 import com.pandaawake.gourdgame.player.HumanPlayer;
 import com.pandaawake.gourdgame.player.Player;
-import com.pandaawake.gourdgame.scene.Scene;
 import com.pandaawake.gourdgame.sprites.Calabash;
 import com.pandaawake.gourdgame.utils.Direction;
 
-import java.util.ArrayList;
-import java.util.List;
 
 public class ServerActionPerformer extends ActionPerformer {
 
@@ -41,17 +39,22 @@ public class ServerActionPerformer extends ActionPerformer {
         if (action instanceof ConnectionAction.ClientEnter) {
             Log.app().info("Client " + action.senderClientId + " Enter");
             // App: Allocate a Player for this client
-            int spriteId = Scene.getNextSpriteId();
+            int spriteId = app.getScene().getNextSpriteId();
             app.getClientIdsAndSpriteIdsNames().put(action.senderClientId, new Pair<>(spriteId, Config.playerNames[action.senderClientId]));
             Calabash humanCalabash = new Calabash(spriteId, app.getScene());
-            humanCalabash.setPos(Config.level1HumanPlayerPositions.get(action.senderClientId).first,
-                    Config.level1HumanPlayerPositions.get(action.senderClientId).second);
+            IntPair position = app.getLevel().humanPlayerPositions.get(action.senderClientId);
+            humanCalabash.setPos(position.first, position.second);
             app.getScene().getSceneUpdater().addSprite(humanCalabash);
-            app.getPlayers().add(new HumanPlayer(humanCalabash, action.senderClientId, Config.playerNames[action.senderClientId]));
+            app.addPlayer(new HumanPlayer(humanCalabash, action.senderClientId, Config.playerNames[action.senderClientId]));
+            app.getSceneReplicator().addClient(action.senderClientId);
             gameServer.sendAction(new ConnectionAction.ClientSuccessfullyAccepted(-1, action.senderClientId), action.senderClientId);
         } else if (action instanceof ConnectionAction.ClientExit) {
             // App: Remove this id and Player for this client
             //app.getPlayers().removeIf(player -> player.id == action.senderClientId);
+            app.clientExited(action.senderClientId);
+        } else if (action instanceof ConnectionAction.ClientRequestResync) {
+            Log.app().info("Client " + action.senderClientId + " requests resync");
+            app.getSceneReplicator().requestResync(action.senderClientId);
         } else {
             Log.app().error(getClass().getName() + ": Null action or illegal/unsupported action!");
         }
@@ -59,20 +62,12 @@ public class ServerActionPerformer extends ActionPerformer {
 
     @Override
     protected void performAction(PlayerAction action) {
-        List<Player> matchedPlayers = new ArrayList<>();
-        for (Player player : app.getPlayers()) {
-            if (player.sprite.getId() == action.spriteId) {
-                matchedPlayers.add(player);
-            }
-        }
-
-        if (matchedPlayers.size() != 1) {
+        Player matchedPlayer = app.getPlayerBySpriteId(action.spriteId);
+        if (matchedPlayer == null) {
             Log.app().error("No matched player?");
             return;
         }
 
-        Player matchedPlayer = matchedPlayers.get(0);
-
         if (action instanceof PlayerAction.NoAction) {
             // Do nothing
         } else if (action instanceof PlayerAction.DoMove) {
@@ -85,6 +80,11 @@ public class ServerActionPerformer extends ActionPerformer {
                 Log.file().trace(matchedPlayer.name + " DoMove " + direction.toString());
                 //gameServer.sendAction(action);
             }
+            int sequence = ((PlayerAction.DoMove) action).sequence;
+            if (sequence > 0) {
+                // Performed or refused, the client's prediction is checked against the state after it
+                app.getSceneReplicator().acknowledgeInput(action.senderClientId, sequence);
+            }
         } else if (action instanceof PlayerAction.SetBomb) {
             if (matchedPlayer.canSetBomb()) {
                 matchedPlayer.setBomb();
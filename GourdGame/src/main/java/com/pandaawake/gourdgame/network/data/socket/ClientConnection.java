@@ -0,0 +1,116 @@
+package com.pandaawake.gourdgame.network.data.socket;
+
+import com.pandaawake.gourdgame.network.data.frame.FrameBuffer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+
+public class ClientConnection {
+
+    /**
+     * A client connected to the SocketServer.
+     * Frames to send are queued in a bounded ring and written by gathering writes,
+     * a frame which is partially written stays at the head until the socket accepts the rest.
+     * Broadcast frames are read-only duplicates of one buffer, so every connection has its own position.
+     */
+    private final int clientId;
+    private final SocketChannel channel;
+    private final SelectionKey key;
+    private final FrameBuffer frameBuffer;
+
+    private final ByteBuffer[] outbound;
+    private int head = 0;
+    private int size = 0;
+    private boolean overflowed = false;    // The queue was full once, the connection is to be closed
+
+    public ClientConnection(int clientId, SocketChannel channel, SelectionKey key, int outboundCapacity) {
+        this.clientId = clientId;
+        this.channel = channel;
+        this.key = key;
+        this.frameBuffer = new FrameBuffer();
+        this.outbound = new ByteBuffer[outboundCapacity];
+    }
+
+    public int getClientId() {
+        return clientId;
+    }
+
+    public SocketChannel getChannel() {
+        return channel;
+    }
+
+    public SelectionKey getKey() {
+        return key;
+    }
+
+    public FrameBuffer getFrameBuffer() {
+        return frameBuffer;
+    }
+
+    /**
+     * Queue a frame to send.
+     * @param frame Frame ready to be written, this connection takes over its position
+     * @return false if the queue is full, which means the client can't keep up, or was full before
+     */
+    public boolean offer(ByteBuffer frame) {
+        synchronized (this) {
+            if (overflowed || size == outbound.length) {
+                return false;
+            }
+            outbound[(head + size) % outbound.length] = frame;
+            size++;
+            return true;
+        }
+    }
+
+    /**
+     * The queue overflowed, nothing is queued any more.
+     * @return true the first time only
+     */
+    public boolean markOverflowed() {
+        synchronized (this) {
+            if (overflowed) {
+                return false;
+            }
+            overflowed = true;
+            return true;
+        }
+    }
+
+    public boolean hasPendingWrites() {
+        synchronized (this) {
+            return size > 0;
+        }
+    }
+
+    /**
+     * Write queued frames until the queue is empty or the socket buffer is full.
+     * @return true if everything queued has been written
+     */
+    public boolean flush() throws IOException {
+        synchronized (this) {
+            while (size > 0) {
+                // Only the part till the end of the array is contiguous
+                int length = Math.min(size, outbound.length - head);
+                channel.write(outbound, head, length);
+
+                int framesWritten = 0;
+                while (size > 0 && !outbound[head].hasRemaining()) {
+                    outbound[head] = null;
+                    head = (head + 1) % outbound.length;
+                    size--;
+                    framesWritten++;
+                }
+                if (framesWritten < length) {
+                    // The socket buffer is full, wait for the next OP_WRITE
+                    return false;
+                }
+            }
+            head = 0;
+            return true;
+        }
+    }
+
+}
@@ -0,0 +1,64 @@
+package com.pandaawake.gourdgame.network.data.socket;
+
+/**
+ * Idle / busy time of an I/O loop.
+ * Time blocked in select() counts as idle, everything else as busy.
+ * Written by the loop thread only, may be read from any thread.
+ */
+public class LoopMetrics {
+
+    private volatile long idleNanos = 0;
+    private volatile long busyNanos = 0;
+    private volatile long iterations = 0;
+    private long lastMark = -1;
+
+    /**
+     * Call right before the loop blocks.
+     */
+    public void beginIdle() {
+        long now = System.nanoTime();
+        if (lastMark >= 0) {
+            busyNanos += now - lastMark;
+        }
+        lastMark = now;
+    }
+
+    /**
+     * Call right after the loop wakes up.
+     */
+    public void endIdle() {
+        long now = System.nanoTime();
+        if (lastMark >= 0) {
+            idleNanos += now - lastMark;
+        }
+        lastMark = now;
+        iterations++;
+    }
+
+    public long getIdleNanos() {
+        return idleNanos;
+    }
+
+    public long getBusyNanos() {
+        return busyNanos;
+    }
+
+    public long getIterations() {
+        return iterations;
+    }
+
+    /**
+     * @return Busy part of the measured time in [0, 1], 0 if nothing was measured
+     */
+    public double getUtilization() {
+        long idle = idleNanos, busy = busyNanos;
+        return idle + busy == 0 ? 0 : (double) busy / (idle + busy);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("idle=%.1fms busy=%.1fms iterations=%d utilization=%.2f%%",
+                idleNanos / 1e6, busyNanos / 1e6, iterations, getUtilization() * 100);
+    }
+
+}
@@ -3,14 +3,18 @@ package com.pandaawake.gourdgame.network.data.socket;
 import com.mandas.tiled2d.core.Log;
 import com.pandaawake.gourdgame.Config;
 import com.pandaawake.gourdgame.network.data.data.DataProcessor;
+import com.pandaawake.gourdgame.network.data.frame.FrameBuffer;
+import com.pandaawake.gourdgame.network.data.frame.FrameCodec;
 import com.pandaawake.gourdgame.utils.DataUtils;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.net.InetSocketAddress;
-import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
 import java.nio.channels.SocketChannel;
 import java.util.LinkedList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 
 // From https://github.com/arukshani/JavaIOAndNIO
@@ -18,14 +22,24 @@ import java.util.LinkedList;
  *
  * Test client for NIO server
  *
+ * Frames to send are queued like the server's (see ClientConnection) and written by run() on the I/O thread,
+ * OP_WRITE is only registered while data is pending, so a full socket buffer never makes a thread spin.
+ *
  */
 
 public class SocketClient {
 
     private final LinkedList<byte[]> dataRead;
+    private final FrameBuffer frameBuffer;
     
+    private final LoopMetrics loopMetrics = new LoopMetrics();
+
     private InetSocketAddress hostAddress;
     private SocketChannel channel;
+    private Selector selector;
+    private SelectionKey key;
+    private ClientConnection connection;        // Outbound queue of the channel
+    private final AtomicBoolean writeRequested = new AtomicBoolean(false);     // New data queued since the last run()
 
     public SocketClient() {
         hostAddress = new InetSocketAddress(Config.ServerHostName, Config.ServerPort);
@@ -33,34 +47,62 @@ public class SocketClient {
         try {
             channel = SocketChannel.open(hostAddress);
             channel.configureBlocking(false);
+            selector = Selector.open();
+            key = channel.register(selector, SelectionKey.OP_READ);
+            connection = new ClientConnection(-1, channel, key, Config.OutboundQueueCapacity);
         } catch (IOException e) {
             Log.app().fatal(this.getClass().getName() + ": IOException when creating SocketClient!");
             e.printStackTrace();
         }
 
         dataRead = new LinkedList<>();
+        frameBuffer = new FrameBuffer();
         Log.app().info(">>> SocketClient started <<<");
     }
 
     public void run() {
+        try {
+            registerWriteInterest();
+            // Block until the server sends something, the timeout lets the caller handle its remaining work
+            loopMetrics.beginIdle();
+            int readyCount = selector.select(Config.SelectTimeoutMillis);
+            loopMetrics.endIdle();
+            if (readyCount == 0) {
+                return;
+            }
+            selector.selectedKeys().clear();
+        } catch (IOException e) {
+            Log.app().fatal(this.getClass().getName() + ": IOException when selecting in SocketClient!");
+            e.printStackTrace();
+            return;
+        }
+        if (!key.isValid()) {
+            return;
+        }
+
+        if (key.isWritable()) {
+            write();
+        }
+        if (!key.isReadable()) {
+            return;
+        }
         synchronized (this) {
             try {
-                ByteBuffer buffer = ByteBuffer.allocate(4096);
-                ByteArrayOutputStream oStream = new ByteArrayOutputStream();
-                int numRead = channel.read(buffer);
-
-                while (numRead != 0 && numRead != -1) {
-                    oStream.write(buffer.array(), 0, numRead);
-                    buffer.clear();
-                    numRead = channel.read(buffer);
+                int numRead = frameBuffer.readFrom(channel);
+                while (numRead > 0) {
+                    // Only complete frames are handed to the DataProcessor
+                    byte[] frame;
+                    while ((frame = frameBuffer.pollFrame()) != null) {
+                        dataRead.offer(frame);
+                    }
+                    numRead = frameBuffer.readFrom(channel);
                 }
 
                 if (numRead == -1) {
-                    // TODO: Server closed
-                }
-
-                if (oStream.size() > 0) {
-                    dataRead.offer(oStream.toByteArray());
+                    // Server is gone, stop selecting on a dead channel
+                    Log.app().error(this.getClass().getName() + ": Connection closed by server!");
+                    dataRead.offer(DataUtils.intToBytes(DataProcessor.SERVER_CLOSED));
+                    key.cancel();
                 }
             } catch (IOException e) {
                 Log.app().fatal(this.getClass().getName() + ": IOException when running SocketClient!");
@@ -69,15 +111,52 @@ public class SocketClient {
         }
     }
 
+    private void write() {
+        try {
+            if (connection.flush()) {
+                // Nothing left, stop listening to OP_WRITE
+                key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+                if (connection.hasPendingWrites()) {
+                    // Some data was queued just now
+                    writeRequested.set(true);
+                }
+            }
+        } catch (IOException e) {
+            Log.app().fatal(this.getClass().getName() + ": IOException when writing in SocketClient!");
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Register OP_WRITE if new data was queued, must be called on the I/O thread.
+     */
+    private void registerWriteInterest() {
+        if (writeRequested.getAndSet(false) && key.isValid()) {
+            key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+        }
+    }
+
     // ------------------- Public functions -------------------
+    /**
+     * Queue data to send, it is written by run().
+     */
     public void writeData(byte[] data) throws IOException {
-        synchronized (this) {
-            ByteBuffer buffer = ByteBuffer.allocate(data.length);
-            buffer.put(data);
-            buffer.flip();
-            channel.write(buffer);
-            buffer.clear();
+        if (!connection.offer(FrameCodec.encode(data))) {
+            throw new IOException("Outbound queue is full, the server doesn't read");
         }
+        writeRequested.set(true);
+        selector.wakeup();
+    }
+
+    public LoopMetrics getLoopMetrics() {
+        return loopMetrics;
+    }
+
+    /**
+     * Make a blocking run() return as soon as possible.
+     */
+    public void wakeup() {
+        selector.wakeup();
     }
 
     public boolean hasDataToHandle() {
@@ -92,11 +171,24 @@ public class SocketClient {
         }
     }
 
+    /**
+     * Send what is still queued and a CLIENT_EXIT, then close. Called on the I/O thread after the last run().
+     */
     public void close() {
         synchronized (this) {
             try {
-                writeData(DataUtils.intToBytes(DataProcessor.CLIENT_EXIT));
+                // A full queue means the server doesn't read anyway, it notices the closed channel instead
+                connection.offer(FrameCodec.encode(DataUtils.intToBytes(DataProcessor.CLIENT_EXIT)));
+                if (key.isValid()) {
+                    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+                    key.interestOps(SelectionKey.OP_WRITE);
+                    while (!connection.flush() && System.nanoTime() < deadline) {
+                        selector.select(Config.SelectTimeoutMillis);
+                        selector.selectedKeys().clear();
+                    }
+                }
                 channel.close();
+                selector.close();
             } catch (IOException e) {
                 Log.app().fatal(this.getClass().getName() + ": IOException when closing SocketClient!");
                 e.printStackTrace();
@@ -4,9 +4,10 @@ import com.mandas.tiled2d.core.Log;
 import com.mandas.tiled2d.utils.Pair;
 import com.pandaawake.gourdgame.Config;
 import com.pandaawake.gourdgame.network.data.data.DataProcessor;
+import com.pandaawake.gourdgame.network.data.frame.FrameBuffer;
+import com.pandaawake.gourdgame.network.data.frame.FrameCodec;
 import com.pandaawake.gourdgame.utils.DataUtils;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.Socket;
@@ -17,50 +18,57 @@ import java.nio.channels.Selector;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 // From https://github.com/arukshani/JavaIOAndNIO
 /**
  *
  * This is a simple NIO based server.
  *
+ * Every client has its own outbound queue (see ClientConnection). Data can be queued from any thread,
+ * the selector is woken up and OP_WRITE is only registered while a client has data pending.
+ * A client whose queue overflows is closed on the I/O thread as well.
+ *
  */
 public class SocketServer {
 
     private Selector selector;
+    private ServerSocketChannel serverChannel;
 
-    private final Map<Integer, SocketChannel> clientChannels;
-    private final LinkedList<Pair<byte[], Set<SocketChannel>>> dataToWrite_SendedChannels;
-    private final LinkedList<Pair<byte[], Set<SocketChannel>>> dataToWrite_TargetChannels;
+    private final Map<Integer, ClientConnection> connections;
+    private final Queue<ClientConnection> connectionsToWrite;   // Connections with new data, handled on the I/O thread
+    private final Queue<ClientConnection> connectionsToClose;   // Overflowed connections, closed on the I/O thread
     private final LinkedList<Pair<Integer, byte[]>> dataRead;
+    private final LoopMetrics loopMetrics = new LoopMetrics();
     private int clientIdIter = 0;
 
-    private int getChannelIndex(SocketChannel channel) {
-        for (Map.Entry<Integer, SocketChannel> entry : clientChannels.entrySet()) {
-            if (channel.equals(entry.getValue())) {
-                return entry.getKey();
-            }
-        }
-        return -1;
+    public SocketServer() {
+        this(Config.ServerHostName, Config.ServerPort);
     }
 
-    public SocketServer() {
-        clientChannels = new HashMap<>();
-        dataToWrite_SendedChannels = new LinkedList<>();
-        dataToWrite_TargetChannels = new LinkedList<>();
+    /**
+     * @param hostName  Host name or address to listen on
+     * @param port      Port to listen on
+     */
+    public SocketServer(String hostName, int port) {
+        connections = new ConcurrentHashMap<>();
+        connectionsToWrite = new ConcurrentLinkedQueue<>();
+        connectionsToClose = new ConcurrentLinkedQueue<>();
         dataRead = new LinkedList<>();
 
         try {
-            InetSocketAddress listenAddress = new InetSocketAddress(Config.ServerHostName, Config.ServerPort);
+            InetSocketAddress listenAddress = new InetSocketAddress(hostName, port);
 
             this.selector = Selector.open();
-            ServerSocketChannel serverChannel = ServerSocketChannel.open();
+            serverChannel = ServerSocketChannel.open();
             serverChannel.configureBlocking(false);
 
             // bind server socket channel to port
             serverChannel.socket().bind(listenAddress);
             serverChannel.register(this.selector, SelectionKey.OP_ACCEPT);
 
-            Log.app().info("SocketServer started on port >> " + Config.ServerPort);
+            Log.app().info("SocketServer started on port >> " + port);
 
         } catch (IOException e) {
             Log.app().fatal(this.getClass().getName() + ": IOException when creating SocketServer!");
@@ -70,155 +78,188 @@ public class SocketServer {
 
     // accept client connection
     void accept(SelectionKey key) throws IOException {
-        synchronized (this) {
-            ServerSocketChannel serverChannel = (ServerSocketChannel) key.channel();
-            SocketChannel channel = serverChannel.accept();
-            channel.configureBlocking(false);
-            Socket socket = channel.socket();
-            SocketAddress remoteAddr = socket.getRemoteSocketAddress();
-            Log.app().info("Connected to: " + remoteAddr);
-            clientChannels.put(clientIdIter++, channel);
-
-            /*
-             * Register channel with selector for further IO (record it for read/write
-             * operations, here we have used read operation)
-             */
-            channel.register(this.selector, SelectionKey.OP_READ | SelectionKey.OP_WRITE);
-        }
+        ServerSocketChannel serverChannel = (ServerSocketChannel) key.channel();
+        SocketChannel channel = serverChannel.accept();
+        channel.configureBlocking(false);
+        Socket socket = channel.socket();
+        SocketAddress remoteAddr = socket.getRemoteSocketAddress();
+        Log.app().info("Connected to: " + remoteAddr);
+
+        /*
+         * Register channel with selector for further IO, OP_WRITE is added only when
+         * there's data to write
+         */
+        SelectionKey clientKey = channel.register(this.selector, SelectionKey.OP_READ);
+        ClientConnection connection = new ClientConnection(clientIdIter++, channel, clientKey, Config.OutboundQueueCapacity);
+        clientKey.attach(connection);
+        connections.put(connection.getClientId(), connection);
     }
 
     // read from the socket channel
-    void read(SelectionKey key) throws IOException {
-        synchronized (this) {
-            SocketChannel channel = (SocketChannel) key.channel();
-            ByteBuffer buffer = ByteBuffer.allocate(4096);
-
-            ByteArrayOutputStream oStream = new ByteArrayOutputStream();
-            int numRead = channel.read(buffer);
+    void read(ClientConnection connection) throws IOException {
+        FrameBuffer frameBuffer = connection.getFrameBuffer();
+        int clientId = connection.getClientId();
 
-            while (numRead != 0 && numRead != -1) {
-                oStream.write(buffer.array(), 0, numRead);
-                buffer.clear();
-                numRead = channel.read(buffer);
+        int numRead = frameBuffer.readFrom(connection.getChannel());
+        while (numRead > 0) {
+            // Only complete frames are handed to the DataProcessor
+            try {
+                byte[] frame;
+                while ((frame = frameBuffer.pollFrame()) != null) {
+                    synchronized (this) {
+                        dataRead.offer(new Pair<>(clientId, frame));
+                    }
+                }
+            } catch (IOException e) {
+                Log.app().error(getClass().getName() + ": " + e.getMessage() + " Closing client " + clientId);
+                closeConnection(connection);
+                return;
             }
+            numRead = frameBuffer.readFrom(connection.getChannel());
+        }
 
-            if (numRead == -1) {
-                // TODO: Client closed
-            }
+        if (numRead == -1) {
+            closeConnection(connection);
+        }
+    }
 
-            if (oStream.size() > 0) {
-                dataRead.offer(new Pair<>(getChannelIndex(channel), oStream.toByteArray()));
+    void write(ClientConnection connection) throws IOException {
+        if (connection.flush()) {
+            // Nothing left, stop listening to OP_WRITE
+            SelectionKey key = connection.getKey();
+            key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+            if (connection.hasPendingWrites()) {
+                // Some data was queued just now
+                connectionsToWrite.offer(connection);
             }
         }
     }
 
-    void write(SocketChannel channel, byte[] data) throws IOException {
-        synchronized (this) {
-            ByteBuffer buffer = ByteBuffer.allocate(data.length);
-            buffer.put(data, 0, data.length);
-            buffer.flip();
-            channel.write(buffer);
-            buffer.clear();
+    /**
+     * Register OP_WRITE for connections which have new data, must be called on the I/O thread.
+     */
+    void registerWriteInterests() {
+        ClientConnection connection;
+        while ((connection = connectionsToWrite.poll()) != null) {
+            SelectionKey key = connection.getKey();
+            if (key.isValid()) {
+                key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+            }
         }
     }
 
-    void processDataToWrite(SelectionKey key) throws IOException {
-        synchronized (this) {
-            SocketChannel channel = (SocketChannel) key.channel();
-            Set<Pair<byte[], Set<SocketChannel>>> entriesToRemove = new HashSet<>();
-
-            for (Pair<byte[], Set<SocketChannel>> entry : dataToWrite_SendedChannels) {
-                if (!entry.second.contains(channel)) {
-                    write(channel, entry.first);
-                    entry.second.add(channel);
-                    if (entry.second.size() == clientChannels.size()) {
-                        // Remove this entry
-                        entriesToRemove.add(entry);
-                    }
-                }
-            }
-            for (Pair<byte[], Set<SocketChannel>> entry : entriesToRemove) {
-                dataToWrite_SendedChannels.remove(entry);
-            }
-            entriesToRemove.clear();
-
-            for (Pair<byte[], Set<SocketChannel>> entry : dataToWrite_TargetChannels) {
-                if (entry.second.contains(channel)) {
-                    write(channel, entry.first);
-                    entry.second.remove(channel);
-                    if (entry.second.size() == 0) {
-                        // Remove this entry
-                        entriesToRemove.add(entry);
-                    }
-                }
-            }
-            for (Pair<byte[], Set<SocketChannel>> entry : entriesToRemove) {
-                dataToWrite_TargetChannels.remove(entry);
+    /**
+     * Close connections whose outbound queue overflowed, must be called on the I/O thread.
+     */
+    void closeOverflowedConnections() {
+        ClientConnection connection;
+        while ((connection = connectionsToClose.poll()) != null) {
+            Log.app().error(getClass().getName() + ": Outbound queue of client " + connection.getClientId() + " is full, closing it!");
+            try {
+                closeConnection(connection);
+            } catch (IOException e) {
+                Log.app().error(getClass().getName() + ": IOException when closing a slow client!");
+                e.printStackTrace();
             }
-            entriesToRemove.clear();
         }
     }
 
-    void closeConnection(SelectionKey key) throws IOException {
-        synchronized (this) {
-            SocketChannel channel = (SocketChannel) key.channel();
-            Socket socket = channel.socket();
-            SocketAddress remoteAddr = socket.getRemoteSocketAddress();
-            Log.app().info("Connection closed by client: " + remoteAddr);
-            channel.close();
-            key.cancel();
-
-            int matchedClientId = -1;
-            for (Map.Entry<Integer, SocketChannel> entry : clientChannels.entrySet()) {
-                if (entry.getValue().equals(channel)) {
-                    matchedClientId = entry.getKey();
-                    break;
-                }
-            }
+    void closeConnection(ClientConnection connection) throws IOException {
+        SocketChannel channel = connection.getChannel();
+        connection.getKey().cancel();
+        if (connections.remove(connection.getClientId()) == null) {
+            return;     // Already closed
+        }
+        Socket socket = channel.socket();
+        SocketAddress remoteAddr = socket.getRemoteSocketAddress();
+        Log.app().info("Connection closed by client: " + remoteAddr);
+        channel.close();
 
-            if (matchedClientId == -1) {
-                Log.app().error(getClass().getName() + ": No matched client id??");
-            }
+        // The client may be gone without saying goodbye, let the game know just like a CLIENT_EXIT
+        synchronized (this) {
+            dataRead.offer(new Pair<>(connection.getClientId(), DataUtils.intToBytes(DataProcessor.CLIENT_EXIT)));
+        }
+    }
 
-            clientChannels.remove(matchedClientId);
+    private void enqueue(ClientConnection connection, ByteBuffer frame) {
+        if (connection.offer(frame)) {
+            connectionsToWrite.offer(connection);
+            return;
+        }
+        // This may be any thread, the I/O thread closes it after the caller's wakeup
+        if (connection.markOverflowed()) {
+            connectionsToClose.offer(connection);
         }
     }
 
     // ------------------- Public functions -------------------
     public void addDataToWrite(byte[] dataToWrite) {
-        synchronized (this) {
-            dataToWrite_SendedChannels.offer(new Pair<>(dataToWrite, new HashSet<>()));
+        // All clients share one frame, each gets its own read-only view
+        ByteBuffer frame = FrameCodec.encode(dataToWrite);
+        for (ClientConnection connection : connections.values()) {
+            enqueue(connection, frame.asReadOnlyBuffer());
         }
+        selector.wakeup();
     }
 
     public void addDataToWrite(byte[] dataToWrite, Collection<Integer> ignoreList) {
-        synchronized (this) {
-            Set<SocketChannel> ignoreSet = new HashSet<>();
-            for (Integer ignoreId : ignoreList) {
-                SocketChannel channel = clientChannels.get(ignoreId);
-                if (channel == null) {
-                    Log.app().error(getClass().getName() + ": wrong id of channel!");
-                }
-                ignoreSet.add(channel);
+        for (Integer ignoreId : ignoreList) {
+            if (!connections.containsKey(ignoreId)) {
+                Log.app().error(getClass().getName() + ": wrong id of channel!");
+            }
+        }
+        ByteBuffer frame = FrameCodec.encode(dataToWrite);
+        for (ClientConnection connection : connections.values()) {
+            if (!ignoreList.contains(connection.getClientId())) {
+                enqueue(connection, frame.asReadOnlyBuffer());
             }
-            dataToWrite_SendedChannels.offer(new Pair<>(dataToWrite, ignoreSet));
         }
+        selector.wakeup();
     }
 
     public void addDataToWrite(byte[] dataToWrite, int targetId) {
-        synchronized (this) {
-            Set<SocketChannel> targetSet = new HashSet<>();
-            SocketChannel channel = clientChannels.get(targetId);
-            if (channel == null) {
-                Log.app().error(getClass().getName() + ": wrong id of channel!");
+        ClientConnection connection = connections.get(targetId);
+        if (connection == null) {
+            Log.app().error(getClass().getName() + ": wrong id of channel!");
+            return;
+        }
+        enqueue(connection, FrameCodec.encode(dataToWrite));
+        selector.wakeup();
+    }
+
+    /**
+     * Send to several clients sharing one frame, clients which are already closed are skipped.
+     */
+    public void addDataToWrite(byte[] dataToWrite, int[] targetIds) {
+        ByteBuffer frame = null;
+        for (int targetId : targetIds) {
+            ClientConnection connection = connections.get(targetId);
+            if (connection == null) {
+                continue;
             }
-            targetSet.add(channel);
-            dataToWrite_TargetChannels.offer(new Pair<>(dataToWrite, targetSet));
+            if (frame == null) {
+                frame = FrameCodec.encode(dataToWrite);
+            }
+            enqueue(connection, frame.asReadOnlyBuffer());
+        }
+        if (frame != null) {
+            selector.wakeup();
         }
     }
 
     public Set<Integer> getClientIds() {
-        return clientChannels.keySet();
+        return connections.keySet();
+    }
+
+    public LoopMetrics getLoopMetrics() {
+        return loopMetrics;
+    }
+
+    /**
+     * Make a blocking run() return as soon as possible.
+     */
+    public void wakeup() {
+        selector.wakeup();
     }
 
     public boolean hasDataToHandle() {
@@ -234,71 +275,76 @@ public class SocketServer {
     }
 
     public void run() {
-        synchronized (this) {
-            try {
-                // wait for events
-                int readyCount = selector.select();
-                if (readyCount == 0) {
-                    return;
-                }
+        try {
+            closeOverflowedConnections();
+            registerWriteInterests();
+
+            // wait for events, enqueuing data wakes the selector up
+            loopMetrics.beginIdle();
+            int readyCount = selector.select(Config.SelectTimeoutMillis);
+            loopMetrics.endIdle();
+            if (readyCount == 0) {
+                return;
+            }
 
-                // process selected keys...
-                Set<SelectionKey> readyKeys = selector.selectedKeys();
-                Iterator<SelectionKey> iterator = readyKeys.iterator();
-                while (iterator.hasNext()) {
-                    SelectionKey key = iterator.next();
+            // process selected keys...
+            Set<SelectionKey> readyKeys = selector.selectedKeys();
+            Iterator<SelectionKey> iterator = readyKeys.iterator();
+            while (iterator.hasNext()) {
+                SelectionKey key = iterator.next();
 
-                    // Remove key from set so we don't process it twice
-                    iterator.remove();
+                // Remove key from set so we don't process it twice
+                iterator.remove();
 
+                if (key.isAcceptable()) { // Accept client connections
+                    accept(key);
+                    continue;
+                }
+
+                ClientConnection connection = (ClientConnection) key.attachment();
+                try {
                     if (!key.isValid()) {
-                        closeConnection(key);
+                        closeConnection(connection);
                         continue;
                     }
-
-                    if (key.isAcceptable()) { // Accept client connections
-                        accept(key);
-                    } else {
-                        if (key.isReadable()) { // Read from client
-                            read(key);
-                        }
-                        if (key.isWritable()) { // Write to client
-                            processDataToWrite(key);
-                        }
+                    if (key.isReadable()) { // Read from client
+                        read(connection);
+                    }
+                    if (key.isValid() && key.isWritable()) { // Write to client
+                        write(connection);
                     }
+                } catch (IOException e) {
+                    Log.app().error(this.getClass().getName() + ": IOException with client " + connection.getClientId() + ", closing it!");
+                    closeConnection(connection);
                 }
-            } catch (IOException e) {
-                Log.app().fatal(this.getClass().getName() + ": IOException when running SocketServer!");
-                e.printStackTrace();
             }
+        } catch (IOException e) {
+            Log.app().fatal(this.getClass().getName() + ": IOException when running SocketServer!");
+            e.printStackTrace();
         }
     }
 
+    /**
+     * Say goodbye to every client and release the port, called by the I/O thread once it stops calling run().
+     */
     public void close() {
-        synchronized (this) {
-            try {
-                Set<SelectionKey> readyKeys = selector.selectedKeys();
-                Iterator<SelectionKey> iterator = readyKeys.iterator();
-                while (iterator.hasNext()) {
-                    SelectionKey key = iterator.next();
-                    // Remove key from set so we don't process it twice
-                    iterator.remove();
-                    if (!key.isValid()) {
-                        closeConnection(key);
-                        continue;
-                    }
-                    SocketChannel channel = (SocketChannel) key.channel();
-                    if (key.isWritable()) { // Write to client
-                        write(channel, DataUtils.intToBytes(DataProcessor.SERVER_CLOSED));
-                    }
-                    channel.close();
-                    key.cancel();
-                }
-                clientChannels.clear();
-            } catch (IOException e) {
-                Log.app().fatal(this.getClass().getName() + ": IOException when closing SocketServer!");
-                e.printStackTrace();
+        try {
+            ByteBuffer frame = FrameCodec.encode(DataUtils.intToBytes(DataProcessor.SERVER_CLOSED));
+            for (ClientConnection connection : connections.values()) {
+                // Best effort, the socket is non-blocking
+                connection.offer(frame.asReadOnlyBuffer());
+                connection.flush();
+                connection.getChannel().close();
+                connection.getKey().cancel();
+            }
+            connections.clear();
+            if (serverChannel != null) {
+                serverChannel.close();
             }
+            selector.close();
+        } catch (IOException e) {
+            Log.app().fatal(this.getClass().getName() + ": IOException when closing SocketServer!");
+            e.printStackTrace();
         }
     }
 
@@ -0,0 +1,155 @@
+package com.pandaawake.gourdgame.network.replication;
+
+import com.mandas.tiled2d.core.Log;
+import com.pandaawake.gourdgame.sprites.MovableSprite;
+import com.pandaawake.gourdgame.utils.Direction;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+
+/**
+ * Client-side prediction of the main player's sprite.
+ *
+ * A move is performed locally as soon as the key is pressed, and remembered with its input sequence
+ * until the server acknowledges it. Replicated position and status of the sprite are kept aside as the
+ * authoritative state instead of being applied. After every acknowledgement, the authoritative destination
+ * plus the steps of the moves still pending must be where the sprite is going, otherwise the sprite is put
+ * back to the authoritative state and the pending moves are replayed on top of it.
+ * Moves are whole tile steps, so a replayed move is finished at once instead of being simulated again.
+ */
+public class InputPredictor {
+
+    private static class PendingMove {
+        final int sequence;
+        final Direction direction;
+
+        PendingMove(int sequence, Direction direction) {
+            this.sequence = sequence;
+            this.direction = direction;
+        }
+    }
+
+    private final MovableSprite sprite;
+    private final ArrayDeque<PendingMove> pendingMoves = new ArrayDeque<>();
+    private SpriteDelta authoritative;     // Position and status last replicated by the server
+    private int corrections = 0;
+
+    public InputPredictor(MovableSprite sprite) {
+        this.sprite = sprite;
+        this.authoritative = SpriteDelta.capture(sprite);
+    }
+
+    public MovableSprite getSprite() {
+        return sprite;
+    }
+
+    public int getPendingCount() {
+        return pendingMoves.size();
+    }
+
+    /**
+     * How many times the prediction was wrong and the sprite was corrected.
+     */
+    public int getCorrections() {
+        return corrections;
+    }
+
+    /**
+     * Move the sprite locally, the same move is sent to the server with [sequence].
+     * @return Whether the sprite moved, a refused move is not pending since the server refuses it too
+     */
+    public boolean predictMove(Direction direction, int sequence) {
+        if (!sprite.doMove(direction)) {
+            return false;
+        }
+        pendingMoves.addLast(new PendingMove(sequence, direction));
+        return true;
+    }
+
+    /**
+     * A replicated delta of the predicted sprite: position and status become the authoritative state,
+     * other fields (e.g. lives) are applied as they are.
+     */
+    public void applyAuthoritativeDelta(SpriteDelta delta) {
+        if (delta.has(SpriteDelta.POSITION)) {
+            authoritative.posX = delta.posX;
+            authoritative.posY = delta.posY;
+        }
+        if (delta.has(SpriteDelta.STATUS)) {
+            authoritative.status = delta.status;
+            authoritative.targetX = delta.targetX;
+            authoritative.targetY = delta.targetY;
+        }
+        byte otherFields = (byte) (delta.mask & ~(SpriteDelta.POSITION | SpriteDelta.STATUS));
+        if (otherFields != 0) {
+            SpriteDelta others = new SpriteDelta(delta.spriteId);
+            others.mask = otherFields;
+            others.lives = delta.lives;
+            others.elapsedTime = delta.elapsedTime;
+            sprite.applyDelta(others);
+        }
+    }
+
+    /**
+     * A full snapshot was applied to the sprite, which is the authoritative state now.
+     */
+    public void snapshotApplied() {
+        authoritative = SpriteDelta.capture(sprite);
+        if (!pendingMoves.isEmpty()) {
+            // The snapshot put the sprite back, predict what is pending again
+            replay();
+        }
+    }
+
+    /**
+     * Drop the moves the server performed (or refused), and correct the sprite if the prediction was wrong.
+     * @param acknowledgedSequence Last input sequence the server performed
+     */
+    public void reconcile(int acknowledgedSequence) {
+        while (!pendingMoves.isEmpty() && pendingMoves.peekFirst().sequence <= acknowledgedSequence) {
+            pendingMoves.pollFirst();
+        }
+
+        int expectedX = Math.round(authoritative.status == MovableSprite.Status.Moving.number ? authoritative.targetX : authoritative.posX);
+        int expectedY = Math.round(authoritative.status == MovableSprite.Status.Moving.number ? authoritative.targetY : authoritative.posY);
+        for (PendingMove move : pendingMoves) {
+            expectedX += move.direction.getDeltaX();
+            expectedY += move.direction.getDeltaY();
+        }
+        if (expectedX != sprite.getDestinationX() || expectedY != sprite.getDestinationY()) {
+            corrections++;
+            Log.app().debug(getClass().getName() + ": Prediction of sprite " + sprite.getId() + " corrected to ("
+                    + expectedX + ", " + expectedY + "), " + pendingMoves.size() + " moves pending");
+            replay();
+        }
+    }
+
+    private void replay() {
+        SpriteDelta state = new SpriteDelta(authoritative.spriteId);
+        state.mask = SpriteDelta.POSITION | SpriteDelta.STATUS;
+        state.posX = authoritative.posX;
+        state.posY = authoritative.posY;
+        state.status = authoritative.status;
+        state.targetX = authoritative.targetX;
+        state.targetY = authoritative.targetY;
+        sprite.applyDelta(state);
+
+        Iterator<PendingMove> iterator = pendingMoves.iterator();
+        while (iterator.hasNext()) {
+            PendingMove move = iterator.next();
+            sprite.finishMove();
+            if (!sprite.doMove(move.direction)) {
+                // Blocked now, the server will refuse it as well
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Advance the local move, the client does not update the scene otherwise.
+     */
+    public void OnUpdate(float timestep) {
+        sprite.OnUpdate(timestep);
+    }
+
+}
@@ -0,0 +1,118 @@
+package com.pandaawake.gourdgame.network.replication;
+
+import com.pandaawake.gourdgame.network.data.action.SceneAction;
+import com.pandaawake.gourdgame.sprites.Sprite;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class SceneReplicator {
+
+    /**
+     * SceneReplicator decides what every client needs to know about the sprites each tick.
+     * For every client it keeps the last state it has been sent of every sprite (the baseline),
+     * and only sends the fields that differ from it. A full snapshot is sent when a client joins
+     * or asks for a resync.
+     *
+     * The socket is TCP, so everything sent arrives in order and a sent state is treated as acknowledged.
+     */
+    private final Map<Integer, Map<Integer, SpriteDelta>> baselines = new HashMap<>();  // clientId -> spriteId -> state
+    private final Set<Integer> clientsToSync = new HashSet<>();
+    private final Map<Integer, Integer> inputSequences = new HashMap<>();   // clientId -> last predicted input performed
+    private final Set<Integer> inputsToAcknowledge = new HashSet<>();       // Clients whose input sequence is not sent yet
+
+    public void addClient(int clientId) {
+        synchronized (this) {
+            baselines.put(clientId, new HashMap<>());
+            clientsToSync.add(clientId);
+        }
+    }
+
+    public void removeClient(int clientId) {
+        synchronized (this) {
+            baselines.remove(clientId);
+            clientsToSync.remove(clientId);
+            inputSequences.remove(clientId);
+            inputsToAcknowledge.remove(clientId);
+        }
+    }
+
+    /**
+     * A predicted input of the client was performed (or refused), its sequence is echoed by the next replicate().
+     */
+    public void acknowledgeInput(int clientId, int sequence) {
+        synchronized (this) {
+            if (baselines.containsKey(clientId)) {
+                inputSequences.put(clientId, sequence);
+                inputsToAcknowledge.add(clientId);
+            }
+        }
+    }
+
+    public void requestResync(int clientId) {
+        synchronized (this) {
+            if (baselines.containsKey(clientId)) {
+                clientsToSync.add(clientId);
+            }
+        }
+    }
+
+    public void resetAll() {
+        synchronized (this) {
+            clientsToSync.addAll(baselines.keySet());
+        }
+    }
+
+    /**
+     * Build the replication action of this tick for every client.
+     * @param sprites All sprites in the scene
+     * @param serverTime Seconds the scene has been updated, clients interpolate the sprites by it
+     * @return clientId -> SyncSprites or UpdateSpriteDeltas, clients with nothing changed are absent.
+     *         Both carry the client's last performed input, a new one is sent even if no sprite changed.
+     */
+    public Map<Integer, SceneAction> replicate(Set<Sprite> sprites, double serverTime) {
+        synchronized (this) {
+            Map<Integer, SpriteDelta> states = new HashMap<>();
+            for (Sprite sprite : sprites) {
+                states.put(sprite.getId(), SpriteDelta.capture(sprite));
+            }
+
+            Map<Integer, SceneAction> result = new HashMap<>();
+            for (Map.Entry<Integer, Map<Integer, SpriteDelta>> entry : baselines.entrySet()) {
+                int clientId = entry.getKey();
+                Map<Integer, SpriteDelta> baseline = entry.getValue();
+                int inputSequence = inputSequences.getOrDefault(clientId, 0);
+
+                if (clientsToSync.contains(clientId)) {
+                    result.put(clientId, new SceneAction.SyncSprites(-1, sprites, inputSequence, serverTime));
+                    baseline.clear();
+                    baseline.putAll(states);
+                    continue;
+                }
+
+                List<SpriteDelta> deltas = new ArrayList<>();
+                for (SpriteDelta state : states.values()) {
+                    SpriteDelta delta = state.diff(baseline.get(state.spriteId));
+                    if (delta != null) {
+                        deltas.add(delta);
+                    }
+                    baseline.put(state.spriteId, state);
+                }
+                // Removed sprites are told by RemoveSprites, just forget them
+                baseline.keySet().retainAll(states.keySet());
+
+                if (deltas.size() > 0 || inputsToAcknowledge.contains(clientId)) {
+                    result.put(clientId, new SceneAction.UpdateSpriteDeltas(-1, deltas, inputSequence, serverTime));
+                }
+            }
+            clientsToSync.clear();
+            inputsToAcknowledge.clear();
+            return result;
+        }
+    }
+
+}
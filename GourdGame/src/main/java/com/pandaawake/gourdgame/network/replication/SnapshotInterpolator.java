@@ -0,0 +1,195 @@
+package com.pandaawake.gourdgame.network.replication;
+
+import com.pandaawake.gourdgame.sprites.Sprite;
+import com.pandaawake.gourdgame.utils.IntObjectMap;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntFunction;
+
+/**
+ * Smooths the positions of remote sprites on a client.
+ *
+ * Replicated positions are buffered per sprite with the server time they were sent at, and the sprites are
+ * rendered [delay] seconds in the past, between the two buffered positions around that time. So the sprites
+ * move at an even pace however the frames arrive, and the server may replicate far less often than it ticks.
+ * If no newer position arrived, a moving sprite goes on with its last velocity for at most [maxExtrapolation]
+ * seconds, then waits there.
+ *
+ * The render clock runs on the client's timestep and is pulled towards the latest server time minus [delay],
+ * so the network delay itself does not matter, only how much it changes.
+ */
+public class SnapshotInterpolator {
+
+    private static final int BufferCapacity = 16;          // Positions kept per sprite, much longer than delay
+    private static final double ClockCorrection = 0.1;     // Part of the render clock's error corrected per frame
+    private static final double MaxClockError = 0.5;       // Seconds, a larger error jumps at once
+
+    /**
+     * Positions of one sprite, oldest first.
+     */
+    private static class Buffer {
+        final double[] times = new double[BufferCapacity];
+        final float[] xs = new float[BufferCapacity];
+        final float[] ys = new float[BufferCapacity];
+        final boolean[] moving = new boolean[BufferCapacity];   // Whether the sprite was moving at that time
+        int count = 0;
+
+        void add(double time, float x, float y, boolean isMoving) {
+            if (count > 0 && time < times[count - 1]) {
+                return;
+            }
+            if (count == BufferCapacity) {
+                System.arraycopy(times, 1, times, 0, count - 1);
+                System.arraycopy(xs, 1, xs, 0, count - 1);
+                System.arraycopy(ys, 1, ys, 0, count - 1);
+                System.arraycopy(moving, 1, moving, 0, count - 1);
+                count--;
+            }
+            times[count] = time;
+            xs[count] = x;
+            ys[count] = y;
+            moving[count] = isMoving;
+            count++;
+        }
+    }
+
+    private final float delay;
+    private final float maxExtrapolation;
+    private final float replicationInterval;
+    private final IntObjectMap<Buffer> buffers = new IntObjectMap<>();
+    private final List<Integer> spriteIds = new ArrayList<>();     // Keys of buffers
+    private double renderTime = 0.0;
+    private double latestServerTime = 0.0;
+    private boolean clockStarted = false;
+
+    /**
+     * @param delay                 Seconds rendered in the past, should cover two replication intervals
+     * @param maxExtrapolation      Max seconds a moving sprite goes on past its last position
+     * @param replicationInterval   Max seconds between two replicated positions of a moving sprite
+     */
+    public SnapshotInterpolator(float delay, float maxExtrapolation, float replicationInterval) {
+        this.delay = delay;
+        this.maxExtrapolation = maxExtrapolation;
+        this.replicationInterval = replicationInterval;
+    }
+
+    public double getRenderTime() {
+        return renderTime;
+    }
+
+    public int getSpriteCount() {
+        return spriteIds.size();
+    }
+
+    /**
+     * Replicated state sent at [serverTime] arrived.
+     */
+    public void onServerTime(double serverTime) {
+        latestServerTime = Math.max(latestServerTime, serverTime);
+        double error = (latestServerTime - delay) - renderTime;
+        if (!clockStarted || Math.abs(error) > MaxClockError) {
+            renderTime = latestServerTime - delay;
+            clockStarted = true;
+        } else {
+            renderTime += error * ClockCorrection;
+        }
+    }
+
+    /**
+     * Buffer the position of [sprite] replicated at [serverTime].
+     * @param moving Whether the sprite is moving, a sprite at rest is never extrapolated
+     */
+    public void addPosition(Sprite sprite, double serverTime, float x, float y, boolean moving) {
+        Buffer buffer = buffers.get(sprite.getId());
+        if (buffer == null) {
+            buffer = new Buffer();
+            buffers.put(sprite.getId(), buffer);
+            spriteIds.add(sprite.getId());
+            // Where the sprite is drawn now, e.g. since it was added
+            buffer.add(serverTime - replicationInterval, sprite.getX(), sprite.getY(), false);
+        } else {
+            int last = buffer.count - 1;
+            if (!buffer.moving[last] && buffer.times[last] < serverTime - replicationInterval) {
+                // It stood still until the previous replication at the latest, don't slide from long ago
+                buffer.add(serverTime - replicationInterval, buffer.xs[last], buffer.ys[last], false);
+            }
+        }
+        buffer.add(serverTime, x, y, moving);
+    }
+
+    /**
+     * Advance the render clock and move every buffered sprite to where it was at that time.
+     * @param scene Finds the sprites by id, sprites which are gone are forgotten
+     */
+    public void OnUpdate(float timestep, IntFunction<Sprite> scene) {
+        if (!clockStarted) {
+            return;
+        }
+        renderTime += timestep;
+
+        for (int i = spriteIds.size() - 1; i >= 0; i--) {
+            int spriteId = spriteIds.get(i);
+            Sprite sprite = scene.apply(spriteId);
+            if (sprite == null) {
+                buffers.remove(spriteId);
+                spriteIds.set(i, spriteIds.get(spriteIds.size() - 1));
+                spriteIds.remove(spriteIds.size() - 1);
+                continue;
+            }
+            Buffer buffer = buffers.get(spriteId);
+            float x, y;
+            int next = 0;
+            while (next < buffer.count && buffer.times[next] <= renderTime) {
+                next++;
+            }
+            if (next == 0) {
+                x = buffer.xs[0];
+                y = buffer.ys[0];
+            } else if (next < buffer.count) {
+                int previous = next - 1;
+                float t = (float) ((renderTime - buffer.times[previous]) / (buffer.times[next] - buffer.times[previous]));
+                x = buffer.xs[previous] + (buffer.xs[next] - buffer.xs[previous]) * t;
+                y = buffer.ys[previous] + (buffer.ys[next] - buffer.ys[previous]) * t;
+            } else {
+                int last = buffer.count - 1;
+                x = buffer.xs[last];
+                y = buffer.ys[last];
+                if (buffer.moving[last] && last > 0 && buffer.times[last] > buffer.times[last - 1]) {
+                    // Nothing newer arrived yet, go on for a moment
+                    float t = (float) (Math.min(renderTime - buffer.times[last], maxExtrapolation) / (buffer.times[last] - buffer.times[last - 1]));
+                    x += (buffer.xs[last] - buffer.xs[last - 1]) * t;
+                    y += (buffer.ys[last] - buffer.ys[last - 1]) * t;
+                }
+            }
+            if (x != sprite.getX() || y != sprite.getY()) {
+                sprite.setPos(x, y);
+            }
+        }
+    }
+
+    /**
+     * Stop moving the sprite, e.g. it is predicted from now on.
+     */
+    public void remove(int spriteId) {
+        if (buffers.remove(spriteId) != null) {
+            spriteIds.remove(Integer.valueOf(spriteId));
+        }
+    }
+
+    /**
+     * Forget every buffered position, e.g. a full snapshot was applied. The render clock is kept.
+     */
+    public void clear() {
+        buffers.clear();
+        spriteIds.clear();
+    }
+
+    public void resetAll() {
+        clear();
+        renderTime = 0.0;
+        latestServerTime = 0.0;
+        clockStarted = false;
+    }
+
+}
@@ -0,0 +1,142 @@
+package com.pandaawake.gourdgame.network.replication;
+
+import com.pandaawake.gourdgame.sprites.Bomb;
+import com.pandaawake.gourdgame.sprites.MovableSprite;
+import com.pandaawake.gourdgame.sprites.PlayableSprite;
+import com.pandaawake.gourdgame.sprites.Sprite;
+import com.pandaawake.gourdgame.utils.BufferWritable;
+
+import java.nio.ByteBuffer;
+
+public class SpriteDelta implements BufferWritable {
+
+    // Field masks
+    public static final byte POSITION = 1;      // posX, posY
+    public static final byte STATUS = 2;        // status, targetX, targetY
+    public static final byte LIVES = 4;         // lives
+    public static final byte BOMB_TIMER = 8;    // elapsedTime
+
+    /**
+     * Replicated state of one sprite.
+     * A captured state holds every field the sprite has, a delta only holds the fields in [mask].
+     */
+    public int spriteId;
+    public byte mask;
+    public float posX, posY;
+    public int status;
+    public float targetX, targetY;
+    public int lives;
+    public float elapsedTime;
+
+    public SpriteDelta(int spriteId) {
+        this.spriteId = spriteId;
+    }
+
+    public boolean has(byte field) {
+        return (mask & field) != 0;
+    }
+
+    /**
+     * Capture the current replicated state of the sprite.
+     * @param sprite Sprite to capture
+     * @return A full state
+     */
+    public static SpriteDelta capture(Sprite sprite) {
+        SpriteDelta state = new SpriteDelta(sprite.getId());
+        state.mask = POSITION;
+        state.posX = sprite.getX();
+        state.posY = sprite.getY();
+        if (sprite instanceof MovableSprite) {
+            MovableSprite movableSprite = (MovableSprite) sprite;
+            state.mask |= STATUS;
+            state.status = movableSprite.getStatus().number;
+            state.targetX = movableSprite.getTargetX();
+            state.targetY = movableSprite.getTargetY();
+        }
+        if (sprite instanceof PlayableSprite) {
+            state.mask |= LIVES;
+            state.lives = ((PlayableSprite) sprite).getLives();
+        }
+        if (sprite instanceof Bomb) {
+            state.mask |= BOMB_TIMER;
+            state.elapsedTime = ((Bomb) sprite).getElapsedTime();
+        }
+        return state;
+    }
+
+    /**
+     * Compare this full state with the state a client already has.
+     * @param baseline State the client already has, null if the client knows nothing about this sprite
+     * @return Delta with only the changed fields, null if nothing changed
+     */
+    public SpriteDelta diff(SpriteDelta baseline) {
+        if (baseline == null) {
+            return this;
+        }
+        SpriteDelta delta = new SpriteDelta(spriteId);
+        if (has(POSITION) && (posX != baseline.posX || posY != baseline.posY)) {
+            delta.mask |= POSITION;
+            delta.posX = posX;
+            delta.posY = posY;
+        }
+        if (has(STATUS) && (status != baseline.status || targetX != baseline.targetX || targetY != baseline.targetY)) {
+            delta.mask |= STATUS;
+            delta.status = status;
+            delta.targetX = targetX;
+            delta.targetY = targetY;
+        }
+        if (has(LIVES) && lives != baseline.lives) {
+            delta.mask |= LIVES;
+            delta.lives = lives;
+        }
+        if (has(BOMB_TIMER) && elapsedTime != baseline.elapsedTime) {
+            delta.mask |= BOMB_TIMER;
+            delta.elapsedTime = elapsedTime;
+        }
+        return delta.mask == 0 ? null : delta;
+    }
+
+    @Override
+    public void writeTo(ByteBuffer buffer) {
+        // [spriteId (4)] [mask (1)] [fields in mask order]
+        buffer.putInt(spriteId);
+        buffer.put(mask);
+        if (has(POSITION)) {
+            buffer.putFloat(posX);
+            buffer.putFloat(posY);
+        }
+        if (has(STATUS)) {
+            buffer.putInt(status);
+            buffer.putFloat(targetX);
+            buffer.putFloat(targetY);
+        }
+        if (has(LIVES)) {
+            buffer.putInt(lives);
+        }
+        if (has(BOMB_TIMER)) {
+            buffer.putFloat(elapsedTime);
+        }
+    }
+
+    public static SpriteDelta readFrom(ByteBuffer buffer) {
+        SpriteDelta delta = new SpriteDelta(buffer.getInt());
+        delta.mask = buffer.get();
+        if (delta.has(POSITION)) {
+            delta.posX = buffer.getFloat();
+            delta.posY = buffer.getFloat();
+        }
+        if (delta.has(STATUS)) {
+            delta.status = buffer.getInt();
+            delta.targetX = buffer.getFloat();
+            delta.targetY = buffer.getFloat();
+        }
+        if (delta.has(LIVES)) {
+            delta.lives = buffer.getInt();
+        }
+        if (delta.has(BOMB_TIMER)) {
+            delta.elapsedTime = buffer.getFloat();
+        }
+        return delta;
+    }
+
+}
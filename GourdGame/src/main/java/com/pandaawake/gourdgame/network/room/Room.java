@@ -0,0 +1,103 @@
+package com.pandaawake.gourdgame.network.room;
+
+import com.mandas.tiled2d.core.Log;
+import com.pandaawake.gourdgame.Config;
+import com.pandaawake.gourdgame.main.ServerGameApp;
+import com.pandaawake.gourdgame.network.data.socket.SocketServer;
+import com.pandaawake.gourdgame.scene.Level;
+
+/**
+ * One match hosted by a RoomManager, with its own Scene, id space and players.
+ * A room has no keyboard and no threads, the RoomExecutor of the RoomManager ticks it
+ * and the game starts by itself once enough clients entered.
+ */
+public class Room extends ServerGameApp {
+
+    private final int id;
+    private final RoomGameServer roomServer;
+    private final int startPlayers;
+    private boolean started = false;    // Guarded by this
+    private boolean closed = false;     // Guarded by this
+
+    /**
+     * @param startPlayers Start the game when this many clients entered, at most getCapacity(level)
+     */
+    Room(int id, SocketServer socketServer, Level level, int startPlayers) {
+        super(app -> new RoomGameServer(app, socketServer, getCapacity(level)), level);
+        this.id = id;
+        this.roomServer = (RoomGameServer) gameServer;
+        this.startPlayers = startPlayers;
+    }
+
+    /**
+     * Max clients in a room playing [level].
+     */
+    public static int getCapacity(Level level) {
+        return Math.min(level.humanPlayerPositions.size(), Config.playerNames.length);
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    @Override
+    protected void initializeEventDispatcher() {
+        // No keyboard
+    }
+
+    @Override
+    protected void initializeServer() {
+        // The RoomManager runs the SocketServer
+    }
+
+    @Override
+    public void clientExited(int clientId) {
+        super.clientExited(clientId);
+        roomServer.leave(clientId);
+    }
+
+    RoomGameServer getRoomServer() {
+        return roomServer;
+    }
+
+    /**
+     * Called on the I/O thread.
+     * @return false if the room is full, playing or closed
+     */
+    synchronized boolean tryJoin(int connectionId) {
+        return !started && !closed && roomServer.join(connectionId) >= 0;
+    }
+
+    public synchronized boolean isClosed() {
+        return closed;
+    }
+
+    private synchronized boolean shouldStart() {
+        int joined = roomServer.getJoinedCount();
+        // Every joined client must have entered, or a client joining right now would miss its GameInitialize
+        if (started || joined < startPlayers || joined != clientIdsAndSpriteIdsNames.size()) {
+            return false;
+        }
+        started = true;
+        return true;
+    }
+
+    /**
+     * One simulation step, never called on two threads at once.
+     */
+    void tick(float timestep) {
+        OnUpdate(timestep);
+        if (shouldStart()) {
+            Log.app().info(getClass().getName() + ": Room " + id + " starts with " + clientIdsAndSpriteIdsNames.size() + " clients");
+            startGame();
+        }
+
+        synchronized (this) {
+            if (roomServer.getJoinedCount() > 0 && roomServer.getActiveCount() == 0) {
+                // Everyone left, the room is never joined again
+                closed = true;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,159 @@
+package com.pandaawake.gourdgame.network.room;
+
+import com.mandas.tiled2d.core.Log;
+import com.mandas.tiled2d.core.LoopScheduler;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the tick loops of rooms. A tick loop never runs on two threads at once, so everything
+ * a room owns is confined to one thread at a time and rooms need no lock shared between them.
+ */
+public abstract class RoomExecutor {
+
+    public enum Kind {
+        Pooled,             // Fixed rate tasks on a pool of Runtime.availableProcessors() threads
+        PlatformThreads,    // A platform thread per room, parked between ticks
+        VirtualThreads      // A virtual thread per room (JDK 21+), parked between ticks, Pooled on older JDKs
+    }
+
+    /**
+     * A scheduled tick loop.
+     */
+    public interface Task {
+        /**
+         * Stop calling the tick, may be called by the tick itself.
+         */
+        void cancel();
+    }
+
+    /**
+     * Call [tick] [tickRate] times per second until the task is cancelled.
+     */
+    public abstract Task schedule(Runnable tick, int tickRate);
+
+    /**
+     * Cancel every task and wait a moment for running ticks to finish.
+     */
+    public abstract void shutdown();
+
+    // ------------------- Implementations -------------------
+    public static RoomExecutor create(Kind kind) {
+        switch (kind) {
+            case PlatformThreads:
+                return threadPerRoom(newThreadFactory("Room"));
+            case VirtualThreads:
+                ThreadFactory factory = virtualThreadFactory("Room");
+                if (factory != null) {
+                    return threadPerRoom(factory);
+                }
+                Log.app().warn("RoomExecutor: Virtual threads need JDK 21+, rooms share a pool instead");
+                return pooled(Runtime.getRuntime().availableProcessors());
+            default:
+                return pooled(Runtime.getRuntime().availableProcessors());
+        }
+    }
+
+    /**
+     * All rooms share [threads] threads, a tick running late delays the other rooms of its thread.
+     */
+    public static RoomExecutor pooled(int threads) {
+        ScheduledExecutorService workers = Executors.newScheduledThreadPool(Math.max(threads, 1), newThreadFactory("Room worker"));
+        return new RoomExecutor() {
+            @Override
+            public Task schedule(Runnable tick, int tickRate) {
+                ScheduledFuture<?> future = workers.scheduleAtFixedRate(tick, 0, 1_000_000_000L / tickRate, TimeUnit.NANOSECONDS);
+                return () -> future.cancel(false);
+            }
+
+            @Override
+            public void shutdown() {
+                workers.shutdown();
+                try {
+                    workers.awaitTermination(1, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+    }
+
+    /**
+     * Every room runs a LoopScheduler on its own thread created by [factory].
+     * The thread only parks between ticks, so with virtual threads it does not hold a carrier while idle.
+     */
+    public static RoomExecutor threadPerRoom(ThreadFactory factory) {
+        Map<LoopScheduler, Thread> loops = new ConcurrentHashMap<>();
+        return new RoomExecutor() {
+            @Override
+            public Task schedule(Runnable tick, int tickRate) {
+                LoopScheduler loop = new LoopScheduler(tickRate, 0, com.mandas.tiled2d.Config.MaxTicksPerIteration,
+                        new LoopScheduler.Callback() {
+                            @Override
+                            public void onTick(float timestep) {
+                                tick.run();
+                            }
+
+                            @Override
+                            public void onRender() {
+                            }
+                        });
+                Thread thread = factory.newThread(() -> {
+                    loop.run();
+                    loops.remove(loop);
+                });
+                loops.put(loop, thread);
+                thread.start();
+                return loop::stop;
+            }
+
+            @Override
+            public void shutdown() {
+                for (LoopScheduler loop : loops.keySet()) {
+                    loop.stop();
+                }
+                long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+                for (Thread thread : loops.values()) {
+                    try {
+                        thread.join(Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())));
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+            }
+        };
+    }
+
+    /**
+     * @return Factory of virtual threads, null if this JDK has none
+     */
+    public static ThreadFactory virtualThreadFactory(String namePrefix) {
+        // Looked up by reflection, the sources still target Java 8
+        try {
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, namePrefix + " ", 0L);
+            return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static ThreadFactory newThreadFactory(String namePrefix) {
+        AtomicInteger threadCount = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, namePrefix + " " + threadCount.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+}
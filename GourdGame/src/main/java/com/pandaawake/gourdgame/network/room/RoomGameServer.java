@@ -0,0 +1,135 @@
+package com.pandaawake.gourdgame.network.room;
+
+import com.pandaawake.gourdgame.main.ServerGameApp;
+import com.pandaawake.gourdgame.network.GameServer;
+import com.pandaawake.gourdgame.network.data.socket.SocketServer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * The GameServer of one Room, sharing the SocketServer of the RoomManager with the other rooms.
+ * Clients of a room are numbered from 0 in the order they joined (player names and start positions
+ * are chosen by this id), and mapped to their connection ids only when data is written.
+ * Data received by the I/O thread is queued and handled on the room's own tick, like every GameServer.
+ */
+public class RoomGameServer extends GameServer {
+
+    private final SocketServer socketServer;
+    private final int[] connectionIds;      // Client id -> connection id, guarded by this
+    private final boolean[] left;           // Client id -> whether the client left, guarded by this
+    private int joinedCount = 0;            // Guarded by this
+    private volatile int[] activeConnectionIds = new int[0];    // Of joined clients which have not left
+
+    /**
+     * @param capacity Max clients in this room
+     */
+    RoomGameServer(ServerGameApp app, SocketServer socketServer, int capacity) {
+        super(app, socketServer);
+        this.socketServer = socketServer;
+        this.connectionIds = new int[capacity];
+        this.left = new boolean[capacity];
+    }
+
+    /**
+     * @return Client id in this room, -1 if the room is full
+     */
+    synchronized int join(int connectionId) {
+        if (joinedCount == connectionIds.length) {
+            return -1;
+        }
+        connectionIds[joinedCount] = connectionId;
+        joinedCount++;
+        updateActiveConnectionIds();
+        return joinedCount - 1;
+    }
+
+    synchronized void leave(int clientId) {
+        if (clientId >= 0 && clientId < joinedCount && !left[clientId]) {
+            left[clientId] = true;
+            updateActiveConnectionIds();
+        }
+    }
+
+    private void updateActiveConnectionIds() {
+        int[] ids = new int[joinedCount];
+        int count = 0;
+        for (int clientId = 0; clientId < joinedCount; clientId++) {
+            if (!left[clientId]) {
+                ids[count++] = connectionIds[clientId];
+            }
+        }
+        activeConnectionIds = count == ids.length ? ids : Arrays.copyOf(ids, count);
+    }
+
+    synchronized int getJoinedCount() {
+        return joinedCount;
+    }
+
+    int getActiveCount() {
+        return activeConnectionIds.length;
+    }
+
+    /**
+     * Connection ids of every client which ever joined.
+     */
+    synchronized int[] getConnectionIds() {
+        return Arrays.copyOf(connectionIds, joinedCount);
+    }
+
+    private synchronized int getClientId(int connectionId) {
+        for (int clientId = 0; clientId < joinedCount; clientId++) {
+            if (connectionIds[clientId] == connectionId) {
+                return clientId;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Queue data received from a connection of this room, called on the I/O thread.
+     */
+    void receiveFromConnection(int connectionId, byte[] data) {
+        int clientId = getClientId(connectionId);
+        if (clientId >= 0) {
+            receive(clientId, data);
+        }
+    }
+
+    // ------------------- Transport -------------------
+    @Override
+    protected synchronized Collection<Integer> getClientIds() {
+        List<Integer> clientIds = new ArrayList<>(joinedCount);
+        for (int clientId = 0; clientId < joinedCount; clientId++) {
+            if (!left[clientId]) {
+                clientIds.add(clientId);
+            }
+        }
+        return clientIds;
+    }
+
+    @Override
+    protected void write(byte[] data) {
+        socketServer.addDataToWrite(data, activeConnectionIds);
+    }
+
+    @Override
+    protected void write(byte[] data, int clientId) {
+        int connectionId;
+        synchronized (this) {
+            if (clientId < 0 || clientId >= joinedCount || left[clientId]) {
+                return;
+            }
+            connectionId = connectionIds[clientId];
+        }
+        socketServer.addDataToWrite(data, new int[]{connectionId});
+    }
+
+    @Override
+    public void close() {
+        // The SocketServer belongs to the RoomManager
+    }
+
+}
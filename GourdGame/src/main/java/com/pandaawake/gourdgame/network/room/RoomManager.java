@@ -0,0 +1,144 @@
+package com.pandaawake.gourdgame.network.room;
+
+import com.mandas.tiled2d.core.Log;
+import com.mandas.tiled2d.utils.Pair;
+import com.pandaawake.gourdgame.Config;
+import com.pandaawake.gourdgame.network.data.data.DataProcessor;
+import com.pandaawake.gourdgame.network.data.socket.SocketServer;
+import com.pandaawake.gourdgame.scene.Level;
+import com.pandaawake.gourdgame.utils.DataUtils;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Hosts many independent rooms (matches) behind one SocketServer.
+ *
+ * The I/O loop runs on the thread calling run() and routes data of every connection to its room,
+ * a new connection joins the room which is still waiting for players, or a new one.
+ * Every room is ticked at a fixed rate by a RoomExecutor. A room never ticks on two threads at once,
+ * so one room's game is confined to one thread at a time while the rooms run in parallel.
+ */
+public class RoomManager {
+
+    private final SocketServer socketServer;
+    private final RoomExecutor executor;
+    private final int tickRate;
+    private final float timestep;
+    private final Level level;
+    private final int startPlayers;
+
+    private final Map<Room, RoomExecutor.Task> rooms = new ConcurrentHashMap<>();
+    private final Map<Integer, Room> roomsByConnection = new ConcurrentHashMap<>();    // Connection id -> room
+    private Room openRoom = null;       // Room new connections join, I/O thread only
+    private int roomIdIter = 0;         // I/O thread only
+    private volatile boolean running = true;
+
+    public RoomManager(String hostName, int port, int tickRate, Level level, int startPlayers) {
+        this(hostName, port, tickRate, level, startPlayers, RoomExecutor.create(Config.RoomExecutorKind));
+    }
+
+    /**
+     * @param tickRate      Simulation ticks per second of every room
+     * @param level         Map and player positions of every room
+     * @param startPlayers  A room starts when this many clients entered, at most Room.getCapacity(level)
+     * @param executor      Runs the tick loops of the rooms, shut down by run() when stopped
+     */
+    public RoomManager(String hostName, int port, int tickRate, Level level, int startPlayers, RoomExecutor executor) {
+        if (tickRate <= 0) {
+            throw new IllegalArgumentException("tickRate must be positive!");
+        }
+        this.socketServer = new SocketServer(hostName, port);
+        this.tickRate = tickRate;
+        this.timestep = 1.0f / tickRate;
+        this.level = level;
+        this.startPlayers = Math.max(1, Math.min(startPlayers, Room.getCapacity(level)));
+        this.executor = executor;
+    }
+
+    public int getRoomCount() {
+        return rooms.size();
+    }
+
+    public int getStartPlayers() {
+        return startPlayers;
+    }
+
+    // ------------------- I/O thread -------------------
+    private Room createRoom() {
+        Room room = new Room(roomIdIter++, socketServer, level, startPlayers);
+        rooms.put(room, executor.schedule(() -> tick(room), tickRate));
+        Log.app().info(getClass().getName() + ": Room " + room.getId() + " created, " + rooms.size() + " rooms");
+        return room;
+    }
+
+    private Room join(int connectionId) {
+        if (openRoom == null || !openRoom.tryJoin(connectionId)) {
+            openRoom = createRoom();
+            openRoom.tryJoin(connectionId);
+        }
+        roomsByConnection.put(connectionId, openRoom);
+        return openRoom;
+    }
+
+    private void route(int connectionId, byte[] data) {
+        Room room = roomsByConnection.get(connectionId);
+        if (room == null) {
+            if (data.length < 4 || DataUtils.getHeaderNumber(data, 0) != DataProcessor.CLIENT_ENTER) {
+                return;     // Not entered, e.g. closed right after connecting
+            }
+            room = join(connectionId);
+        }
+        room.getRoomServer().receiveFromConnection(connectionId, data);
+    }
+
+    /**
+     * Run the I/O loop until stop() is called.
+     */
+    public void run() {
+        while (running) {
+            socketServer.run();
+            Pair<Integer, byte[]> data;
+            while ((data = socketServer.pollDataToHandle()) != null) {
+                route(data.first, data.second);
+            }
+        }
+
+        executor.shutdown();
+        socketServer.close();
+        Log.app().info(getClass().getName() + ": Stopped with " + rooms.size() + " rooms, " + socketServer.getLoopMetrics());
+    }
+
+    public void stop() {
+        running = false;
+        socketServer.wakeup();
+    }
+
+    // ------------------- Tick threads -------------------
+    private void tick(Room room) {
+        try {
+            room.tick(timestep);
+        } catch (RuntimeException e) {
+            // An exception would end the tick loop of the room, keep it running
+            Log.app().error(getClass().getName() + ": Exception in room " + room.getId() + ": " + e);
+            e.printStackTrace();
+        }
+        if (room.isClosed()) {
+            closeRoom(room);
+        }
+    }
+
+    private void closeRoom(Room room) {
+        RoomExecutor.Task task = rooms.remove(room);
+        if (task == null) {
+            return;
+        }
+        task.cancel();
+        for (int connectionId : room.getRoomServer().getConnectionIds()) {
+            roomsByConnection.remove(connectionId, room);
+        }
+        room.OnDestroy();
+        Log.app().info(getClass().getName() + ": Room " + room.getId() + " closed, " + rooms.size() + " rooms");
+    }
+
+}
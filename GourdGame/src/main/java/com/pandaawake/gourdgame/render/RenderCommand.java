@@ -1,62 +1,98 @@
 package com.pandaawake.gourdgame.render;
 
 import com.mandas.tiled2d.renderer.Camera;
+import com.mandas.tiled2d.renderer.RenderCommandBuffer;
+import com.mandas.tiled2d.renderer.RenderLayer;
 import com.mandas.tiled2d.renderer.Renderer;
 import com.mandas.tiled2d.renderer.Texture;
-import com.mandas.tiled2d.scene.Scene;
+import com.mandas.tiled2d.scene.Entity;
 import com.pandaawake.gourdgame.Config;
 import com.pandaawake.gourdgame.scene.GameMap;
+import com.pandaawake.gourdgame.tiles.Floor;
 import com.pandaawake.gourdgame.tiles.Thing;
 import com.pandaawake.gourdgame.tiles.Tile;
-import com.mandas.tiled2d.utils.IntPair;
+import com.mandas.tiled2d.utils.TileBitSet;
 
-import java.util.Set;
+import java.util.Collection;
 
+/**
+ * Draw calls of the game. They are recorded into the renderer's RenderCommandBuffer,
+ * and painted after Application publishes them at the end of the frame.
+ */
 public class RenderCommand {
 
-    private static Renderer renderer;
+    private static RenderCommandBuffer commandBuffer;
     private static Texture emptyTexture;
     private static Camera camera;
 
-    public static void Init(Scene scene) {
+    public static void Init() {
         emptyTexture = Config.TileParser.getEmptyTexture();
         camera = new Camera(Config.RenderWidth, Config.RenderHeight);
         camera.setScale(1.0, 1.0);
         //camera.setTranslation(0, 1);
 
         Renderer.Init(Config.MapWidth, Config.MapHeight, Config.TileSize, Config.TileSize,
-                Config.ScoreBoardWidth, emptyTexture, scene, camera);
+                Config.ScoreBoardWidth, emptyTexture, camera);
 
-        renderer = Renderer.getRenderer();
+        commandBuffer = Renderer.getRenderer().getCommandBuffer();
     }
 
+    /**
+     * Draw every tile of the map. Floors go to the terrain layer, other things to the things layer.
+     * The renderer only repaints tiles whose texture changed, but this still visits the whole map,
+     * use drawGameMapTiles() when the changed tiles are known.
+     */
     public static void drawGameMap(GameMap gameMap) {
         for (int x = 0; x < gameMap.getWidth(); x++) {
             for (int y = 0; y < gameMap.getHeight(); y++) {
-                Tile tile = gameMap.getTile(x, y);
-                Thing thing = tile.getThing();
-                if (thing == null) {
-                    renderer.setTexture(emptyTexture, x, y);
-                } else {
-                    int glyphIndex = thing.getTiles().indexOf(tile);
-                    renderer.setTexture(thing.getTextures().get(glyphIndex), x, y);
-                }
+                drawGameMapTile(gameMap.getTile(x, y));
             }
         }
     }
 
-    public static void repaintPosition(Set<IntPair> position) {
-        renderer.addRepaintTilePositions(position);
+    public static void drawGameMapTiles(GameMap gameMap, TileBitSet tiles) {
+        for (int index = tiles.nextSetBit(0); index >= 0; index = tiles.nextSetBit(index + 1)) {
+            drawGameMapTile(gameMap.getTile(index % tiles.getWidth(), index / tiles.getWidth()));
+        }
+    }
+
+    private static void drawGameMapTile(Tile tile) {
+        int x = tile.getxPos(), y = tile.getyPos();
+        Thing thing = tile.getThing();
+        Texture texture = null;
+        if (thing != null) {
+            int glyphIndex = thing.getTiles().indexOf(tile);
+            texture = thing.getTextures().get(glyphIndex);
+        }
+        if (thing instanceof Floor) {
+            commandBuffer.setTexture(RenderLayer.Type.Terrain, texture, x, y);
+            commandBuffer.setTexture(RenderLayer.Type.Things, null, x, y);
+        } else {
+            // Empty tiles are shown as the renderer's empty texture
+            commandBuffer.setTexture(RenderLayer.Type.Terrain, null, x, y);
+            commandBuffer.setTexture(RenderLayer.Type.Things, texture, x, y);
+        }
+    }
+
+    /**
+     * Draw the sprites where they are now, instead of where they were last drawn.
+     */
+    public static void drawSprites(Collection<? extends Entity> sprites) {
+        commandBuffer.drawEntities(sprites);
+    }
+
+    public static void repaintTiles(TileBitSet tiles) {
+        commandBuffer.markDirty(tiles);
     }
 
     public static void clear() {
-        renderer.clear();
+        commandBuffer.clear();
     }
 
 
 
     public static void clearScoreboard() {
-        renderer.clearScoreboard();
+        commandBuffer.clearScoreboard();
     }
 
     /**
@@ -66,7 +102,7 @@ public class RenderCommand {
      * @param string string to draw
      */
     public static void drawScoreboardString(int startX, int startY, String string) {
-        renderer.drawScoreboardString(startX, startY, string);
+        commandBuffer.drawScoreboardString(startX, startY, string);
     }
 
     /**
@@ -76,7 +112,7 @@ public class RenderCommand {
      * @param texture   texture to draw
      */
     public static void drawScoreboardTile(int startX, int startY, Texture texture) {
-        renderer.drawScoreboardTile(startX, startY, texture);
+        commandBuffer.drawScoreboardTile(startX, startY, texture);
     }
 
 }
@@ -0,0 +1,74 @@
+package com.pandaawake.gourdgame.scene;
+
+public abstract class BlastShape {
+
+    /**
+     * The area a bomb destroys, see ExplosionResolver.
+     */
+    public interface TileVisitor {
+        void visit(int x, int y);
+    }
+
+    /**
+     * Visit every tile hit by a blast centered at (x, y), tiles outside of the map are skipped.
+     * A tile may be visited more than once.
+     */
+    public abstract void forEachTile(GameMap gameMap, int x, int y, TileVisitor visitor);
+
+
+    /**
+     * (2 * radius + 1) x (2 * radius + 1) square, walls don't stop it.
+     */
+    public static class Square extends BlastShape {
+        private final int radius;
+
+        public Square(int radius) {
+            this.radius = radius;
+        }
+
+        @Override
+        public void forEachTile(GameMap gameMap, int x, int y, TileVisitor visitor) {
+            int right = Math.min(x + radius, gameMap.getWidth() - 1);
+            int bottom = Math.min(y + radius, gameMap.getHeight() - 1);
+            for (int tileX = Math.max(x - radius, 0); tileX <= right; tileX++) {
+                for (int tileY = Math.max(y - radius, 0); tileY <= bottom; tileY++) {
+                    visitor.visit(tileX, tileY);
+                }
+            }
+        }
+    }
+
+    /**
+     * Lines of [range] tiles in the 4 directions. A line stops at the first blocking thing,
+     * which is still hit.
+     */
+    public static class Cross extends BlastShape {
+        private static final int[][] DIRECTIONS = { {-1, 0}, {1, 0}, {0, -1}, {0, 1} };
+        private final int range;
+
+        public Cross(int range) {
+            this.range = range;
+        }
+
+        @Override
+        public void forEachTile(GameMap gameMap, int x, int y, TileVisitor visitor) {
+            if (!gameMap.insideMap(x, y)) {
+                return;
+            }
+            visitor.visit(x, y);
+            for (int[] direction : DIRECTIONS) {
+                for (int step = 1; step <= range; step++) {
+                    int tileX = x + direction[0] * step, tileY = y + direction[1] * step;
+                    if (!gameMap.insideMap(tileX, tileY)) {
+                        break;
+                    }
+                    visitor.visit(tileX, tileY);
+                    if (gameMap.getTile(tileX, tileY).getThing() != null && gameMap.getTile(tileX, tileY).getThing().isBlocking()) {
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,144 @@
+package com.pandaawake.gourdgame.scene;
+
+import com.mandas.tiled2d.core.Log;
+import com.pandaawake.gourdgame.scene.updater.SceneUpdater;
+import com.pandaawake.gourdgame.sprites.Bomb;
+import com.pandaawake.gourdgame.sprites.PlayableSprite;
+import com.pandaawake.gourdgame.sprites.Sprite;
+import com.pandaawake.gourdgame.tiles.Thing;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+public class ExplosionResolver {
+
+    /**
+     * Bombs only schedule themselves here, all explosions of a tick are resolved together in resolve():
+     * sprites are indexed by tile once, then the bombs explode breadth-first,
+     * bombs hit by a blast explode in the same pass.
+     *
+     * Only used inside Scene.OnUpdate, so it's guarded by the scene.
+     */
+    private final Scene scene;
+    private final BlastShape blastShape;
+    private final ArrayDeque<Bomb> bombsToExplode = new ArrayDeque<>();
+
+    // Per-tile sprite index, a linked list per tile stored in arrays
+    private int[] tileHeads = new int[0];
+    private int[] entryNext = new int[64];
+    private Sprite[] entrySprites = new Sprite[64];
+    private int entryCount = 0;
+    private final int[] bounds = new int[4];
+
+    // Everything hit by the current bomb, so a sprite or thing covering several tiles is hit only once
+    private final Set<Sprite> hitSprites = new HashSet<>();
+    private final Set<Thing> hitThings = new HashSet<>();
+
+    public ExplosionResolver(Scene scene, BlastShape blastShape) {
+        this.scene = scene;
+        this.blastShape = blastShape;
+    }
+
+    public BlastShape getBlastShape() {
+        return blastShape;
+    }
+
+    public void schedule(Bomb bomb) {
+        if (bomb.markExploded()) {
+            bombsToExplode.offer(bomb);
+        }
+    }
+
+    public void resolve() {
+        if (bombsToExplode.isEmpty()) {
+            return;
+        }
+        buildIndex();
+        Bomb bomb;
+        while ((bomb = bombsToExplode.poll()) != null) {
+            explode(bomb);
+        }
+        Arrays.fill(entrySprites, 0, entryCount, null);
+        entryCount = 0;
+    }
+
+    public void clear() {
+        bombsToExplode.clear();
+    }
+
+    private void buildIndex() {
+        GameMap gameMap = scene.getGameMap();
+        int width = gameMap.getWidth(), height = gameMap.getHeight();
+        if (tileHeads.length != width * height) {
+            tileHeads = new int[width * height];
+        }
+        Arrays.fill(tileHeads, -1);
+        entryCount = 0;
+        for (Sprite sprite : scene.getSprites()) {
+            sprite.fillCollisionBounds(bounds);
+            int right = Math.min(bounds[2], width - 1), bottom = Math.min(bounds[3], height - 1);
+            for (int y = Math.max(bounds[1], 0); y <= bottom; y++) {
+                for (int x = Math.max(bounds[0], 0); x <= right; x++) {
+                    addEntry(x + y * width, sprite);
+                }
+            }
+        }
+    }
+
+    private void addEntry(int tile, Sprite sprite) {
+        if (entryCount == entrySprites.length) {
+            entrySprites = Arrays.copyOf(entrySprites, entryCount * 2);
+            entryNext = Arrays.copyOf(entryNext, entryCount * 2);
+        }
+        entrySprites[entryCount] = sprite;
+        entryNext[entryCount] = tileHeads[tile];
+        tileHeads[tile] = entryCount++;
+    }
+
+    private void explode(Bomb bomb) {
+        GameMap gameMap = scene.getGameMap();
+        SceneUpdater sceneUpdater = scene.getSceneUpdater();
+        hitSprites.clear();
+        hitThings.clear();
+
+        blastShape.forEachTile(gameMap, (int) bomb.getX(), (int) bomb.getY(), (x, y) -> {
+            // Remove things which were exploded
+            Thing thing = gameMap.getTile(x, y).getThing();
+            if (thing != null && hitThings.add(thing)) {
+                sceneUpdater.addUpdateThing(thing);
+                if (thing.OnExplode()) {
+                    sceneUpdater.removeThing(thing);
+                }
+            }
+
+            // Remove sprites which were exploded
+            for (int entry = tileHeads[x + y * gameMap.getWidth()]; entry >= 0; entry = entryNext[entry]) {
+                Sprite sprite = entrySprites[entry];
+                if (sprite == bomb || !hitSprites.add(sprite)) {
+                    continue;
+                }
+                if (sprite.OnExplode(bomb)) {
+                    sceneUpdater.removeSprite(sprite);
+                }
+                if (sprite instanceof Bomb) {
+                    // Explode bombs nearby in this pass
+                    schedule((Bomb) sprite);
+                }
+            }
+        });
+
+        // Remove the bomb from scene
+        sceneUpdater.removeSprite(bomb);
+
+        // Find its owner
+        PlayableSprite owner = bomb.getOwner();
+        if (owner != null) {
+            owner.bombDestroyed(bomb);
+        } else {
+            Log.app().error(getClass().getName() + ": no matched sprite of bomb owner!");
+        }
+    }
+
+}
@@ -9,6 +9,7 @@ public class GameMap {
     private int width, height;
 
     private Tile[][] tiles;
+    private int[] occupancy;     // Count of blocking sprites covering each tile, indexed by x + y * width
 
     public GameMap(int width, int height) {
         this.width = width;
@@ -20,6 +21,7 @@ public class GameMap {
                 tiles[x][y] = new Tile(x, y);
             }
         }
+        occupancy = new int[width * height];
     }
 
     public Tile getTile(int x, int y) {
@@ -36,6 +38,35 @@ public class GameMap {
         return (x >= 0) && (x < width) && (y >= 0) && (y < height);
     }
 
+    /**
+     * @return Count of blocking sprites whose collision box covers (x, y)
+     */
+    public int getOccupancy(int x, int y) {
+        return occupancy[x + y * width];
+    }
+
+    /**
+     * Register a collision box, the part outside of the map is ignored.
+     * @param bounds {left, top, right, bottom}, all inclusive
+     */
+    public void addOccupancy(int[] bounds) {
+        changeOccupancy(bounds, 1);
+    }
+
+    public void removeOccupancy(int[] bounds) {
+        changeOccupancy(bounds, -1);
+    }
+
+    private void changeOccupancy(int[] bounds, int delta) {
+        int right = Math.min(bounds[2], width - 1), bottom = Math.min(bounds[3], height - 1);
+        for (int y = Math.max(bounds[1], 0); y <= bottom; y++) {
+            int row = y * width;
+            for (int x = Math.max(bounds[0], 0); x <= right; x++) {
+                occupancy[row + x] += delta;
+            }
+        }
+    }
+
     public int getWidth() {
         return width;
     }
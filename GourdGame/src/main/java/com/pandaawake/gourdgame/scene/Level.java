@@ -2,6 +2,12 @@ package com.pandaawake.gourdgame.scene;
 
 import com.mandas.tiled2d.utils.IntPair;
 
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 
 public class Level {
@@ -19,4 +25,51 @@ public class Level {
         return levelTileMap;
     }
 
+    /**
+     * Read a level from a text file. Every row of the map is a line of tile kinds (see SceneTilesInitializer),
+     * "H x y" / "C x y" lines add a human / computer player position, lines starting with '#' are comments.
+     * @param defaultLevel Player positions are taken from here if the file has none
+     * @param width        Required map width
+     * @param height       Required map height
+     */
+    public static Level load(File file, Level defaultLevel, int width, int height) throws IOException {
+        ArrayList<String> rows = new ArrayList<>();
+        ArrayList<IntPair> humanPositions = new ArrayList<>(), computerPositions = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                if (line.startsWith("H ") || line.startsWith("C ")) {
+                    String[] parts = line.split("\\s+");
+                    if (parts.length != 3) {
+                        throw new IOException(file + ": Illegal position line \"" + line + "\".");
+                    }
+                    IntPair position;
+                    try {
+                        position = new IntPair(Integer.parseInt(parts[1]), Integer.parseInt(parts[2]));
+                    } catch (NumberFormatException e) {
+                        throw new IOException(file + ": Illegal position line \"" + line + "\".");
+                    }
+                    if (position.first < 0 || position.first >= width || position.second < 0 || position.second >= height) {
+                        throw new IOException(file + ": Position line \"" + line + "\" is outside the map.");
+                    }
+                    (line.charAt(0) == 'H' ? humanPositions : computerPositions).add(position);
+                } else if (line.length() != width) {
+                    throw new IOException(file + ": Row " + rows.size() + " has " + line.length() + " tiles, " + width + " expected.");
+                } else {
+                    rows.add(line);
+                }
+            }
+        }
+        if (rows.size() != height) {
+            throw new IOException(file + ": " + rows.size() + " rows, " + height + " expected.");
+        }
+        return new Level(rows.toArray(new String[0]),
+                humanPositions.isEmpty() ? defaultLevel.humanPlayerPositions : humanPositions,
+                computerPositions.isEmpty() ? defaultLevel.computerPlayerPositions : computerPositions);
+    }
+
 }
@@ -1,15 +1,16 @@
 package com.pandaawake.gourdgame.scene;
 
-import com.mandas.tiled2d.utils.IntPair;
+import com.pandaawake.gourdgame.Config;
 import com.pandaawake.gourdgame.render.RenderCommand;
 import com.pandaawake.gourdgame.scene.updater.SceneUpdater;
 import com.pandaawake.gourdgame.sprites.MovableSprite;
 import com.pandaawake.gourdgame.sprites.Sprite;
 import com.pandaawake.gourdgame.tiles.Thing;
+import com.pandaawake.gourdgame.utils.IntObjectMap;
 
+import java.util.Collection;
 import java.util.HashSet;
 import java.util.Set;
-import java.util.TreeSet;
 
 public class Scene extends com.mandas.tiled2d.scene.Scene {
     /**
@@ -20,15 +21,23 @@ public class Scene extends com.mandas.tiled2d.scene.Scene {
 
     final Set<Thing> things;
     final Set<Sprite> sprites;  // This will be sorted by Ypos, smaller Ypos == smaller index, for rendering
+    final IntObjectMap<Thing> thingsById;      // Kept in step with [things]
+    final IntObjectMap<Sprite> spritesById;    // Kept in step with [sprites]
     final GameMap gameMap;
     final SceneUpdater sceneUpdater;
+    final ExplosionResolver explosionResolver;
+    private final int[] boundsBuffer = new int[4];     // Scratch for collision queries, guarded by this
+    private boolean mapRedrawNeeded = true;             // Draw the whole map once, later changes come from sceneUpdater
 
     public Scene(GameMap gameMap, SceneUpdater sceneUpdater) {
         super();
         things = new HashSet<>();
         sprites = new HashSet<>();
+        thingsById = new IntObjectMap<>();
+        spritesById = new IntObjectMap<>();
         this.gameMap = gameMap;
         this.sceneUpdater = sceneUpdater;
+        this.explosionResolver = new ExplosionResolver(this, Config.BombBlastShape);
         sceneUpdater.setScene(this);
         setEntities(sprites);
     }
@@ -45,14 +54,32 @@ public class Scene extends com.mandas.tiled2d.scene.Scene {
     public SceneUpdater getSceneUpdater() {
         return sceneUpdater;
     }
+    public ExplosionResolver getExplosionResolver() {
+        return explosionResolver;
+    }
+    public Sprite getSpriteById(int id) {
+        synchronized (this) {
+            return spritesById.get(id);
+        }
+    }
+    public Thing getThingById(int id) {
+        synchronized (this) {
+            return thingsById.get(id);
+        }
+    }
 
 
-    private static int spriteId = 0, thingId = 0;
-    public static int getNextSpriteId() {
-        return spriteId++;
+    // Every scene has its own id space, ids only have to be unique inside one game
+    private int spriteId = 0, thingId = 0;
+    public int getNextSpriteId() {
+        synchronized (this) {
+            return spriteId++;
+        }
     }
-    public static int getNextThingId() {
-        return thingId++;
+    public int getNextThingId() {
+        synchronized (this) {
+            return thingId++;
+        }
     }
 
 
@@ -82,23 +109,9 @@ public class Scene extends com.mandas.tiled2d.scene.Scene {
             if (!sprite.isBlocking()) {
                 return true;
             }
-            // Consider other sprites, get their collision boxes first
-            Set<IntPair> unreachablePositions = new TreeSet<>();
-            for (Sprite otherSprite : sprites) {
-                if (sprite.getId() == otherSprite.getId()) {
-                    continue;
-                }
-                if (!otherSprite.isBlocking()) {
-                    continue;
-                }
-                unreachablePositions.addAll(otherSprite.getCollisionBox());
-            }
-            for (IntPair position : sprite.tryToMoveCollisionBox(x, y)) {
-                if (unreachablePositions.contains(position)) {
-                    return false;
-                }
-            }
-            return true;
+            // Consider other sprites, their collision boxes are kept in the occupancy grid
+            sprite.fillMoveBounds(x, y, boundsBuffer);
+            return !occupiedByOthers(sprite, boundsBuffer);
         }
     }
 
@@ -126,23 +139,89 @@ public class Scene extends com.mandas.tiled2d.scene.Scene {
             if (!sprite.isBlocking()) {
                 return true;
             }
-            // Consider other sprites, get their collision boxes first
-            Set<IntPair> unreachablePositions = new TreeSet<>();
-            for (Sprite otherSprite : sprites) {
-                if (sprite.getId() == otherSprite.getId()) {
-                    continue;
+            // Consider other sprites, their collision boxes are kept in the occupancy grid
+            sprite.fillAddBounds(x, y, boundsBuffer);
+            return !occupiedByOthers(sprite, boundsBuffer);
+        }
+    }
+
+    /**
+     * Whether any blocking sprite except [sprite] covers a tile inside [bounds].
+     */
+    private boolean occupiedByOthers(Sprite sprite, int[] bounds) {
+        int right = Math.min(bounds[2], gameMap.getWidth() - 1), bottom = Math.min(bounds[3], gameMap.getHeight() - 1);
+        for (int x = Math.max(bounds[0], 0); x <= right; x++) {
+            for (int y = Math.max(bounds[1], 0); y <= bottom; y++) {
+                int count = gameMap.getOccupancy(x, y);
+                if (count > 0 && sprite.occupies(x, y)) {
+                    count--;
+                }
+                if (count > 0) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Sprites must be added / removed by these functions to keep the occupancy grid of the GameMap
+     * and the id registry correct.
+     */
+    public void addSprites(Collection<? extends Sprite> spritesToAdd) {
+        synchronized (this) {
+            for (Sprite sprite : spritesToAdd) {
+                if (sprites.add(sprite)) {
+                    spritesById.put(sprite.getId(), sprite);
+                    sprite.setInScene(true);
+                }
+            }
+        }
+    }
+
+    public void removeSprites(Collection<? extends Sprite> spritesToRemove) {
+        synchronized (this) {
+            for (Sprite sprite : spritesToRemove) {
+                if (sprites.remove(sprite)) {
+                    if (spritesById.get(sprite.getId()) == sprite) {
+                        spritesById.remove(sprite.getId());
+                    }
+                    sprite.setInScene(false);
                 }
-                if (!otherSprite.isBlocking()) {
-                    continue;
+            }
+        }
+    }
+
+    public void clearSprites() {
+        synchronized (this) {
+            for (Sprite sprite : sprites) {
+                sprite.setInScene(false);
+            }
+            sprites.clear();
+            spritesById.clear();
+        }
+    }
+
+    /**
+     * Things must be added / removed by these functions to keep the id registry correct.
+     */
+    public void addThings(Collection<? extends Thing> thingsToAdd) {
+        synchronized (this) {
+            for (Thing thing : thingsToAdd) {
+                if (things.add(thing)) {
+                    thingsById.put(thing.getId(), thing);
                 }
-                unreachablePositions.addAll(otherSprite.getCollisionBox());
             }
-            for (IntPair position : sprite.tryToAddCollisionBox(x, y)) {
-                if (unreachablePositions.contains(position)) {
-                    return false;
+        }
+    }
+
+    public void removeThings(Collection<? extends Thing> thingsToRemove) {
+        synchronized (this) {
+            for (Thing thing : thingsToRemove) {
+                if (things.remove(thing) && thingsById.get(thing.getId()) == thing) {
+                    thingsById.remove(thing.getId());
                 }
             }
-            return true;
         }
     }
 
@@ -152,7 +231,10 @@ public class Scene extends com.mandas.tiled2d.scene.Scene {
     public void resetAll() {
         synchronized (this) {
             things.clear();
-            sprites.clear();
+            thingsById.clear();
+            clearSprites();
+            explosionResolver.clear();
+            mapRedrawNeeded = true;
 
             sceneUpdater.resetAll();
         }
@@ -163,11 +245,17 @@ public class Scene extends com.mandas.tiled2d.scene.Scene {
     public void OnRender() {
         synchronized (this) {
             // Render GameMap
-            RenderCommand.drawGameMap(gameMap);
+            if (mapRedrawNeeded) {
+                RenderCommand.drawGameMap(gameMap);
+                mapRedrawNeeded = false;
+            }
 
             // Scene Updater
             sceneUpdater.OnRender();
 
+            // Sprites are copied while nothing moves them, the renderer paints the copies
+            RenderCommand.drawSprites(getEntities());
+
 //            @Override
 //            public int compareTo(Sprite o) {
 //                /*
@@ -203,6 +291,7 @@ public class Scene extends com.mandas.tiled2d.scene.Scene {
             super.setEntities(sprites);
 
             super.OnUpdate(timestep);
+            explosionResolver.resolve();
 
             for (Thing thing : things) {
                 thing.OnUpdate(timestep);
@@ -47,15 +47,15 @@ public class SceneTilesInitializer {
     private Thing getNewThing(char c) {
         switch (c) {
             case KIND_FLOOR:
-                return new Floor(Scene.getNextThingId());
+                return new Floor(scene.getNextThingId());
             case KIND_WALL:
-                return new Wall(Scene.getNextThingId());
+                return new Wall(scene.getNextThingId());
             case KIND_TREE:
-                return new Tree(Scene.getNextThingId());
+                return new Tree(scene.getNextThingId());
             case KIND_TWICE_BREAKABLE_WALL:
-                return new TwiceBreakableWall(Scene.getNextThingId(), scene);
+                return new TwiceBreakableWall(scene.getNextThingId(), scene);
             default:
-                return new Floor(Scene.getNextThingId());
+                return new Floor(scene.getNextThingId());
         }
     }
 
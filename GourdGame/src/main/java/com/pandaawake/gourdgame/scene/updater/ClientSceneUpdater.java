@@ -1,9 +1,264 @@
 package com.pandaawake.gourdgame.scene.updater;
 
+import com.pandaawake.gourdgame.Config;
+import com.pandaawake.gourdgame.network.replication.InputPredictor;
+import com.pandaawake.gourdgame.network.replication.SnapshotInterpolator;
+import com.pandaawake.gourdgame.network.replication.SpriteDelta;
+import com.pandaawake.gourdgame.sprites.MovableSprite;
+import com.pandaawake.gourdgame.sprites.Sprite;
+import com.pandaawake.gourdgame.utils.Direction;
+import com.pandaawake.gourdgame.utils.IntObjectMap;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
 public class ClientSceneUpdater extends SceneUpdater {
 
+    /**
+     * Besides what SceneUpdater does, ClientSceneUpdater applies the sprites replicated by the server:
+     * a full snapshot (SyncSprites) replaces all sprites, deltas (UpdateSpriteDeltas) update some fields.
+     * If a delta refers to a sprite we don't know, our state is broken and a resync is needed.
+     * With a predictor, the main player's sprite moves locally and the replicated state of it only
+     * corrects the prediction (see InputPredictor).
+     * With an interpolator, replicated positions of the other sprites are not applied at once but
+     * buffered by the server time they were sent at, and rendered a bit in the past (see SnapshotInterpolator).
+     */
+    protected Set<Sprite> spritesToSync = null;
+    protected double spritesToSyncTime = 0.0;
+    protected List<DeltaBatch> deltaBatches = new ArrayList<>();
+    protected boolean resyncNeeded = false;
+    protected SnapshotInterpolator interpolator = Config.ClientInterpolation ?
+            new SnapshotInterpolator(Config.InterpolationDelay, Config.MaxExtrapolation, 1.0f / Config.ReplicationRate) : null;
+    protected InputPredictor predictor = null;
+    protected int acknowledgedInput = 0;    // Last predicted input the server performed
+    protected int nextInputSequence = 1;    // Never reset, the server may still acknowledge older inputs
+
+    /**
+     * Deltas replicated at the same server time.
+     */
+    protected static class DeltaBatch {
+        final double serverTime;
+        final Collection<SpriteDelta> deltas;
+
+        DeltaBatch(double serverTime, Collection<SpriteDelta> deltas) {
+            this.serverTime = serverTime;
+            this.deltas = deltas;
+        }
+    }
+
     public ClientSceneUpdater() {
         super();
     }
 
+    public void syncSprites(Set<Sprite> sprites, int inputSequence, double serverTime) {
+        synchronized (this) {
+            // The snapshot is newer than all deltas received before
+            spritesToSync = sprites;
+            spritesToSyncTime = serverTime;
+            deltaBatches.clear();
+            acknowledgedInput = Math.max(acknowledgedInput, inputSequence);
+        }
+    }
+
+    public void updateSpriteDeltas(Collection<SpriteDelta> deltas, int inputSequence, double serverTime) {
+        synchronized (this) {
+            deltaBatches.add(new DeltaBatch(serverTime, deltas));
+            acknowledgedInput = Math.max(acknowledgedInput, inputSequence);
+        }
+    }
+
+    public SnapshotInterpolator getInterpolator() {
+        return interpolator;
+    }
+
+    public void setPredictor(InputPredictor predictor) {
+        synchronized (this) {
+            this.predictor = predictor;
+            if (predictor != null && interpolator != null) {
+                interpolator.remove(predictor.getSprite().getId());
+            }
+        }
+    }
+
+    public InputPredictor getPredictor() {
+        synchronized (this) {
+            return predictor;
+        }
+    }
+
+    /**
+     * Move the predicted sprite locally, must be called on the thread calling OnUpdate().
+     * @return Sequence of this input to send with the move, 0 if nothing is predicted
+     */
+    public int predictMove(Direction direction) {
+        synchronized (scene) {
+            synchronized (this) {
+                if (predictor == null) {
+                    return 0;
+                }
+                int sequence = nextInputSequence++;
+                predictor.predictMove(direction, sequence);
+                return sequence;
+            }
+        }
+    }
+
+    /**
+     * @return Whether a resync should be requested, the flag is cleared after polling
+     */
+    public boolean pollResyncNeeded() {
+        synchronized (this) {
+            boolean result = resyncNeeded;
+            resyncNeeded = false;
+            return result;
+        }
+    }
+
+    @Override
+    public void resetAll() {
+        synchronized (this) {
+            super.resetAll();
+            spritesToSync = null;
+            deltaBatches.clear();
+            resyncNeeded = false;
+            predictor = null;
+            if (interpolator != null) {
+                interpolator.resetAll();
+            }
+        }
+    }
+
+    @Override
+    public void OnUpdate(float timestep) {
+        synchronized (scene) {
+            synchronized (this) {
+                if (spritesToSync != null) {
+                    applySnapshot(spritesToSync, spritesToSyncTime);
+                    spritesToSync = null;
+                }
+                applyDeltas();
+                if (interpolator != null) {
+                    interpolator.OnUpdate(timestep, this::findSprite);
+                }
+                if (predictor != null) {
+                    predictor.reconcile(acknowledgedInput);
+                    predictor.OnUpdate(timestep);
+                }
+
+                super.OnUpdate(timestep);
+            }
+        }
+    }
+
+    private Set<Integer> getIds(Collection<Sprite> sprites) {
+        Set<Integer> ids = new HashSet<>();
+        for (Sprite sprite : sprites) {
+            ids.add(sprite.getId());
+        }
+        return ids;
+    }
+
+    private Sprite findSprite(int spriteId) {
+        Sprite sprite = scene.getSpriteById(spriteId);
+        if (sprite == null) {
+            for (Sprite addingSprite : spritesToAdd) {
+                if (addingSprite.getId() == spriteId) {
+                    return addingSprite;
+                }
+            }
+        }
+        return sprite;
+    }
+
+    private void applySnapshot(Set<Sprite> snapshot, double serverTime) {
+        Set<Integer> removingIds = getIds(spritesToRemove);
+        Set<Integer> snapshotIds = getIds(snapshot);
+
+        Set<Sprite> newSprites = new HashSet<>();
+        for (Sprite sprite : snapshot) {
+            if (removingIds.contains(sprite.getId())) {
+                // Removed by a later RemoveSprites
+                continue;
+            }
+            Sprite currentSprite = scene.getSpriteById(sprite.getId());
+            if (currentSprite != null) {
+                // Keep the existing object, others (e.g. main player) may refer to it
+                currentSprite.updateFromAnotherSprite(sprite);
+                newSprites.add(currentSprite);
+            } else {
+                newSprites.add(sprite);
+            }
+        }
+        scene.clearSprites();
+        scene.addSprites(newSprites);
+
+        // Sprites added before the snapshot are already in it
+        spritesToAdd.removeIf(sprite -> snapshotIds.contains(sprite.getId()));
+
+        if (predictor != null && snapshotIds.contains(predictor.getSprite().getId())) {
+            predictor.snapshotApplied();
+        }
+        if (interpolator != null) {
+            // Sprites are where the snapshot put them, interpolation starts over from there
+            interpolator.clear();
+            interpolator.onServerTime(serverTime);
+        }
+    }
+
+    private void applyDeltas() {
+        if (deltaBatches.isEmpty()) {
+            return;
+        }
+        // Sprites waiting to be added are not in the scene's registry yet
+        IntObjectMap<Sprite> addingSprites = new IntObjectMap<>(spritesToAdd.size());
+        for (Sprite sprite : spritesToAdd) {
+            addingSprites.put(sprite.getId(), sprite);
+        }
+        Set<Integer> removingIds = getIds(spritesToRemove);
+
+        for (DeltaBatch batch : deltaBatches) {
+            if (interpolator != null) {
+                interpolator.onServerTime(batch.serverTime);
+            }
+            for (SpriteDelta delta : batch.deltas) {
+                Sprite sprite = scene.getSpriteById(delta.spriteId);
+                if (sprite == null) {
+                    sprite = addingSprites.get(delta.spriteId);
+                }
+                if (predictor != null && sprite == predictor.getSprite()) {
+                    predictor.applyAuthoritativeDelta(delta);
+                } else if (sprite != null && interpolator != null) {
+                    applyInterpolatedDelta(sprite, delta, batch.serverTime);
+                } else if (sprite != null) {
+                    sprite.applyDelta(delta);
+                } else if (!removingIds.contains(delta.spriteId)) {
+                    resyncNeeded = true;
+                }
+            }
+        }
+        deltaBatches.clear();
+    }
+
+    /**
+     * Apply everything but the position, which is buffered by the interpolator.
+     */
+    private void applyInterpolatedDelta(Sprite sprite, SpriteDelta delta, double serverTime) {
+        boolean hasPosition = delta.has(SpriteDelta.POSITION);
+        delta.mask &= ~SpriteDelta.POSITION;
+        if (delta.mask != 0) {
+            sprite.applyDelta(delta);
+        }
+
+        boolean moving = sprite instanceof MovableSprite && ((MovableSprite) sprite).getStatus() == MovableSprite.Status.Moving;
+        if (hasPosition) {
+            interpolator.addPosition(sprite, serverTime, delta.posX, delta.posY, moving);
+        } else if (delta.has(SpriteDelta.STATUS) && !moving) {
+            // Stopped at its target, no position is sent if it was already there
+            interpolator.addPosition(sprite, serverTime, delta.targetX, delta.targetY, false);
+        }
+    }
+
 }
@@ -1,7 +1,7 @@
 package com.pandaawake.gourdgame.scene.updater;
 
-import com.mandas.tiled2d.utils.IntPair;
 import com.mandas.tiled2d.utils.Pair;
+import com.mandas.tiled2d.utils.TileBitSet;
 import com.pandaawake.gourdgame.render.RenderCommand;
 import com.pandaawake.gourdgame.scene.Scene;
 import com.pandaawake.gourdgame.sprites.Sprite;
@@ -12,10 +12,14 @@ import com.pandaawake.gourdgame.tiles.Tile;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.Set;
-import java.util.TreeSet;
 
 public abstract class SceneUpdater {
 
+    /**
+     * Lock order: the Scene, then its updater. The Scene calls into the updater while holding its own lock
+     * (OnUpdate, OnRender, resetAll), so every updater function touching the scene takes the Scene's lock first.
+     * Functions which only queue changes just take the updater's lock.
+     */
     protected Scene scene = null;
 
     public SceneUpdater() {
@@ -24,6 +28,7 @@ public abstract class SceneUpdater {
 
     public void setScene(Scene scene) {
         this.scene = scene;
+        this.positionsToRepaint = new TileBitSet(scene.getGameMap().getWidth(), scene.getGameMap().getHeight());
     }
 
     /** Add and remove in update, to avoid the ConcurrentModificationException when iterating
@@ -35,22 +40,24 @@ public abstract class SceneUpdater {
     protected Set<Sprite> spritesToAdd = new HashSet<>();
     protected Set<Sprite> spritesToRemove = new HashSet<>();
     protected Set<Sprite> spritesToUpdate = new HashSet<>();
-    protected Set<IntPair> positionsToRepaint = new TreeSet<>();
+    protected TileBitSet positionsToRepaint = null;    // Created with the size of the scene's map
 
     // ---------------------- Things ----------------------
     public boolean addThing(Thing thing, ArrayList<Tile> tiles) {
-        synchronized (this) {
-            // Check every tile, avoiding conflict things
-            if (scene.getThings().contains(thing)) {
-                return false;
-            }
-            for (Tile tile : tiles) {
-                if (tile.getThing() != null) {
+        synchronized (scene) {
+            synchronized (this) {
+                // Check every tile, avoiding conflict things
+                if (scene.getThings().contains(thing)) {
                     return false;
                 }
+                for (Tile tile : tiles) {
+                    if (tile.getThing() != null) {
+                        return false;
+                    }
+                }
+                thingsToAdd.add(new Pair<>(thing, tiles));
+                return true;
             }
-            thingsToAdd.add(new Pair<>(thing, tiles));
-            return true;
         }
     }
 
@@ -77,24 +84,27 @@ public abstract class SceneUpdater {
     }
 
     public boolean removeThing(Thing thing) {
-        synchronized (this) {
-            if (!scene.getThings().contains(thing)) {
-                return false;
+        synchronized (scene) {
+            synchronized (this) {
+                if (!scene.getThings().contains(thing)) {
+                    return false;
+                }
+                thingsToRemove.add(thing);
+                return true;
             }
-            thingsToRemove.add(thing);
-            return true;
         }
     }
 
     public boolean removeThingById(int id) {
-        synchronized (this) {
-            for (Thing thing : scene.getThings()) {
-                if (thing.getId() == id) {
-                    thingsToRemove.add(thing);
-                    return true;
+        synchronized (scene) {
+            synchronized (this) {
+                Thing thing = scene.getThingById(id);
+                if (thing == null) {
+                    return false;
                 }
+                thingsToRemove.add(thing);
+                return true;
             }
-            return false;
         }
     }
 
@@ -113,14 +123,15 @@ public abstract class SceneUpdater {
     }
 
     public boolean removeSpriteById(int id) {
-        synchronized (this) {
-            for (Sprite sprite : scene.getSprites()) {
-                if (sprite.getId() == id) {
-                    spritesToRemove.add(sprite);
-                    return true;
+        synchronized (scene) {
+            synchronized (this) {
+                Sprite sprite = scene.getSpriteById(id);
+                if (sprite == null) {
+                    return false;
                 }
+                spritesToRemove.add(sprite);
+                return true;
             }
-            return false;
         }
     }
 
@@ -142,89 +153,85 @@ public abstract class SceneUpdater {
             thingsToAdd.clear();
             thingsToRemove.clear();
             thingsToUpdate.clear();
-            positionsToRepaint.clear();
+            if (positionsToRepaint != null) {
+                positionsToRepaint.clear();
+            }
         }
     }
 
     public void OnRender() {
-        synchronized (this) {
-            // Repaint area
-            if (positionsToRepaint.size() > 0) {
-                RenderCommand.repaintPosition(positionsToRepaint);
-                positionsToRepaint.clear();
+        synchronized (scene) {
+            synchronized (this) {
+                // Only tiles of changed things are drawn again, the rest of the map stays in the renderer's layers
+                if (!positionsToRepaint.isEmpty()) {
+                    RenderCommand.drawGameMapTiles(scene.getGameMap(), positionsToRepaint);
+                    RenderCommand.repaintTiles(positionsToRepaint);
+                    positionsToRepaint.clear();
+                }
             }
         }
     }
 
     public void OnUpdate(float timestep) {
-        synchronized (this) {
-            Set<Thing> addedThings = new HashSet<>();
-            Set<Thing> floors = new HashSet<>();
-
-            for (Pair<Thing, ArrayList<Tile>> thingAndTiles : thingsToAdd) {
-                Thing thing = thingAndTiles.first;
-                ArrayList<Tile> tiles = thingAndTiles.second;
-                for (Tile tile : tiles) {
-                    thing.addTile(tile);
+        synchronized (scene) {
+            synchronized (this) {
+                Set<Thing> addedThings = new HashSet<>();
+                Set<Thing> floors = new HashSet<>();
+
+                for (Pair<Thing, ArrayList<Tile>> thingAndTiles : thingsToAdd) {
+                    Thing thing = thingAndTiles.first;
+                    ArrayList<Tile> tiles = thingAndTiles.second;
+                    for (Tile tile : tiles) {
+                        thing.addTile(tile);
+                        positionsToRepaint.set(tile.getxPos(), tile.getyPos());
+                    }
+                    addedThings.add(thing);
                 }
-                addedThings.add(thing);
-            }
 
-            for (Thing thing : thingsToRemove) {
-                for (Tile tile : thing.getTiles()) {
-                    positionsToRepaint.add(new IntPair(tile.getxPos(), tile.getyPos()));
-                    Floor floor = new Floor(Scene.getNextThingId());
-                    floor.addTile(tile);
-                    floors.add(floor);
+                for (Thing thing : thingsToRemove) {
+                    for (Tile tile : thing.getTiles()) {
+                        positionsToRepaint.set(tile.getxPos(), tile.getyPos());
+                        Floor floor = new Floor(scene.getNextThingId());
+                        floor.addTile(tile);
+                        floors.add(floor);
+                    }
+                    thing.getTiles().clear();
                 }
-                thing.getTiles().clear();
-            }
 
-            for (Thing thing : thingsToUpdate) {
-                for (Tile tile : thing.getTiles()) {
-                    positionsToRepaint.add(new IntPair(tile.getxPos(), tile.getyPos()));
+                for (Thing thing : thingsToUpdate) {
+                    for (Tile tile : thing.getTiles()) {
+                        positionsToRepaint.set(tile.getxPos(), tile.getyPos());
+                    }
                 }
-            }
 
-            scene.getThings().addAll(addedThings);
-            scene.getThings().removeAll(thingsToRemove);
-            scene.getThings().addAll(floors);
-            scene.getSprites().addAll(spritesToAdd);
-            scene.getSprites().removeAll(spritesToRemove);
-
-            for (Sprite sprite : spritesToUpdate) {
-                Sprite matchedSprite = null;
-                for (Sprite sceneSprite : scene.getSprites()) {
-                    if (sprite.getId() == sceneSprite.getId()) {
-                        matchedSprite = sceneSprite;
-                        break;
+                scene.addThings(addedThings);
+                scene.removeThings(thingsToRemove);
+                scene.addThings(floors);
+                scene.addSprites(spritesToAdd);
+                scene.removeSprites(spritesToRemove);
+
+                for (Sprite sprite : spritesToUpdate) {
+                    Sprite matchedSprite = scene.getSpriteById(sprite.getId());
+                    if (matchedSprite != null) {
+                        matchedSprite.updateFromAnotherSprite(sprite);
                     }
                 }
-                if (matchedSprite != null) {
-                    matchedSprite.updateFromAnotherSprite(sprite);
-                }
-            }
 
-            for (Thing thing : thingsToUpdate) {
-                Thing matchedThing = null;
-                for (Thing sceneThing : scene.getThings()) {
-                    if (thing.getId() == sceneThing.getId()) {
-                        matchedThing = sceneThing;
-                        break;
+                for (Thing thing : thingsToUpdate) {
+                    Thing matchedThing = scene.getThingById(thing.getId());
+                    if (matchedThing != null) {
+                        matchedThing.updateFromAnotherThing(thing);
                     }
                 }
-                if (matchedThing != null) {
-                    matchedThing.updateFromAnotherThing(thing);
-                }
-            }
 
-            spritesToAdd.clear();
-            spritesToRemove.clear();
-            spritesToUpdate.clear();
-            thingsToAdd.clear();
-            thingsToRemove.clear();
-            thingsToUpdate.clear();
+                spritesToAdd.clear();
+                spritesToRemove.clear();
+                spritesToUpdate.clear();
+                thingsToAdd.clear();
+                thingsToRemove.clear();
+                thingsToUpdate.clear();
 
+            }
         }
     }
 
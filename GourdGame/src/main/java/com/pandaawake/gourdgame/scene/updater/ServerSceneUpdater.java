@@ -1,25 +1,34 @@
 package com.pandaawake.gourdgame.scene.updater;
 
 import com.mandas.tiled2d.utils.Pair;
+import com.pandaawake.gourdgame.Config;
 import com.pandaawake.gourdgame.network.GameServer;
+import com.pandaawake.gourdgame.network.data.action.Action;
 import com.pandaawake.gourdgame.network.data.action.SceneAction;
-import com.pandaawake.gourdgame.scene.Scene;
+import com.pandaawake.gourdgame.network.replication.SceneReplicator;
 import com.pandaawake.gourdgame.sprites.Sprite;
 import com.pandaawake.gourdgame.tiles.Floor;
 import com.pandaawake.gourdgame.tiles.Thing;
 import com.pandaawake.gourdgame.tiles.Tile;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 public class ServerSceneUpdater extends SceneUpdater {
 
     private final GameServer gameServer;
+    private final SceneReplicator sceneReplicator;
+    private double serverTime = 0.0;                // Seconds updated so far, sent with the replicated sprites
+    private double nextReplicationTime = 0.0;
 
-    public ServerSceneUpdater(GameServer gameServer) {
+    public ServerSceneUpdater(GameServer gameServer, SceneReplicator sceneReplicator) {
         super();
         this.gameServer = gameServer;
+        this.sceneReplicator = sceneReplicator;
     }
 
     @Override
@@ -37,60 +46,70 @@ public class ServerSceneUpdater extends SceneUpdater {
 
     @Override
     public void OnUpdate(float timestep) {
-        synchronized (Scene.class) {
-            Set<Thing> addedThings = new HashSet<>();
-            Set<Thing> floors = new HashSet<>();
-
-            for (Pair<Thing, ArrayList<Tile>> thingAndTiles : thingsToAdd) {
-                Thing thing = thingAndTiles.first;
-                ArrayList<Tile> tiles = thingAndTiles.second;
-                for (Tile tile : tiles) {
-                    thing.addTile(tile);
+        synchronized (scene) {
+            synchronized (this) {
+                serverTime += timestep;
+                Set<Thing> addedThings = new HashSet<>();
+                Set<Thing> floors = new HashSet<>();
+                // All actions of this tick are sent in one frame
+                List<Action> actionsToSend = new ArrayList<>();
+
+                for (Pair<Thing, ArrayList<Tile>> thingAndTiles : thingsToAdd) {
+                    Thing thing = thingAndTiles.first;
+                    ArrayList<Tile> tiles = thingAndTiles.second;
+                    for (Tile tile : tiles) {
+                        thing.addTile(tile);
+                    }
+                    addedThings.add(thing);
                 }
-                addedThings.add(thing);
-            }
 
-            for (Thing thing : thingsToRemove) {
-                for (Tile tile : thing.getTiles()) {
-                    // positionsToRepaint.add(new IntPair(tile.getxPos(), tile.getyPos()));
-                    Floor floor = new Floor(Scene.getNextThingId());
-                    floor.addTile(tile);
-                    floors.add(floor);
+                for (Thing thing : thingsToRemove) {
+                    for (Tile tile : thing.getTiles()) {
+                        // positionsToRepaint.set(tile.getxPos(), tile.getyPos());
+                        Floor floor = new Floor(scene.getNextThingId());
+                        floor.addTile(tile);
+                        floors.add(floor);
+                    }
+                    thing.getTiles().clear();
                 }
-                thing.getTiles().clear();
-            }
 
-            scene.getThings().addAll(addedThings);
-            if (addedThings.size() > 0) {
-                gameServer.sendAction(new SceneAction.AddThings(-1, addedThings));
-            }
-            scene.getThings().removeAll(thingsToRemove);
-            if (thingsToRemove.size() > 0) {
-                gameServer.sendAction(new SceneAction.RemoveThings(-1, thingsToRemove));
-            }
-            scene.getThings().addAll(floors);
+                scene.addThings(addedThings);
+                if (addedThings.size() > 0) {
+                    actionsToSend.add(new SceneAction.AddThings(-1, addedThings));
+                }
+                scene.removeThings(thingsToRemove);
+                if (thingsToRemove.size() > 0) {
+                    actionsToSend.add(new SceneAction.RemoveThings(-1, thingsToRemove));
+                }
+                scene.addThings(floors);
 
-            if (thingsToUpdate.size() > 0) {
-                gameServer.sendAction(new SceneAction.UpdateThings(-1, thingsToUpdate));
-            }
+                if (thingsToUpdate.size() > 0) {
+                    actionsToSend.add(new SceneAction.UpdateThings(-1, thingsToUpdate));
+                }
 
-            scene.getSprites().addAll(spritesToAdd);
-            if (spritesToAdd.size() > 0) {
-                gameServer.sendAction(new SceneAction.AddSprites(-1, spritesToAdd));
-            }
-            scene.getSprites().removeAll(spritesToRemove);
-            if (spritesToRemove.size() > 0) {
-                gameServer.sendAction(new SceneAction.RemoveSprites(-1, spritesToRemove));
-            }
+                scene.addSprites(spritesToAdd);
+                if (spritesToAdd.size() > 0) {
+                    actionsToSend.add(new SceneAction.AddSprites(-1, spritesToAdd));
+                }
+                scene.removeSprites(spritesToRemove);
+                if (spritesToRemove.size() > 0) {
+                    actionsToSend.add(new SceneAction.RemoveSprites(-1, spritesToRemove));
+                }
 
-            thingsToAdd.clear();
-            thingsToRemove.clear();
-            thingsToUpdate.clear();
-            spritesToAdd.clear();
-            spritesToRemove.clear();
+                // Only changed sprite fields are sent, every client has its own baseline.
+                // Sprites are replicated at most Config.ReplicationRate times per second, clients interpolate between.
+                Map<Integer, SceneAction> replicationActions = Collections.emptyMap();
+                if (serverTime + timestep / 2 >= nextReplicationTime) {
+                    replicationActions = sceneReplicator.replicate(scene.getSprites(), serverTime);
+                    nextReplicationTime = Math.max(nextReplicationTime + 1.0 / Config.ReplicationRate, serverTime);
+                }
+                gameServer.sendActions(actionsToSend, replicationActions);
 
-            if (scene.getSprites().size() > 0) {
-                gameServer.sendAction(new SceneAction.UpdateSprites(-1, scene.getSprites()));
+                thingsToAdd.clear();
+                thingsToRemove.clear();
+                thingsToUpdate.clear();
+                spritesToAdd.clear();
+                spritesToRemove.clear();
             }
         }
     }
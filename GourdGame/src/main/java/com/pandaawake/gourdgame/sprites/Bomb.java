@@ -3,15 +3,13 @@ package com.pandaawake.gourdgame.sprites;
 import com.mandas.tiled2d.core.Log;
 import com.mandas.tiled2d.utils.FloatPair;
 import com.pandaawake.gourdgame.Config;
+import com.pandaawake.gourdgame.network.replication.SpriteDelta;
 import com.pandaawake.gourdgame.scene.Scene;
-import com.pandaawake.gourdgame.tiles.Thing;
-import com.mandas.tiled2d.utils.IntPair;
 import com.pandaawake.gourdgame.utils.DataUtils;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.util.HashSet;
-import java.util.Set;
+import java.nio.ByteBuffer;
 
 public class Bomb extends Sprite {
 
@@ -22,7 +20,7 @@ public class Bomb extends Sprite {
     protected boolean exploded = false;           // For safety
 
     /**
-     * Bomb is a 3x3 destroyer!
+     * Bomb is a destroyer, its blast area is decided by Config.BombBlastShape!
      */
     public Bomb(int id, Scene scene, int ownerId, float posX, float posY) {
         super(id, false, scene, 1, 1);
@@ -35,15 +33,13 @@ public class Bomb extends Sprite {
         return ownerId;
     }
 
+    public float getElapsedTime() {
+        return elapsedTime;
+    }
+
     public PlayableSprite getOwner() {
-        PlayableSprite matchedSprite = null;
-        for (Sprite sceneSprite : scene.getSprites()) {
-            if (sceneSprite instanceof PlayableSprite && sceneSprite.getId() == ownerId) {
-                matchedSprite = (PlayableSprite) sceneSprite;
-                break;
-            }
-        }
-        return matchedSprite;
+        Sprite sceneSprite = scene.getSpriteById(ownerId);
+        return sceneSprite instanceof PlayableSprite ? (PlayableSprite) sceneSprite : null;
     }
 
     public void setExplodeImmediately() {
@@ -64,6 +60,15 @@ public class Bomb extends Sprite {
         return oStream.toByteArray();
     }
 
+    @Override
+    public void writeTo(ByteBuffer buffer) {
+        super.writeTo(buffer);
+        buffer.putFloat(elapsedTime);
+        buffer.putInt(ownerId);
+        buffer.putInt(explodeImmediately ? 1 : 0);
+        buffer.putInt(exploded ? 1 : 0);
+    }
+
     @Override
     public void OnUpdate(float timestep) {
         synchronized (this) {
@@ -72,61 +77,26 @@ public class Bomb extends Sprite {
             }
             elapsedTime += timestep;
             if (elapsedTime >= TimeBeforeExploding || explodeImmediately) {
-                // Exploded!
-                exploded = true;
-                int left = (int) posX - Config.BombExtendedRadius;
-                int right = left + 2 * Config.BombExtendedRadius;
-                int top = (int) posY - Config.BombExtendedRadius;
-                int bottom = top + 2 * Config.BombExtendedRadius;
-
-                Set<Sprite> spritesToRemove = new HashSet<>();
-
-                // Exploding area
-                for (int x = Math.max(left, 0); x <= right && x < Config.MapWidth; x++) {
-                    for (int y = Math.max(top, 0); y <= bottom && y < Config.MapHeight; y++) {
-                        // Remove things which were exploded
-                        Thing thing = scene.getGameMap().getTile(x, y).getThing();
-                        scene.getSceneUpdater().addUpdateThing(thing);
-                        if (thing.OnExplode()) {
-                            scene.getSceneUpdater().removeThing(thing);
-                        }
-
-                        // Remove sprites which were exploded
-                        for (Sprite sprite : scene.getSprites()) {
-                            if (sprite == this) {
-                                continue;
-                            }
-                            if (sprite.getCollisionBox().contains(new IntPair(x, y))) {
-                                if (sprite.OnExplode(this)) {
-                                    spritesToRemove.add(sprite);
-                                }
-
-                                // Explode bombs nearby
-                                if (sprite instanceof Bomb) {
-                                    ((Bomb) sprite).setExplodeImmediately();
-                                }
-                                break;
-                            }
-                        }
-                    }
-                }
-                // Remove myself from scene
-                spritesToRemove.add(this);
-                for (Sprite sprite : spritesToRemove) {
-                    scene.getSceneUpdater().removeSprite(sprite);
-                }
-
-                // Find its owner
-                PlayableSprite matchedSprite = getOwner();
-                if (matchedSprite != null) {
-                    matchedSprite.bombDestroyed(this);
-                } else {
-                    Log.app().error(getClass().getName() + ": no matched sprite of bomb owner!");
-                }
+                // Exploded! The scene resolves all explosions of this tick together
+                scene.getExplosionResolver().schedule(this);
             }
         }
     }
 
+    /**
+     * Mark this bomb as exploded.
+     * @return false if it has exploded already
+     */
+    public boolean markExploded() {
+        synchronized (this) {
+            if (exploded) {
+                return false;
+            }
+            exploded = true;
+            return true;
+        }
+    }
+
     @Override
     public void updateFromAnotherSprite(Sprite sprite) {
         super.updateFromAnotherSprite(sprite);
@@ -136,4 +106,12 @@ public class Bomb extends Sprite {
         this.exploded = ((Bomb) sprite).exploded;
     }
 
+    @Override
+    public void applyDelta(SpriteDelta delta) {
+        super.applyDelta(delta);
+        if (delta.has(SpriteDelta.BOMB_TIMER)) {
+            this.elapsedTime = delta.elapsedTime;
+        }
+    }
+
 }
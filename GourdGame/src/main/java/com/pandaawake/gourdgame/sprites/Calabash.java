@@ -46,7 +46,7 @@ public class Calabash extends PlayableSprite {
     @Override
     public boolean setNewBomb() {
         if (canSetBomb()) {
-            Bomb bomb = new Bomb(Scene.getNextSpriteId(), scene, id, posX, posY);
+            Bomb bomb = new Bomb(scene.getNextSpriteId(), scene, id, posX, posY);
             bombs.add(bomb);
             scene.getSceneUpdater().addSprite(bomb);
             return true;
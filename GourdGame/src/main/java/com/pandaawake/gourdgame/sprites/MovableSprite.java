@@ -1,6 +1,7 @@
 package com.pandaawake.gourdgame.sprites;
 
 import com.pandaawake.gourdgame.Config;
+import com.pandaawake.gourdgame.network.replication.SpriteDelta;
 import com.pandaawake.gourdgame.scene.Scene;
 import com.pandaawake.gourdgame.utils.DataUtils;
 import com.pandaawake.gourdgame.utils.Direction;
@@ -9,6 +10,7 @@ import com.mandas.tiled2d.utils.IntPair;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.Set;
 import java.util.TreeSet;
 
@@ -103,11 +105,33 @@ public abstract class MovableSprite extends Sprite {
             targetPos.first = newPosition.first.floatValue();
             targetPos.second = newPosition.second.floatValue();
             movingTime = 0.0f;
+            updateOccupancy();
             return true;
         }
         return false;
     }
 
+    /**
+     * Arrive at the target of the current move at once.
+     */
+    public void finishMove() {
+        if (status == Status.Moving) {
+            status = Status.Ok;
+            setPos(targetPos.first, targetPos.second);
+        }
+    }
+
+    /**
+     * The tile this sprite stops at: the target while moving, otherwise where it is.
+     */
+    public int getDestinationX() {
+        return Math.round(status == Status.Moving ? targetPos.first : posX);
+    }
+
+    public int getDestinationY() {
+        return Math.round(status == Status.Moving ? targetPos.second : posY);
+    }
+
     public boolean canMove(Direction direction) {
         if (status != Status.Ok) {
             return false;
@@ -163,6 +187,38 @@ public abstract class MovableSprite extends Sprite {
         return collisionBox;
     }
 
+    /**
+     * Same area as tryToMoveCollisionBox() without creating any object.
+     */
+    public void fillMoveBounds(int targetX, int targetY, int[] bounds) {
+        bounds[0] = (int) Math.round(Math.floor(Math.min(targetX, posX)));
+        bounds[1] = (int) Math.round(Math.floor(Math.min(targetY, posY)));
+        bounds[2] = (int) Math.round(Math.ceil(Math.max(targetX, posX))) + spriteWidth - 1;
+        bounds[3] = (int) Math.round(Math.ceil(Math.max(targetY, posY))) + spriteHeight - 1;
+    }
+
+    /**
+     * Same area as tryToAddCollisionBox() without creating any object.
+     */
+    public void fillAddBounds(int targetX, int targetY, int[] bounds) {
+        bounds[0] = targetX;
+        bounds[1] = targetY;
+        bounds[2] = targetX + spriteWidth - 1;
+        bounds[3] = targetY + spriteHeight - 1;
+    }
+
+    @Override
+    public void fillCollisionBounds(int[] bounds) {
+        if (status == Status.Ok) {
+            super.fillCollisionBounds(bounds);
+            return;
+        }
+        bounds[0] = (int) Math.round(Math.floor(Math.min(targetPos.first, posX)));
+        bounds[1] = (int) Math.round(Math.floor(Math.min(targetPos.second, posY)));
+        bounds[2] = (int) Math.round(Math.ceil(Math.max(targetPos.first, posX))) + spriteWidth - 1;
+        bounds[3] = (int) Math.round(Math.ceil(Math.max(targetPos.second, posY))) + spriteHeight - 1;
+    }
+
     // Collision box
     @Override
     public Set<IntPair> getCollisionBox() {
@@ -235,6 +291,18 @@ public abstract class MovableSprite extends Sprite {
         return oStream.toByteArray();
     }
 
+    @Override
+    public void writeTo(ByteBuffer buffer) {
+        super.writeTo(buffer);
+        buffer.putFloat(movingSpeed);
+        buffer.putFloat(targetDeltaPos.first);
+        buffer.putFloat(targetDeltaPos.second);
+        buffer.putFloat(targetPos.first);
+        buffer.putFloat(targetPos.second);
+        buffer.putFloat(movingTime);
+        buffer.putInt(status.number);
+    }
+
     @Override
     public void updateFromAnotherSprite(Sprite sprite) {
         super.updateFromAnotherSprite(sprite);
@@ -245,5 +313,22 @@ public abstract class MovableSprite extends Sprite {
         this.targetPos.second = ((MovableSprite) sprite).targetPos.second;
         this.movingTime = ((MovableSprite) sprite).movingTime;
         this.status = ((MovableSprite) sprite).status;
+        updateOccupancy();
+    }
+
+    @Override
+    public void applyDelta(SpriteDelta delta) {
+        super.applyDelta(delta);
+        if (delta.has(SpriteDelta.STATUS)) {
+            this.status = Status.fromNumber(delta.status);
+            this.targetPos.first = delta.targetX;
+            this.targetPos.second = delta.targetY;
+            // Continue a move from where the delta put us, in case OnUpdate is called (a predicted sprite)
+            float dx = targetPos.first - posX, dy = targetPos.second - posY;
+            targetDeltaPos.first = Math.signum(dx);
+            targetDeltaPos.second = Math.signum(dy);
+            movingTime = (1.0f - Math.min(Math.abs(dx) + Math.abs(dy), 1.0f)) / movingSpeed;
+            updateOccupancy();
+        }
     }
 }
@@ -1,10 +1,12 @@
 package com.pandaawake.gourdgame.sprites;
 
+import com.pandaawake.gourdgame.network.replication.SpriteDelta;
 import com.pandaawake.gourdgame.scene.Scene;
 import com.pandaawake.gourdgame.utils.DataUtils;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -33,6 +35,12 @@ public class PlayableSprite extends MovableSprite {
         return oStream.toByteArray();
     }
 
+    @Override
+    public void writeTo(ByteBuffer buffer) {
+        super.writeTo(buffer);
+        buffer.putInt(lives);
+    }
+
     public int getLives() {
         return lives;
     }
@@ -60,4 +68,12 @@ public class PlayableSprite extends MovableSprite {
         this.lives = ((PlayableSprite) sprite).lives;
     }
 
+    @Override
+    public void applyDelta(SpriteDelta delta) {
+        super.applyDelta(delta);
+        if (delta.has(SpriteDelta.LIVES)) {
+            this.lives = delta.lives;
+        }
+    }
+
 }
@@ -27,7 +27,7 @@ public class Snake extends PlayableSprite {
     @Override
     public boolean setNewBomb() {
         if (canSetBomb()) {
-            Bomb bomb = new Bomb2(Scene.getNextSpriteId(), scene, id, posX, posY);
+            Bomb bomb = new Bomb2(scene.getNextSpriteId(), scene, id, posX, posY);
             bombs.add(bomb);
             scene.getSceneUpdater().addSprite(bomb);
             return true;
@@ -7,17 +7,19 @@ import com.mandas.tiled2d.scene.TransformComponent;
 import com.mandas.tiled2d.utils.FloatPair;
 import com.mandas.tiled2d.utils.IntPair;
 import com.pandaawake.gourdgame.Config;
+import com.pandaawake.gourdgame.network.replication.SpriteDelta;
 import com.pandaawake.gourdgame.scene.Scene;
+import com.pandaawake.gourdgame.utils.BufferWritable;
 import com.pandaawake.gourdgame.utils.DataUtils;
 import com.pandaawake.gourdgame.utils.ToBytes;
 
-import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.Set;
 import java.util.TreeSet;
 
-public abstract class Sprite extends Entity implements ToBytes {
+public abstract class Sprite extends Entity implements ToBytes, BufferWritable {
 
     public static final int SNAKE = 1;
     public static final int CALABASH = 2;
@@ -35,6 +37,10 @@ public abstract class Sprite extends Entity implements ToBytes {
     protected int spriteRenderWidth, spriteRenderHeight;    // Use for rendering
     protected boolean blocking;
 
+    // The collision box registered in the occupancy grid of the GameMap
+    private final int[] occupiedBounds = new int[4];
+    private boolean occupying = false;
+    private boolean inScene = false;
 
 
     // TODO: Distinguish Rendering area and Collision area
@@ -92,10 +98,12 @@ public abstract class Sprite extends Entity implements ToBytes {
     public void setX(float x) {
         posX = x;
         getTransformComponent().setTranslationX(x);
+        updateOccupancy();
     }
     public void setY(float y) {
         posY = y;
         getTransformComponent().setTranslationY(y);
+        updateOccupancy();
     }
     public void setPos(float x, float y) {
         setX(x);
@@ -130,6 +138,52 @@ public abstract class Sprite extends Entity implements ToBytes {
         return collisionBox;
     }
 
+    /**
+     * Same area as getCollisionBox() without creating any object.
+     * @param bounds Output, {left, top, right, bottom}, all inclusive and not clipped by the map
+     */
+    public void fillCollisionBounds(int[] bounds) {
+        bounds[0] = (int) Math.round(Math.floor(posX));
+        bounds[1] = (int) Math.round(Math.floor(posY));
+        bounds[2] = (int) Math.round(Math.ceil(posX)) + spriteWidth - 1;
+        bounds[3] = (int) Math.round(Math.ceil(posY)) + spriteHeight - 1;
+    }
+
+    /**
+     * Called by Scene when this sprite is added to / removed from it.
+     */
+    public void setInScene(boolean inScene) {
+        this.inScene = inScene;
+        updateOccupancy();
+    }
+
+    /**
+     * Register the current collision box in the occupancy grid,
+     * must be called whenever position, status or blocking changes.
+     */
+    protected void updateOccupancy() {
+        if (scene == null || (!occupying && !inScene)) {
+            return;
+        }
+        if (occupying) {
+            scene.getGameMap().removeOccupancy(occupiedBounds);
+            occupying = false;
+        }
+        if (inScene && blocking) {
+            fillCollisionBounds(occupiedBounds);
+            scene.getGameMap().addOccupancy(occupiedBounds);
+            occupying = true;
+        }
+    }
+
+    /**
+     * @return Whether this sprite's registered collision box covers (x, y)
+     */
+    public boolean occupies(int x, int y) {
+        return occupying && x >= occupiedBounds[0] && x <= occupiedBounds[2]
+                && y >= occupiedBounds[1] && y <= occupiedBounds[3];
+    }
+
     // Rendering box
     public Set<IntPair> getRenderingBox() {
         int left = (int) Math.round(Math.floor(posX));
@@ -174,12 +228,39 @@ public abstract class Sprite extends Entity implements ToBytes {
         return oStream.toByteArray();
     }
 
+    protected int getTypeNumber() {
+        if (this instanceof Snake) {
+            return SNAKE;
+        } else if (this instanceof Calabash) {
+            return CALABASH;
+        } else if (this instanceof Bomb2) {
+            return BOMB2;
+        } else {
+            return BOMB;
+        }
+    }
+
+    @Override
+    public void writeTo(ByteBuffer buffer) {
+        // Same format as toBytes()
+        buffer.putInt(getTypeNumber());
+        buffer.putInt(id);
+        buffer.putFloat(posX);
+        buffer.putFloat(posY);
+        buffer.putInt(spriteWidth);
+        buffer.putInt(spriteHeight);
+        buffer.putInt(spriteRenderWidth);
+        buffer.putInt(spriteRenderHeight);
+        buffer.putInt(blocking ? 1 : 0);
+    }
+
     public static Sprite parseBytes(byte[] data, Scene scene) throws IOException {
-        ByteArrayInputStream iStream = new ByteArrayInputStream(data);
-        byte[] fourBytes = new byte[4];
+        return readFrom(ByteBuffer.wrap(data), scene);
+    }
 
+    public static Sprite readFrom(ByteBuffer buffer, Scene scene) {
         Sprite sprite = null;
-        iStream.read(fourBytes); int type = DataUtils.bytesToInt(fourBytes);
+        int type = buffer.getInt();
         switch (type) {
             case SNAKE:
                 sprite = new Snake(-1, scene);
@@ -197,41 +278,29 @@ public abstract class Sprite extends Entity implements ToBytes {
                 Log.app().error("PlayableSprite parseBytes(): illegal type number!");
                 return null;
         }
-        iStream.read(fourBytes); sprite.setId(DataUtils.bytesToInt(fourBytes));
-        iStream.read(fourBytes); sprite.setX(DataUtils.bytesToFloat(fourBytes));
-        iStream.read(fourBytes); sprite.setY(DataUtils.bytesToFloat(fourBytes));
-        iStream.read(fourBytes); sprite.spriteWidth = DataUtils.bytesToInt(fourBytes);
-        iStream.read(fourBytes); sprite.spriteHeight = DataUtils.bytesToInt(fourBytes);
-        iStream.read(fourBytes); sprite.spriteRenderWidth = DataUtils.bytesToInt(fourBytes);
-        iStream.read(fourBytes); sprite.spriteRenderHeight = DataUtils.bytesToInt(fourBytes);
-        iStream.read(fourBytes); sprite.blocking = (DataUtils.bytesToInt(fourBytes) == 1);
+        sprite.setId(buffer.getInt());
+        sprite.setX(buffer.getFloat());
+        sprite.setY(buffer.getFloat());
+        sprite.spriteWidth = buffer.getInt();
+        sprite.spriteHeight = buffer.getInt();
+        sprite.spriteRenderWidth = buffer.getInt();
+        sprite.spriteRenderHeight = buffer.getInt();
+        sprite.blocking = (buffer.getInt() == 1);
 
         if (sprite instanceof PlayableSprite) {
-            iStream.read(fourBytes);
-            ((PlayableSprite) sprite).movingSpeed = DataUtils.bytesToFloat(fourBytes);
-            iStream.read(fourBytes);
-            ((PlayableSprite) sprite).targetDeltaPos.first = DataUtils.bytesToFloat(fourBytes);
-            iStream.read(fourBytes);
-            ((PlayableSprite) sprite).targetDeltaPos.second = DataUtils.bytesToFloat(fourBytes);
-            iStream.read(fourBytes);
-            ((PlayableSprite) sprite).targetPos.first = DataUtils.bytesToFloat(fourBytes);
-            iStream.read(fourBytes);
-            ((PlayableSprite) sprite).targetPos.second = DataUtils.bytesToFloat(fourBytes);
-            iStream.read(fourBytes);
-            ((PlayableSprite) sprite).movingTime = DataUtils.bytesToFloat(fourBytes);
-            iStream.read(fourBytes);
-            ((PlayableSprite) sprite).status = MovableSprite.Status.fromNumber(DataUtils.bytesToInt(fourBytes));
-            iStream.read(fourBytes);
-            ((PlayableSprite) sprite).lives = DataUtils.bytesToInt(fourBytes);
+            ((PlayableSprite) sprite).movingSpeed = buffer.getFloat();
+            ((PlayableSprite) sprite).targetDeltaPos.first = buffer.getFloat();
+            ((PlayableSprite) sprite).targetDeltaPos.second = buffer.getFloat();
+            ((PlayableSprite) sprite).targetPos.first = buffer.getFloat();
+            ((PlayableSprite) sprite).targetPos.second = buffer.getFloat();
+            ((PlayableSprite) sprite).movingTime = buffer.getFloat();
+            ((PlayableSprite) sprite).status = MovableSprite.Status.fromNumber(buffer.getInt());
+            ((PlayableSprite) sprite).lives = buffer.getInt();
         } else if (sprite instanceof Bomb) {
-            iStream.read(fourBytes);
-            ((Bomb) sprite).elapsedTime = DataUtils.bytesToFloat(fourBytes);
-            iStream.read(fourBytes);
-            ((Bomb) sprite).ownerId = DataUtils.bytesToInt(fourBytes);
-            iStream.read(fourBytes);
-            ((Bomb) sprite).explodeImmediately = (DataUtils.bytesToInt(fourBytes) == 1);
-            iStream.read(fourBytes);
-            ((Bomb) sprite).exploded = (DataUtils.bytesToInt(fourBytes) == 1);
+            ((Bomb) sprite).elapsedTime = buffer.getFloat();
+            ((Bomb) sprite).ownerId = buffer.getInt();
+            ((Bomb) sprite).explodeImmediately = (buffer.getInt() == 1);
+            ((Bomb) sprite).exploded = (buffer.getInt() == 1);
         }
 
         return sprite;
@@ -244,6 +313,17 @@ public abstract class Sprite extends Entity implements ToBytes {
         this.spriteRenderWidth = sprite.spriteRenderWidth;
         this.spriteRenderHeight = sprite.spriteRenderHeight;
         this.blocking = sprite.blocking;
+        updateOccupancy();
+    }
+
+    /**
+     * Apply the fields replicated by the server.
+     * @param delta Changed fields of this sprite
+     */
+    public void applyDelta(SpriteDelta delta) {
+        if (delta.has(SpriteDelta.POSITION)) {
+            setPos(delta.posX, delta.posY);
+        }
     }
 
 
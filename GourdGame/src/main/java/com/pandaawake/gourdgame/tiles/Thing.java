@@ -4,16 +4,16 @@ import com.mandas.tiled2d.core.Log;
 import com.mandas.tiled2d.renderer.Texture;
 import com.mandas.tiled2d.renderer.TileTextures;
 import com.pandaawake.gourdgame.scene.Scene;
+import com.pandaawake.gourdgame.utils.BufferWritable;
 import com.pandaawake.gourdgame.utils.DataUtils;
 import com.pandaawake.gourdgame.utils.ToBytes;
 
-import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
-import java.util.Objects;
 
-public class Thing implements ToBytes {
+public class Thing implements ToBytes, BufferWritable {
 
     public static final int FLOOR = 1;
     public static final int TREE = 2;
@@ -91,10 +91,33 @@ public class Thing implements ToBytes {
         return oStream.toByteArray();
     }
 
+    protected int getTypeNumber() {
+        if (this instanceof Floor) {
+            return FLOOR;
+        } else if (this instanceof Tree) {
+            return TREE;
+        } else if (this instanceof Wall) {
+            return WALL;
+        } else {
+            return TWICE_BREAKABLE_WALL;
+        }
+    }
+
+    @Override
+    public void writeTo(ByteBuffer buffer) {
+        // Same format as toBytes()
+        buffer.putInt(getTypeNumber());
+        buffer.putInt(id);
+        buffer.putInt(blocking ? 1 : 0);
+        DataUtils.writeCollection(buffer, tiles);
+    }
+
     public static Thing parseBytes(byte[] data, Scene scene) throws IOException {
-        ByteArrayInputStream iStream = new ByteArrayInputStream(data);
-        byte[] fourBytes = new byte[4];
-        iStream.read(fourBytes); int type = DataUtils.bytesToInt(fourBytes);
+        return readFrom(ByteBuffer.wrap(data), scene);
+    }
+
+    public static Thing readFrom(ByteBuffer buffer, Scene scene) {
+        int type = buffer.getInt();
         Thing thing = null;
         switch (type) {
             case FLOOR:
@@ -113,14 +136,11 @@ public class Thing implements ToBytes {
                 Log.app().error("PlayableSprite parseBytes(): illegal type number!");
                 return null;
         }
-        iStream.read(fourBytes); thing.id = DataUtils.bytesToInt(fourBytes);
-        iStream.read(fourBytes); thing.blocking = (DataUtils.bytesToInt(fourBytes) == 1);
-        for (byte[] infoBytes : Objects.requireNonNull(DataUtils.parseCollectionBytes(iStream))) {
-            thing.tiles.add(Tile.parseBytes(infoBytes, scene));
-        }
+        thing.id = buffer.getInt();
+        thing.blocking = (buffer.getInt() == 1);
+        thing.tiles.addAll(DataUtils.readCollection(buffer, tileBuffer -> Tile.readFrom(tileBuffer, scene)));
         if (type == TWICE_BREAKABLE_WALL) {
-            iStream.read(fourBytes);
-            ((TwiceBreakableWall) thing).lives = DataUtils.bytesToInt(fourBytes);
+            ((TwiceBreakableWall) thing).lives = buffer.getInt();
         }
 
         return thing;
@@ -2,14 +2,15 @@ package com.pandaawake.gourdgame.tiles;
 
 import com.mandas.tiled2d.utils.IntPair;
 import com.pandaawake.gourdgame.scene.Scene;
+import com.pandaawake.gourdgame.utils.BufferWritable;
 import com.pandaawake.gourdgame.utils.DataUtils;
 import com.pandaawake.gourdgame.utils.ToBytes;
 
-import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
-public class Tile implements ToBytes {
+public class Tile implements ToBytes, BufferWritable {
 
     private Thing thing;
     private int xPos;
@@ -63,13 +64,19 @@ public class Tile implements ToBytes {
         return oStream.toByteArray();
     }
 
-    public static Tile parseBytes(byte[] data, Scene scene) throws IOException {
-        ByteArrayInputStream iStream = new ByteArrayInputStream(data);
+    @Override
+    public void writeTo(ByteBuffer buffer) {
+        buffer.putInt(xPos);
+        buffer.putInt(yPos);
+    }
 
-        byte[] fourBytes = new byte[4];
-        iStream.read(fourBytes); int xPos = DataUtils.bytesToInt(fourBytes);
-        iStream.read(fourBytes); int yPos = DataUtils.bytesToInt(fourBytes);
+    public static Tile parseBytes(byte[] data, Scene scene) throws IOException {
+        return readFrom(ByteBuffer.wrap(data), scene);
+    }
 
+    public static Tile readFrom(ByteBuffer buffer, Scene scene) {
+        int xPos = buffer.getInt();
+        int yPos = buffer.getInt();
         return scene.getGameMap().getTile(xPos, yPos);
     }
 }
@@ -6,6 +6,7 @@ import com.pandaawake.gourdgame.utils.DataUtils;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 public class TwiceBreakableWall extends Thing {
 
@@ -47,6 +48,12 @@ public class TwiceBreakableWall extends Thing {
         return oStream.toByteArray();
     }
 
+    @Override
+    public void writeTo(ByteBuffer buffer) {
+        super.writeTo(buffer);
+        buffer.putInt(lives);
+    }
+
     @Override
     public void updateFromAnotherThing(Thing thing) {
         super.updateFromAnotherThing(thing);
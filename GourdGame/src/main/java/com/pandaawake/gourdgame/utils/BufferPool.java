@@ -0,0 +1,61 @@
+package com.pandaawake.gourdgame.utils;
+
+import com.mandas.tiled2d.core.Log;
+import com.pandaawake.gourdgame.Config;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+
+public class BufferPool {
+
+    /**
+     * Every thread owns one reusable buffer for serializing, so nothing is allocated once the buffer is large enough.
+     * The buffer is doubled when it overflows and keeps that size afterwards.
+     *
+     * Note: The buffer returned by acquire() or write() is only valid until the next call on the same thread,
+     * so never call these inside BufferWritable.writeTo().
+     */
+    private static final ThreadLocal<ByteBuffer> buffers =
+            ThreadLocal.withInitial(() -> ByteBuffer.allocate(Config.SerializeBufferInitialSize));
+
+    public static ByteBuffer acquire() {
+        ByteBuffer buffer = buffers.get();
+        buffer.clear();
+        return buffer;
+    }
+
+    /**
+     * Write into this thread's buffer, the buffer grows until the data fits.
+     * @param writable Data to write
+     * @return The buffer flipped for reading
+     */
+    public static ByteBuffer write(BufferWritable writable) {
+        while (true) {
+            ByteBuffer buffer = acquire();
+            try {
+                writable.writeTo(buffer);
+                buffer.flip();
+                return buffer;
+            } catch (BufferOverflowException e) {
+                if (buffer.capacity() >= Config.MaxFrameLength) {
+                    Log.app().error("BufferPool.write(): Data is larger than " + Config.MaxFrameLength + " bytes!");
+                    throw e;
+                }
+                buffers.set(ByteBuffer.allocate(buffer.capacity() * 2));
+            }
+        }
+    }
+
+    /**
+     * Write into this thread's buffer and copy the result out.
+     * @param writable Data to write
+     * @return Bytes written
+     */
+    public static byte[] toBytes(BufferWritable writable) {
+        ByteBuffer buffer = write(writable);
+        byte[] result = new byte[buffer.remaining()];
+        buffer.get(result);
+        return result;
+    }
+
+}
@@ -0,0 +1,13 @@
+package com.pandaawake.gourdgame.utils;
+
+import java.nio.ByteBuffer;
+
+public interface BufferWritable {
+
+    /**
+     * Write straight into the buffer at its position, without allocating temporary arrays.
+     * @param buffer Buffer to write, a BufferOverflowException is thrown if it's too small
+     */
+    void writeTo(ByteBuffer buffer);
+
+}
@@ -5,6 +5,8 @@ import com.mandas.tiled2d.core.Log;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
@@ -105,4 +107,68 @@ public class DataUtils {
     }
 
 
+    // ---------------------- ByteBuffer codec ----------------------
+    // Same formats as above, but written into / read from a ByteBuffer directly.
+
+    public interface BufferReader<T> {
+        T readFrom(ByteBuffer buffer);
+    }
+
+    public static void writeCollection(ByteBuffer buffer, Collection<? extends BufferWritable> collection) {
+        // [size(4), T, T, ..., T]
+        // T = [length(4), content]
+        buffer.putInt(collection.size());
+        for (BufferWritable t : collection) {
+            int lengthPosition = buffer.position();
+            buffer.putInt(0);   // Filled after the content is written
+            t.writeTo(buffer);
+            buffer.putInt(lengthPosition, buffer.position() - lengthPosition - 4);
+        }
+    }
+
+    public static <T> List<T> readCollection(ByteBuffer buffer, BufferReader<T> reader) {
+        int size = buffer.getInt();
+        if (size < 0) {
+            throw new BufferUnderflowException();
+        }
+        List<T> result = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            int length = buffer.getInt();
+            if (length < 0 || length > buffer.remaining()) {
+                throw new BufferUnderflowException();
+            }
+            // The reader only sees its element, reading past it underflows instead of reading the next one
+            int end = buffer.position() + length;
+            int limit = buffer.limit();
+            buffer.limit(end);
+            try {
+                result.add(reader.readFrom(buffer));
+                if (buffer.hasRemaining()) {
+                    throw new IllegalArgumentException("DataUtils.readCollection: " + buffer.remaining()
+                            + " bytes of element " + i + " were not read");
+                }
+            } finally {
+                buffer.limit(limit);
+            }
+        }
+        return result;
+    }
+
+    public static void writeString(ByteBuffer buffer, String str) {
+        // [length(4), bytes]
+        byte[] strBytes = str.getBytes();
+        buffer.putInt(strBytes.length);
+        buffer.put(strBytes);
+    }
+
+    public static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0 || length > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        byte[] strBytes = new byte[length];
+        buffer.get(strBytes);
+        return new String(strBytes);
+    }
+
 }
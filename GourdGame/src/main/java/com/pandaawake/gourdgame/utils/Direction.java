@@ -18,4 +18,15 @@ public enum Direction {
         return name;
     }
 
+    /**
+     * Tiles a step in this direction moves along x (y).
+     */
+    public int getDeltaX() {
+        return this == left ? -1 : (this == right ? 1 : 0);
+    }
+
+    public int getDeltaY() {
+        return this == up ? -1 : (this == down ? 1 : 0);
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,40 @@
+package com.mandas.tiled2d.core;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class LoopSchedulerTest {
+
+    @Test
+    public void testFixedTimestep() throws InterruptedException {
+        AtomicInteger ticks = new AtomicInteger();
+        AtomicInteger frames = new AtomicInteger();
+        LoopScheduler scheduler = new LoopScheduler(100, 20, 5, new LoopScheduler.Callback() {
+            @Override
+            public void onTick(float timestep) {
+                assertEquals(0.01f, timestep, 1e-6f);
+                ticks.incrementAndGet();
+            }
+
+            @Override
+            public void onRender() {
+                frames.incrementAndGet();
+            }
+        });
+        Thread thread = new Thread(scheduler);
+        thread.start();
+        Thread.sleep(300);
+        scheduler.stop();
+        thread.join(1000);
+
+        assertFalse(thread.isAlive());
+        assertTrue(ticks.get() > 0);
+        assertTrue(frames.get() > 0);
+        // Rendering runs at its own, lower rate
+        assertTrue(frames.get() < ticks.get());
+    }
+
+}
@@ -0,0 +1,52 @@
+package com.mandas.tiled2d.renderer;
+
+import org.junit.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+public class FrameDumperTest {
+
+    private static BufferedImage newFrame() {
+        BufferedImage frame = new BufferedImage(2, 1, BufferedImage.TYPE_INT_ARGB);
+        frame.setRGB(0, 0, 0x80112233);
+        frame.setRGB(1, 0, 0xFF445566);
+        return frame;
+    }
+
+    @Test
+    public void testRawRgba() throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        FrameDumper frameDumper = FrameDumper.rawRgba(output);
+        frameDumper.dump(newFrame(), 0);
+        frameDumper.dump(newFrame(), 1);
+        frameDumper.close();
+
+        byte[] expected = {0x11, 0x22, 0x33, (byte) 0x80, 0x44, 0x55, 0x66, (byte) 0xFF};
+        byte[] bytes = output.toByteArray();
+        assertEquals(expected.length * 2, bytes.length);
+        for (int i = 0; i < bytes.length; i++) {
+            assertEquals(expected[i % expected.length], bytes[i]);
+        }
+    }
+
+    @Test
+    public void testPng() throws Exception {
+        File directory = Files.createTempDirectory("frames").toFile();
+        FrameDumper frameDumper = FrameDumper.png(directory);
+        frameDumper.dump(newFrame(), 7);
+        frameDumper.close();
+
+        File file = new File(directory, "frame000007.png");
+        BufferedImage image = ImageIO.read(file);
+        assertEquals(0xFF445566, image.getRGB(1, 0));
+        assertTrue(file.delete());
+        assertTrue(directory.delete());
+    }
+
+}
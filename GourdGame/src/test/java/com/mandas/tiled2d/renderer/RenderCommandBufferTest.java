@@ -0,0 +1,109 @@
+package com.mandas.tiled2d.renderer;
+
+import com.mandas.tiled2d.scene.Entity;
+import com.mandas.tiled2d.scene.TileTextureRenderComponent;
+import com.mandas.tiled2d.scene.TransformComponent;
+import com.mandas.tiled2d.utils.FloatPair;
+import org.junit.Test;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class RenderCommandBufferTest {
+
+    private static Renderer newRenderer() {
+        return new Renderer(8, 6, 4, 4, 4, Texture.getPureColorTexture(4, 4, Color.BLACK), new Camera(4, 3));
+    }
+
+    @Test
+    public void testReplayAfterSwap() {
+        Renderer renderer = newRenderer();
+        RenderCommandBuffer buffer = renderer.getCommandBuffer();
+        Texture texture = Texture.getPureColorTexture(4, 4, Color.RED);
+
+        buffer.setTexture(RenderLayer.Type.Things, texture, 3, 2);
+        buffer.replay(renderer);
+        assertNull(renderer.getLayer(RenderLayer.Type.Things).getTexture(3, 2));
+
+        buffer.swap();
+        buffer.replay(renderer);
+        assertSame(texture, renderer.getLayer(RenderLayer.Type.Things).getTexture(3, 2));
+        assertNull(renderer.getLayer(RenderLayer.Type.Terrain).getTexture(3, 2));
+    }
+
+    @Test
+    public void testUnpaintedFramesAreMerged() {
+        Renderer renderer = newRenderer();
+        RenderCommandBuffer buffer = renderer.getCommandBuffer();
+        Texture first = Texture.getPureColorTexture(4, 4, Color.RED);
+        Texture second = Texture.getPureColorTexture(4, 4, Color.BLUE);
+
+        buffer.setTexture(RenderLayer.Type.Terrain, first, 0, 0);
+        buffer.setTexture(RenderLayer.Type.Terrain, first, 1, 0);
+        buffer.swap();
+        buffer.setTexture(RenderLayer.Type.Terrain, second, 1, 0);
+        buffer.swap();
+        buffer.replay(renderer);
+
+        RenderLayer terrain = renderer.getLayer(RenderLayer.Type.Terrain);
+        assertSame(first, terrain.getTexture(0, 0));
+        assertSame(second, terrain.getTexture(1, 0));
+    }
+
+    @Test
+    public void testClearDropsEarlierCommands() {
+        Renderer renderer = newRenderer();
+        RenderCommandBuffer buffer = renderer.getCommandBuffer();
+        Texture texture = Texture.getPureColorTexture(4, 4, Color.RED);
+
+        buffer.setTexture(RenderLayer.Type.Things, texture, 0, 0);
+        buffer.swap();
+        buffer.replay(renderer);
+        buffer.setTexture(RenderLayer.Type.Things, texture, 1, 1);
+        buffer.clear();
+        buffer.setTexture(RenderLayer.Type.Things, texture, 2, 2);
+        buffer.swap();
+        buffer.replay(renderer);
+
+        RenderLayer things = renderer.getLayer(RenderLayer.Type.Things);
+        assertNull(things.getTexture(0, 0));
+        assertNull(things.getTexture(1, 1));
+        assertSame(texture, things.getTexture(2, 2));
+    }
+
+    @Test
+    public void testEntitiesArePaintedWhereTheyWereRecorded() {
+        Renderer renderer = newRenderer();
+        RenderCommandBuffer buffer = renderer.getCommandBuffer();
+        Entity entity = new Entity();
+        TransformComponent transform = new TransformComponent();
+        transform.setTranslation(1, 1);
+        entity.addComponent(transform);
+        TileTextureRenderComponent textures = new TileTextureRenderComponent();
+        textures.addPositionAndTexture(new FloatPair(0, 0), Texture.getPureColorTexture(4, 4, Color.RED));
+        entity.addComponent(textures);
+
+        buffer.drawEntities(Collections.singletonList(entity));
+        buffer.swap();
+        // Moved after recording, the painting thread does not see it
+        transform.setTranslation(2, 1);
+
+        BufferedImage frame = new BufferedImage(20, 12, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D graphics = frame.createGraphics();
+        renderer.paint(graphics);
+        // Painted again without new commands, the entity stays
+        renderer.paint(graphics);
+        graphics.dispose();
+        assertEquals(Color.RED.getRGB(), frame.getRGB(5, 5));
+        assertNotEquals(Color.RED.getRGB(), frame.getRGB(9, 5));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testPositionOutsideMap() {
+        newRenderer().getCommandBuffer().setTexture(RenderLayer.Type.Things, null, 8, 0);
+    }
+
+}
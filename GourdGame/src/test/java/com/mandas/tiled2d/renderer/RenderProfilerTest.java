@@ -0,0 +1,55 @@
+package com.mandas.tiled2d.renderer;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class RenderProfilerTest {
+
+    @Test
+    public void testEmpty() {
+        RenderProfiler.Snapshot snapshot = new RenderProfiler(10).snapshot();
+        assertEquals(0, snapshot.frames);
+        assertEquals(0, snapshot.p99FrameNanos);
+        assertEquals(0.0, snapshot.fps, 0.0);
+    }
+
+    @Test
+    public void testPercentilesAndFps() {
+        RenderProfiler profiler = new RenderProfiler(100);
+        // 200 frames 10ms apart, taking 1..100 ms; only the last 100 are kept
+        for (int i = 0; i < 200; i++) {
+            long start = i * 10_000_000L;
+            profiler.frameStarted(start);
+            profiler.stageFinished(Renderer.Stage.Tiles, i);
+            profiler.tilesRepainted(3);
+            profiler.tilesRepainted(4);
+            profiler.frameFinished(start, start + (i % 100 + 1) * 1_000_000L);
+        }
+
+        RenderProfiler.Snapshot snapshot = profiler.snapshot();
+        assertEquals(200, snapshot.frames);
+        assertEquals(50_000_000L, snapshot.p50FrameNanos);
+        assertEquals(99_000_000L, snapshot.p99FrameNanos);
+        assertEquals(100_000_000L, snapshot.maxFrameNanos);
+        assertEquals(100.0, snapshot.fps, 0.01);
+        assertEquals(199, snapshot.getStageNanos(Renderer.Stage.Tiles));
+        assertEquals(7, snapshot.repaintedTiles);
+        assertEquals(0, snapshot.imagesAllocated);
+    }
+
+    @Test
+    public void testSnapshotIsImmutable() {
+        RenderProfiler profiler = new RenderProfiler(10);
+        profiler.frameStarted(0);
+        profiler.stageFinished(Renderer.Stage.Camera, 5);
+        profiler.frameFinished(0, 5);
+        RenderProfiler.Snapshot snapshot = profiler.snapshot();
+        profiler.frameStarted(10);
+        profiler.stageFinished(Renderer.Stage.Camera, 8);
+        profiler.frameFinished(10, 18);
+        assertEquals(5, snapshot.getStageNanos(Renderer.Stage.Camera));
+        assertEquals(1, snapshot.frames);
+    }
+
+}
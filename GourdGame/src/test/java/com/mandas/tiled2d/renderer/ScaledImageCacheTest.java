@@ -0,0 +1,75 @@
+package com.mandas.tiled2d.renderer;
+
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+
+import static org.junit.Assert.*;
+
+public class ScaledImageCacheTest {
+
+    private static final ScaledImageCache.Scaler scaler =
+            (source, width, height) -> new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+
+    @Test
+    public void testHitAndMiss() {
+        ScaledImageCache cache = new ScaledImageCache(1 << 20);
+        BufferedImage source = new BufferedImage(8, 8, BufferedImage.TYPE_INT_ARGB);
+        BufferedImage scaled = cache.get(source, 16, 16, scaler);
+        assertEquals(16, scaled.getWidth());
+        assertSame(scaled, cache.get(source, 16, 16, scaler));
+        assertNotSame(scaled, cache.get(source, 16, 17, scaler));
+        // Another image of the same size is another key
+        assertNotSame(scaled, cache.get(new BufferedImage(8, 8, BufferedImage.TYPE_INT_ARGB), 16, 16, scaler));
+        assertEquals(1, cache.getHits());
+        assertEquals(3, cache.getMisses());
+        assertEquals(3, cache.size());
+        assertEquals((16 * 16 * 2 + 16 * 17) * 4, cache.getBytes());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEviction() {
+        // Room for three 10 * 10 images
+        ScaledImageCache cache = new ScaledImageCache(3 * 10 * 10 * 4);
+        BufferedImage a = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB);
+        BufferedImage b = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB);
+        BufferedImage c = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB);
+        BufferedImage d = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB);
+        BufferedImage scaledA = cache.get(a, 10, 10, scaler);
+        BufferedImage scaledB = cache.get(b, 10, 10, scaler);
+        cache.get(c, 10, 10, scaler);
+        assertSame(scaledA, cache.get(a, 10, 10, scaler));
+        cache.get(d, 10, 10, scaler);
+
+        assertEquals(1, cache.getEvictions());
+        assertEquals(3, cache.size());
+        assertTrue(cache.getBytes() <= cache.getMaxBytes());
+        assertSame(scaledA, cache.get(a, 10, 10, scaler));
+        assertNotSame(scaledB, cache.get(b, 10, 10, scaler));
+    }
+
+    @Test
+    public void testTooLargeIsNotKept() {
+        ScaledImageCache cache = new ScaledImageCache(100);
+        BufferedImage source = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB);
+        BufferedImage scaled = cache.get(source, 10, 10, scaler);
+        assertEquals(10, scaled.getWidth());
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getBytes());
+        assertNotSame(scaled, cache.get(source, 10, 10, scaler));
+    }
+
+    @Test
+    public void testTexture() {
+        BufferedImage image = new BufferedImage(4, 4, BufferedImage.TYPE_INT_ARGB);
+        Texture texture = new Texture(image);
+        assertSame(image, texture.getImage(4, 4));
+        BufferedImage scaled = texture.getImage(8, 6);
+        assertEquals(8, scaled.getWidth());
+        assertEquals(6, scaled.getHeight());
+        assertSame(scaled, texture.getImage(8, 6));
+        texture.setImage(new BufferedImage(4, 4, BufferedImage.TYPE_INT_ARGB));
+        assertNotSame(scaled, texture.getImage(8, 6));
+    }
+
+}
@@ -0,0 +1,79 @@
+package com.mandas.tiled2d.utils;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class TileBitSetTest {
+
+    @Test
+    public void testBasic() {
+        TileBitSet tiles = new TileBitSet(10, 7);
+        assertTrue(tiles.isEmpty());
+        assertEquals(0, tiles.cardinality());
+        assertEquals(-1, tiles.nextSetBit(0));
+        tiles.set(3, 2);
+        tiles.set(-1, 2);
+        tiles.set(10, 0);
+        assertFalse(tiles.isEmpty());
+        assertTrue(tiles.get(3, 2));
+        assertFalse(tiles.get(2, 3));
+        assertEquals(3 + 2 * 10, tiles.nextSetBit(0));
+        assertEquals(-1, tiles.nextSetBit(3 + 2 * 10 + 1));
+        tiles.clear();
+        assertTrue(tiles.isEmpty());
+        assertFalse(tiles.get(3, 2));
+    }
+
+    @Test
+    public void testAgainstBooleanArray() {
+        // Widths around the word size catch masks crossing word boundaries
+        Random random = new Random(1);
+        for (int width : new int[] {1, 7, 63, 64, 65, 100}) {
+            int height = 1 + random.nextInt(20);
+            TileBitSet tiles = new TileBitSet(width, height);
+            TileBitSet other = new TileBitSet(width, height);
+            boolean[] expected = new boolean[width * height];
+            for (int i = 0; i < 200; i++) {
+                int left = random.nextInt(width + 4) - 2, top = random.nextInt(height + 4) - 2;
+                int right = left + random.nextInt(width + 1), bottom = top + random.nextInt(3);
+                TileBitSet target = random.nextBoolean() ? tiles : other;
+                if (random.nextBoolean()) {
+                    target.set(left, top, right, bottom);
+                    right = Math.min(right, width - 1);
+                    bottom = Math.min(bottom, height - 1);
+                } else {
+                    target.set(left, top);
+                    right = left;
+                    bottom = top;
+                }
+                for (int x = Math.max(left, 0); x <= right && x < width; x++) {
+                    for (int y = Math.max(top, 0); y <= bottom && y < height; y++) {
+                        expected[x + y * width] = true;
+                    }
+                }
+            }
+            tiles.or(other);
+
+            int index = -1, count = 0;
+            for (int i = 0; i < expected.length; i++) {
+                assertEquals(expected[i], tiles.get(i % width, i / width));
+                if (expected[i]) {
+                    count++;
+                    index = tiles.nextSetBit(index + 1);
+                    assertEquals(i, index);
+                }
+            }
+            assertEquals(-1, tiles.nextSetBit(index + 1));
+            assertEquals(count, tiles.cardinality());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testOrSizeMismatch() {
+        new TileBitSet(4, 4).or(new TileBitSet(4, 5));
+    }
+
+}
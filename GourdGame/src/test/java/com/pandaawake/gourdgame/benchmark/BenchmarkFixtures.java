@@ -0,0 +1,74 @@
+package com.pandaawake.gourdgame.benchmark;
+
+import com.pandaawake.gourdgame.scene.GameMap;
+import com.pandaawake.gourdgame.scene.Scene;
+import com.pandaawake.gourdgame.scene.updater.ClientSceneUpdater;
+import com.pandaawake.gourdgame.scene.updater.SceneUpdater;
+import com.pandaawake.gourdgame.sprites.Bomb;
+import com.pandaawake.gourdgame.sprites.Calabash;
+import com.pandaawake.gourdgame.sprites.Snake;
+import com.pandaawake.gourdgame.sprites.Sprite;
+import com.pandaawake.gourdgame.tiles.Floor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Scenes shared by the benchmarks, always built from a fixed seed so runs are comparable.
+ */
+public class BenchmarkFixtures {
+
+    public static final long SEED = 42;
+
+    public static Scene newScene(int mapSize) {
+        return newScene(mapSize, new ClientSceneUpdater());
+    }
+
+    public static Scene newScene(int mapSize, SceneUpdater sceneUpdater) {
+        GameMap gameMap = new GameMap(mapSize, mapSize);
+        for (int x = 0; x < mapSize; x++) {
+            for (int y = 0; y < mapSize; y++) {
+                new Floor(x + y * mapSize).addTile(gameMap.getTile(x, y));
+            }
+        }
+        return new Scene(gameMap, sceneUpdater);
+    }
+
+    /**
+     * Calabashes, snakes and bombs (owned by the first calabash) on distinct random tiles, not added to the scene yet.
+     */
+    public static List<Sprite> newSprites(Scene scene, int count) {
+        int mapSize = scene.getGameMap().getWidth();
+        if (count > mapSize * mapSize) {
+            throw new IllegalArgumentException("Map " + mapSize + "x" + mapSize + " is too small for " + count + " sprites!");
+        }
+        Random random = new Random(SEED);
+        boolean[] used = new boolean[mapSize * mapSize];
+        List<Sprite> sprites = new ArrayList<>();
+        while (sprites.size() < count) {
+            int x = random.nextInt(mapSize), y = random.nextInt(mapSize);
+            if (used[x + y * mapSize]) {
+                continue;
+            }
+            used[x + y * mapSize] = true;
+            int id = sprites.size();
+            Sprite sprite;
+            switch (id % 3) {
+                case 0:
+                    sprite = new Calabash(id, scene);
+                    break;
+                case 1:
+                    sprite = new Snake(id, scene);
+                    break;
+                default:
+                    sprite = new Bomb(id, scene, 0, x, y);
+                    break;
+            }
+            sprite.setPos(x, y);
+            sprites.add(sprite);
+        }
+        return sprites;
+    }
+
+}
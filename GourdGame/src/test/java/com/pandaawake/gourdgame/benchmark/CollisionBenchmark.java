@@ -0,0 +1,119 @@
+package com.pandaawake.gourdgame.benchmark;
+
+import com.mandas.tiled2d.utils.IntPair;
+import com.pandaawake.gourdgame.scene.GameMap;
+import com.pandaawake.gourdgame.scene.Scene;
+import com.pandaawake.gourdgame.scene.updater.ClientSceneUpdater;
+import com.pandaawake.gourdgame.sprites.MovableSprite;
+import com.pandaawake.gourdgame.sprites.Snake;
+import com.pandaawake.gourdgame.sprites.Sprite;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One collision query per sprite and direction,
+ * the occupancy grid of the GameMap against collecting every collision box into a TreeSet.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CollisionBenchmark {
+
+    private static final int[][] DIRECTIONS = { {-1, 0}, {1, 0}, {0, -1}, {0, 1} };
+
+    @Param({"50", "200"})
+    public int mapSize;
+
+    @Param({"100", "1000"})
+    public int spriteCount;
+
+    private Scene scene;
+    private List<MovableSprite> sprites;
+
+    @Setup
+    public void setup() {
+        scene = new Scene(new GameMap(mapSize, mapSize), new ClientSceneUpdater());
+        sprites = new ArrayList<>();
+        Random random = new Random(42);
+        boolean[] used = new boolean[mapSize * mapSize];
+        while (sprites.size() < spriteCount) {
+            int x = random.nextInt(mapSize), y = random.nextInt(mapSize);
+            if (used[x + y * mapSize]) {
+                continue;
+            }
+            used[x + y * mapSize] = true;
+            Snake snake = new Snake(sprites.size(), scene);
+            snake.setPos(x, y);
+            sprites.add(snake);
+        }
+        scene.addSprites(sprites);
+    }
+
+    @Benchmark
+    public void occupancyGrid(Blackhole blackhole) {
+        for (MovableSprite sprite : sprites) {
+            int x = Math.round(sprite.getX()), y = Math.round(sprite.getY());
+            for (int[] direction : DIRECTIONS) {
+                blackhole.consume(scene.spriteCanMoveTo(sprite, x + direction[0], y + direction[1]));
+            }
+        }
+    }
+
+    /**
+     * What spriteCanMoveTo used to do, without the map clipping of getCollisionBox().
+     */
+    @Benchmark
+    public void treeSet(Blackhole blackhole) {
+        int[] bounds = new int[4];
+        for (MovableSprite sprite : sprites) {
+            int x = Math.round(sprite.getX()), y = Math.round(sprite.getY());
+            for (int[] direction : DIRECTIONS) {
+                Set<IntPair> unreachablePositions = new TreeSet<>();
+                for (Sprite otherSprite : sprites) {
+                    if (otherSprite.getId() == sprite.getId() || !otherSprite.isBlocking()) {
+                        continue;
+                    }
+                    otherSprite.fillCollisionBounds(bounds);
+                    addBox(unreachablePositions, bounds);
+                }
+                sprite.fillMoveBounds(x + direction[0], y + direction[1], bounds);
+                Set<IntPair> box = new TreeSet<>();
+                addBox(box, bounds);
+                boolean canMove = true;
+                for (IntPair position : box) {
+                    if (unreachablePositions.contains(position)) {
+                        canMove = false;
+                        break;
+                    }
+                }
+                blackhole.consume(canMove);
+            }
+        }
+    }
+
+    private static void addBox(Set<IntPair> set, int[] bounds) {
+        for (int x = bounds[0]; x <= bounds[2]; x++) {
+            for (int y = bounds[1]; y <= bounds[3]; y++) {
+                set.add(new IntPair(x, y));
+            }
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(CollisionBenchmark.class.getSimpleName()).build()).run();
+    }
+
+}
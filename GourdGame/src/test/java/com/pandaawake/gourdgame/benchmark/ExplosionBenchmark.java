@@ -0,0 +1,68 @@
+package com.pandaawake.gourdgame.benchmark;
+
+import com.pandaawake.gourdgame.scene.Scene;
+import com.pandaawake.gourdgame.sprites.Bomb;
+import com.pandaawake.gourdgame.sprites.Sprite;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One bomb starting a chain reaction through [bombCount] adjacent bombs among the fixture sprites.
+ * A bomb explodes only once, so the scene is rebuilt before every invocation.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExplosionBenchmark {
+
+    @Param({"50", "100"})
+    public int mapSize;
+
+    @Param({"100", "1000"})
+    public int spriteCount;
+
+    @Param({"10", "100"})
+    public int bombCount;
+
+    private Scene scene;
+    private Bomb firstBomb;
+
+    @Setup(Level.Invocation)
+    public void setup() {
+        scene = BenchmarkFixtures.newScene(mapSize);
+        List<Sprite> sprites = BenchmarkFixtures.newSprites(scene, Math.min(spriteCount, mapSize * mapSize / 2));
+        scene.addSprites(sprites);
+
+        // A snake-like line of bombs, each one inside the blast of the previous one
+        Bomb[] bombs = new Bomb[bombCount];
+        for (int i = 0; i < bombCount; i++) {
+            int row = i / mapSize;
+            int column = row % 2 == 0 ? i % mapSize : mapSize - 1 - i % mapSize;
+            bombs[i] = new Bomb(sprites.size() + i, scene, 0, column, row);
+        }
+        scene.addSprites(Arrays.asList(bombs));
+        firstBomb = bombs[0];
+        firstBomb.setExplodeImmediately();
+    }
+
+    @Benchmark
+    public Scene chainReaction() {
+        firstBomb.OnUpdate(0.0f);
+        scene.getExplosionResolver().resolve();
+        return scene;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(ExplosionBenchmark.class.getSimpleName()).build()).run();
+    }
+
+}
@@ -0,0 +1,64 @@
+package com.pandaawake.gourdgame.benchmark;
+
+import com.mandas.tiled2d.utils.LogParser;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading a whole game trace with LogParser, as a replay does.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LogParserBenchmark {
+
+    private static final String[] LEVELS = { "TRACE", "DEBUG", "INFO ", "WARN " };
+
+    @Param({"1000", "10000"})
+    public int lineCount;
+
+    private File logFile;
+
+    @Setup
+    public void setup() throws IOException {
+        logFile = File.createTempFile("LogParserBenchmark", ".log");
+        logFile.deleteOnExit();
+        try (PrintWriter writer = new PrintWriter(logFile)) {
+            for (int i = 0; i < lineCount; i++) {
+                writer.printf("2021-12-01 12:%02d:%02d.%03d [main] %s FileLogger - player%d DoMove left%n",
+                        i / 60000 % 60, i / 1000 % 60, i % 1000, LEVELS[i % LEVELS.length], i % 4);
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        logFile.delete();
+    }
+
+    @Benchmark
+    public int readAll() throws IOException {
+        LogParser parser = new LogParser(logFile.getPath());
+        int count = 0;
+        while (parser.getLine() != null) {
+            count++;
+        }
+        parser.Close();
+        return count;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(LogParserBenchmark.class.getSimpleName()).build()).run();
+    }
+
+}
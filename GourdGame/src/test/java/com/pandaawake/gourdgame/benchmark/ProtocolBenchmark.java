@@ -0,0 +1,58 @@
+package com.pandaawake.gourdgame.benchmark;
+
+import com.pandaawake.gourdgame.network.data.action.Action;
+import com.pandaawake.gourdgame.network.data.action.PlayerAction;
+import com.pandaawake.gourdgame.network.data.data.ClientDataProcessor;
+import com.pandaawake.gourdgame.network.data.data.ServerDataProcessor;
+import com.pandaawake.gourdgame.utils.Direction;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing a frame of player actions on the server.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProtocolBenchmark {
+
+    @Param({"1", "10", "100"})
+    public int actionCount;
+
+    private ServerDataProcessor serverDataProcessor;
+    private byte[] data;
+
+    @Setup
+    public void setup() {
+        List<Action> actions = new ArrayList<>();
+        Direction[] directions = Direction.values();
+        for (int i = 0; i < actionCount; i++) {
+            if (i % 4 == 3) {
+                actions.add(new PlayerAction.SetBomb(-1, i));
+            } else {
+                actions.add(new PlayerAction.DoMove(-1, i, directions[i % directions.length]));
+            }
+        }
+        data = new ClientDataProcessor(null).actionsToData(actions);
+        serverDataProcessor = new ServerDataProcessor();
+    }
+
+    @Benchmark
+    public List<Action> dataToActions() {
+        return serverDataProcessor.dataToActions(0, data);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(ProtocolBenchmark.class.getSimpleName()).build()).run();
+    }
+
+}
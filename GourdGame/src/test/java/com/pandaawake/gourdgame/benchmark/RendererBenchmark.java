@@ -0,0 +1,87 @@
+package com.pandaawake.gourdgame.benchmark;
+
+import com.mandas.tiled2d.renderer.Camera;
+import com.mandas.tiled2d.renderer.Renderer;
+import com.pandaawake.gourdgame.Config;
+import com.pandaawake.gourdgame.scene.GameMap;
+import com.pandaawake.gourdgame.scene.Scene;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One frame of Renderer.paint into an offscreen image, needs no display (-Djava.awt.headless=true).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class RendererBenchmark {
+
+    @Param({"20", "100", "500"})
+    public int mapSize;
+
+    @Param({"10", "100", "1000"})
+    public int spriteCount;
+
+    @Param({"false", "true"})
+    public boolean parallel;
+
+    private Renderer renderer;
+    private BufferedImage frame;
+    private Graphics2D frameGraphics;
+
+    @Setup
+    public void setup() {
+        Scene scene = BenchmarkFixtures.newScene(mapSize);
+        scene.addSprites(BenchmarkFixtures.newSprites(scene, Math.min(spriteCount, mapSize * mapSize)));
+        scene.setEntities(scene.getSprites());
+
+        Camera camera = new Camera(Config.RenderWidth, Config.RenderHeight);
+        Renderer.Init(mapSize, mapSize, Config.TileSize, Config.TileSize, Config.ScoreBoardWidth,
+                Config.TileParser.getEmptyTexture(), camera);
+        renderer = Renderer.getRenderer();
+        renderer.setParallelRasterization(parallel);
+
+        GameMap gameMap = scene.getGameMap();
+        for (int x = 0; x < mapSize; x++) {
+            for (int y = 0; y < mapSize; y++) {
+                renderer.setTexture(gameMap.getTile(x, y).getThing().getTextures().get(0), x, y);
+            }
+        }
+
+        // The sprites do not move, every frame paints what is recorded here
+        renderer.getCommandBuffer().drawEntities(scene.getEntities());
+        renderer.getCommandBuffer().swap();
+
+        frame = new BufferedImage(Config.TileSize * Config.RenderWidth + Config.ScoreBoardWidth,
+                Config.TileSize * Config.RenderHeight, BufferedImage.TYPE_INT_ARGB);
+        frameGraphics = frame.createGraphics();
+        // The first frame draws every tile, measure the following ones
+        renderer.paint(frameGraphics);
+    }
+
+    @TearDown
+    public void tearDown() {
+        frameGraphics.dispose();
+        renderer.setParallelRasterization(false);
+    }
+
+    @Benchmark
+    public BufferedImage paint() {
+        renderer.paint(frameGraphics);
+        return frame;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(RendererBenchmark.class.getSimpleName()).build()).run();
+    }
+
+}
@@ -0,0 +1,64 @@
+package com.pandaawake.gourdgame.benchmark;
+
+import com.pandaawake.gourdgame.scene.Scene;
+import com.pandaawake.gourdgame.scene.updater.ClientSceneUpdater;
+import com.pandaawake.gourdgame.sprites.Sprite;
+import com.pandaawake.gourdgame.utils.BufferPool;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.ByteBuffer;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Applying an update of every sprite of the scene, like an UpdateSprites received by a client.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SceneUpdaterBenchmark {
+
+    @Param({"20", "100"})
+    public int mapSize;
+
+    @Param({"100", "1000"})
+    public int spriteCount;
+
+    private Scene scene;
+    private Set<Sprite> updatedSprites;
+
+    @Setup
+    public void setup() {
+        scene = BenchmarkFixtures.newScene(mapSize);
+        List<Sprite> sprites = BenchmarkFixtures.newSprites(scene, Math.min(spriteCount, mapSize * mapSize));
+        scene.addSprites(sprites);
+
+        // Updates are different objects with the same ids, as if they were parsed from the network
+        updatedSprites = new HashSet<>();
+        for (Sprite sprite : sprites) {
+            ByteBuffer buffer = BufferPool.write(sprite);
+            updatedSprites.add(Sprite.readFrom(buffer, scene));
+        }
+    }
+
+    @Benchmark
+    public Scene updateSprites() {
+        ClientSceneUpdater sceneUpdater = (ClientSceneUpdater) scene.getSceneUpdater();
+        sceneUpdater.updateSprites(updatedSprites);
+        sceneUpdater.OnUpdate(0.0f);
+        return scene;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(SceneUpdaterBenchmark.class.getSimpleName()).build()).run();
+    }
+
+}
@@ -0,0 +1,115 @@
+package com.pandaawake.gourdgame.benchmark;
+
+import com.pandaawake.gourdgame.Config;
+import com.pandaawake.gourdgame.network.data.action.SceneAction;
+import com.pandaawake.gourdgame.network.data.data.DataProcessor;
+import com.pandaawake.gourdgame.network.data.data.ServerDataProcessor;
+import com.pandaawake.gourdgame.scene.GameMap;
+import com.pandaawake.gourdgame.scene.Scene;
+import com.pandaawake.gourdgame.scene.updater.ClientSceneUpdater;
+import com.pandaawake.gourdgame.sprites.Bomb;
+import com.pandaawake.gourdgame.sprites.Calabash;
+import com.pandaawake.gourdgame.sprites.Snake;
+import com.pandaawake.gourdgame.sprites.Sprite;
+import com.pandaawake.gourdgame.utils.BufferPool;
+import com.pandaawake.gourdgame.utils.DataUtils;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serializing all sprites of a scene, DataUtils (ByteArrayOutputStream) against writing into a ByteBuffer.
+ * Run with -prof gc to compare the allocation rates.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializationBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int spriteCount;
+
+    private Scene scene;
+    private Set<Sprite> sprites;
+    private byte[][] spriteBytes;
+    private SceneAction.SyncSprites action;
+    private ServerDataProcessor dataProcessor;
+
+    @Setup
+    public void setup() {
+        scene = new Scene(new GameMap(Config.MapWidth, Config.MapHeight), new ClientSceneUpdater());
+        sprites = new HashSet<>();
+        for (int i = 0; i < spriteCount; i++) {
+            Sprite sprite;
+            switch (i % 3) {
+                case 0:
+                    sprite = new Calabash(i, scene);
+                    break;
+                case 1:
+                    sprite = new Snake(i, scene);
+                    break;
+                default:
+                    sprite = new Bomb(i, scene, 0, 0, 0);
+                    break;
+            }
+            sprite.setPos(i % Config.MapWidth, (i / Config.MapWidth) % Config.MapHeight);
+            sprites.add(sprite);
+        }
+        action = new SceneAction.SyncSprites(-1, sprites);
+        spriteBytes = new byte[sprites.size()][];
+        int index = 0;
+        for (Sprite sprite : sprites) {
+            spriteBytes[index++] = BufferPool.toBytes(sprite);
+        }
+        dataProcessor = new ServerDataProcessor();
+    }
+
+    @Benchmark
+    public byte[] dataUtils() throws IOException {
+        return DataUtils.concatBytes(
+                DataUtils.intToBytes(DataProcessor.SERVER_SCENE_ACTION),
+                DataUtils.intToBytes(SceneAction.SYNC_SPRITES),
+                DataUtils.collectionToBytes(sprites)
+        );
+    }
+
+    @Benchmark
+    public ByteBuffer byteBuffer() {
+        return BufferPool.write(buffer -> dataProcessor.writeAction(action, buffer));
+    }
+
+    @Benchmark
+    public byte[] byteBufferCopied() {
+        return dataProcessor.actionToData(action);
+    }
+
+    @Benchmark
+    public void spriteToBytes(Blackhole blackhole) throws IOException {
+        for (Sprite sprite : sprites) {
+            blackhole.consume(sprite.toBytes());
+        }
+    }
+
+    @Benchmark
+    public void spriteParseBytes(Blackhole blackhole) throws IOException {
+        for (byte[] bytes : spriteBytes) {
+            blackhole.consume(Sprite.parseBytes(bytes, scene));
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(SerializationBenchmark.class.getSimpleName()).build()).run();
+    }
+
+}
@@ -0,0 +1,118 @@
+package com.pandaawake.gourdgame.network.data.frame;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class FrameBufferTest {
+
+    /**
+     * A channel which gives at most [chunkSize] bytes every read, like a busy TCP connection.
+     */
+    private static class ChunkedChannel implements ReadableByteChannel {
+        private final ByteBuffer data;
+        private final int chunkSize;
+
+        ChunkedChannel(byte[] data, int chunkSize) {
+            this.data = ByteBuffer.wrap(data);
+            this.chunkSize = chunkSize;
+        }
+
+        @Override
+        public int read(ByteBuffer dst) {
+            if (!data.hasRemaining()) {
+                return 0;
+            }
+            int length = Math.min(Math.min(chunkSize, dst.remaining()), data.remaining());
+            for (int i = 0; i < length; i++) {
+                dst.put(data.get());
+            }
+            return length;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {}
+    }
+
+    private static byte[] frames(byte[]... payloads) {
+        int length = 0;
+        for (byte[] payload : payloads) {
+            length += FrameCodec.HEADER_LENGTH + payload.length;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        for (byte[] payload : payloads) {
+            buffer.put(FrameCodec.encode(payload));
+        }
+        return buffer.array();
+    }
+
+    private static byte[] payload(int length, int seed) {
+        byte[] payload = new byte[length];
+        for (int i = 0; i < length; i++) {
+            payload[i] = (byte) (i * 31 + seed);
+        }
+        return payload;
+    }
+
+    @Test
+    public void testSplitAndMergedFrames() throws IOException {
+        byte[] first = payload(10, 1);
+        byte[] second = payload(3000, 2);
+        byte[] third = payload(0, 3);
+        byte[] fourth = payload(7, 4);
+        // 3 bytes per read splits headers, 5000 bytes per read merges frames
+        for (int chunkSize : new int[] { 3, 5000 }) {
+            FrameBuffer frameBuffer = new FrameBuffer(16);
+            ChunkedChannel channel = new ChunkedChannel(frames(first, second, third, fourth), chunkSize);
+            List<byte[]> result = new ArrayList<>();
+            while (frameBuffer.readFrom(channel) > 0) {
+                byte[] frame;
+                while ((frame = frameBuffer.pollFrame()) != null) {
+                    result.add(frame);
+                }
+            }
+            assertEquals(4, result.size());
+            assertArrayEquals(first, result.get(0));
+            assertArrayEquals(second, result.get(1));
+            assertArrayEquals(third, result.get(2));
+            assertArrayEquals(fourth, result.get(3));
+            assertEquals(0, frameBuffer.pendingBytes());
+        }
+    }
+
+    @Test
+    public void testIncompleteFrameIsKept() throws IOException {
+        byte[] data = frames(payload(20, 5));
+        FrameBuffer frameBuffer = new FrameBuffer(8);
+        byte[] head = new byte[data.length - 1];
+        System.arraycopy(data, 0, head, 0, head.length);
+        frameBuffer.append(head);
+        assertNull(frameBuffer.pollFrame());
+        frameBuffer.append(new byte[] { data[data.length - 1] });
+        assertArrayEquals(payload(20, 5), frameBuffer.pollFrame());
+    }
+
+    @Test
+    public void testIllegalLength() {
+        FrameBuffer frameBuffer = new FrameBuffer();
+        frameBuffer.append(new byte[] { (byte) 0xff, 0, 0, 0 });
+        try {
+            frameBuffer.pollFrame();
+            fail();
+        } catch (IOException e) {
+            // Expected
+        }
+    }
+
+}
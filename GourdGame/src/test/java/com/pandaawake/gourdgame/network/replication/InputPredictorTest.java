@@ -0,0 +1,88 @@
+package com.pandaawake.gourdgame.network.replication;
+
+import com.pandaawake.gourdgame.scene.GameMap;
+import com.pandaawake.gourdgame.scene.Scene;
+import com.pandaawake.gourdgame.scene.updater.ClientSceneUpdater;
+import com.pandaawake.gourdgame.sprites.MovableSprite;
+import com.pandaawake.gourdgame.sprites.Snake;
+import com.pandaawake.gourdgame.utils.Direction;
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class InputPredictorTest {
+
+    private static MovableSprite newSprite(int x, int y) {
+        Scene scene = new Scene(new GameMap(10, 10), new ClientSceneUpdater());
+        Snake sprite = new Snake(0, scene);
+        sprite.setPos(x, y);
+        scene.addSprites(Collections.singletonList(sprite));
+        return sprite;
+    }
+
+    private static SpriteDelta serverState(float posX, float posY, MovableSprite.Status status, float targetX, float targetY) {
+        SpriteDelta delta = new SpriteDelta(0);
+        delta.mask = SpriteDelta.POSITION | SpriteDelta.STATUS;
+        delta.posX = posX;
+        delta.posY = posY;
+        delta.status = status.number;
+        delta.targetX = targetX;
+        delta.targetY = targetY;
+        return delta;
+    }
+
+    private static void finish(MovableSprite sprite) {
+        for (int i = 0; i < 100; i++) {
+            sprite.OnUpdate(0.01f);
+        }
+    }
+
+    @Test
+    public void testAcknowledgedPredictionIsKept() {
+        MovableSprite sprite = newSprite(2, 2);
+        InputPredictor predictor = new InputPredictor(sprite);
+
+        assertTrue(predictor.predictMove(Direction.right, 1));
+        finish(sprite);
+        assertTrue(predictor.predictMove(Direction.right, 2));
+        assertEquals(4, sprite.getDestinationX());
+
+        // The server is still performing move 1, move 2 has not arrived yet
+        predictor.applyAuthoritativeDelta(serverState(2.5f, 2, MovableSprite.Status.Moving, 3, 2));
+        predictor.reconcile(1);
+        assertEquals(1, predictor.getPendingCount());
+        assertEquals(0, predictor.getCorrections());
+        assertEquals(4, sprite.getDestinationX());
+
+        predictor.applyAuthoritativeDelta(serverState(3, 2, MovableSprite.Status.Moving, 4, 2));
+        predictor.reconcile(2);
+        assertEquals(0, predictor.getPendingCount());
+        assertEquals(0, predictor.getCorrections());
+    }
+
+    @Test
+    public void testRefusedMoveIsCorrected() {
+        MovableSprite sprite = newSprite(2, 2);
+        InputPredictor predictor = new InputPredictor(sprite);
+
+        assertTrue(predictor.predictMove(Direction.down, 1));
+        finish(sprite);
+        assertTrue(predictor.predictMove(Direction.down, 2));
+
+        // The server refused move 1 (e.g. a bomb was set there), move 2 is replayed from (2, 2)
+        predictor.reconcile(1);
+        assertEquals(1, predictor.getCorrections());
+        assertEquals(1, predictor.getPendingCount());
+        assertEquals(2, sprite.getDestinationX());
+        assertEquals(3, sprite.getDestinationY());
+        assertEquals(MovableSprite.Status.Moving, sprite.getStatus());
+
+        predictor.reconcile(2);
+        assertEquals(2, sprite.getDestinationY());
+        assertEquals(MovableSprite.Status.Ok, sprite.getStatus());
+        assertEquals(2, predictor.getCorrections());
+    }
+
+}
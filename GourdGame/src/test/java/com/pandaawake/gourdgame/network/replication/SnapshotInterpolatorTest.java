@@ -0,0 +1,71 @@
+package com.pandaawake.gourdgame.network.replication;
+
+import com.pandaawake.gourdgame.scene.GameMap;
+import com.pandaawake.gourdgame.scene.Scene;
+import com.pandaawake.gourdgame.scene.updater.ClientSceneUpdater;
+import com.pandaawake.gourdgame.sprites.Snake;
+import com.pandaawake.gourdgame.sprites.Sprite;
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class SnapshotInterpolatorTest {
+
+    private static Snake newSprite(Scene scene, int id, int x, int y) {
+        Snake sprite = new Snake(id, scene);
+        sprite.setPos(x, y);
+        scene.addSprites(Collections.singletonList(sprite));
+        return sprite;
+    }
+
+    @Test
+    public void testInterpolateInThePast() {
+        Scene scene = new Scene(new GameMap(10, 10), new ClientSceneUpdater());
+        Snake sprite = newSprite(scene, 0, 2, 2);
+        SnapshotInterpolator interpolator = new SnapshotInterpolator(0.1f, 0.1f, 0.05f);
+
+        interpolator.onServerTime(10.0);
+        interpolator.addPosition(sprite, 10.0, 2.2f, 2, true);
+        interpolator.onServerTime(10.05);
+        interpolator.addPosition(sprite, 10.05, 2.4f, 2, true);
+        assertEquals(9.905, interpolator.getRenderTime(), 1e-6);
+
+        // Still where it was before the first replicated position
+        interpolator.OnUpdate(0.0f, scene::getSpriteById);
+        assertEquals(2.0f, sprite.getX(), 1e-4f);
+
+        // Half way between 10.0 and 10.05
+        interpolator.OnUpdate(0.12f, scene::getSpriteById);
+        assertEquals(10.025, interpolator.getRenderTime(), 1e-6);
+        assertEquals(2.3f, sprite.getX(), 1e-4f);
+        assertEquals(2.0f, sprite.getY(), 1e-4f);
+    }
+
+    @Test
+    public void testExtrapolateBriefly() {
+        Scene scene = new Scene(new GameMap(10, 10), new ClientSceneUpdater());
+        Snake moving = newSprite(scene, 0, 2, 2);
+        Snake stopped = newSprite(scene, 1, 5, 5);
+        SnapshotInterpolator interpolator = new SnapshotInterpolator(0.1f, 0.1f, 0.05f);
+
+        interpolator.onServerTime(10.0);
+        interpolator.addPosition(moving, 10.0, 2.2f, 2, true);
+        interpolator.addPosition(stopped, 10.0, 5, 6, false);
+
+        // No positions after 10.0 arrived: the moving sprite goes on at 4 tiles/s for 0.1 s, then waits
+        interpolator.OnUpdate(0.15f, scene::getSpriteById);
+        assertEquals(10.05, interpolator.getRenderTime(), 1e-6);
+        assertEquals(2.4f, moving.getX(), 1e-4f);
+        interpolator.OnUpdate(0.5f, scene::getSpriteById);
+        assertEquals(2.6f, moving.getX(), 1e-4f);
+        assertEquals(6.0f, stopped.getY(), 1e-4f);
+
+        // A removed sprite is forgotten
+        scene.removeSprites(Collections.<Sprite>singletonList(stopped));
+        interpolator.OnUpdate(0.01f, scene::getSpriteById);
+        assertEquals(1, interpolator.getSpriteCount());
+    }
+
+}
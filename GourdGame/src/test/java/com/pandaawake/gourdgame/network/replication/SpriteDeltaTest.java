@@ -0,0 +1,51 @@
+package com.pandaawake.gourdgame.network.replication;
+
+import com.pandaawake.gourdgame.utils.BufferPool;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+public class SpriteDeltaTest {
+
+    private static SpriteDelta state(float posX, float posY, int lives) {
+        SpriteDelta state = new SpriteDelta(7);
+        state.mask = SpriteDelta.POSITION | SpriteDelta.STATUS | SpriteDelta.LIVES;
+        state.posX = posX;
+        state.posY = posY;
+        state.lives = lives;
+        return state;
+    }
+
+    @Test
+    public void testDiff() {
+        SpriteDelta baseline = state(1.0f, 2.0f, 3);
+        assertNull(state(1.0f, 2.0f, 3).diff(baseline));
+
+        SpriteDelta delta = state(1.5f, 2.0f, 3).diff(baseline);
+        assertNotNull(delta);
+        assertEquals(SpriteDelta.POSITION, delta.mask);
+        assertEquals(1.5f, delta.posX, 0.0f);
+
+        // Unknown sprite gets every field
+        SpriteDelta full = state(1.0f, 2.0f, 3);
+        assertSame(full, full.diff(null));
+    }
+
+    @Test
+    public void testBuffer() {
+        SpriteDelta delta = state(4.25f, 5.5f, 2).diff(state(4.0f, 5.5f, 3));
+        ByteBuffer buffer = BufferPool.write(delta);
+        // id + mask + position + lives
+        assertEquals(4 + 1 + 8 + 4, buffer.remaining());
+
+        SpriteDelta parsed = SpriteDelta.readFrom(buffer);
+        assertEquals(7, parsed.spriteId);
+        assertEquals(SpriteDelta.POSITION | SpriteDelta.LIVES, parsed.mask);
+        assertEquals(4.25f, parsed.posX, 0.0f);
+        assertEquals(5.5f, parsed.posY, 0.0f);
+        assertEquals(2, parsed.lives);
+    }
+
+}
@@ -0,0 +1,59 @@
+package com.pandaawake.gourdgame.network.room;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class RoomExecutorTest {
+
+    private static void checkExecutor(RoomExecutor executor) throws InterruptedException {
+        int rooms = 4;
+        AtomicInteger[] ticks = new AtomicInteger[rooms];
+        AtomicBoolean overlapped = new AtomicBoolean(false);
+        RoomExecutor.Task[] tasks = new RoomExecutor.Task[rooms];
+        for (int i = 0; i < rooms; i++) {
+            AtomicInteger count = ticks[i] = new AtomicInteger();
+            AtomicBoolean ticking = new AtomicBoolean(false);
+            tasks[i] = executor.schedule(() -> {
+                if (!ticking.compareAndSet(false, true)) {
+                    overlapped.set(true);
+                }
+                count.incrementAndGet();
+                ticking.set(false);
+            }, 200);
+        }
+
+        Thread.sleep(300);
+        tasks[0].cancel();
+        Thread.sleep(50);
+        int cancelledTicks = ticks[0].get();
+        Thread.sleep(100);
+
+        assertEquals(cancelledTicks, ticks[0].get());
+        for (AtomicInteger count : ticks) {
+            assertTrue(count.get() > 10);
+        }
+        assertFalse(overlapped.get());
+        executor.shutdown();
+    }
+
+    @Test
+    public void testPooled() throws InterruptedException {
+        checkExecutor(RoomExecutor.pooled(2));
+    }
+
+    @Test
+    public void testThreadPerRoom() throws InterruptedException {
+        checkExecutor(RoomExecutor.create(RoomExecutor.Kind.PlatformThreads));
+    }
+
+    @Test
+    public void testVirtualThreads() throws InterruptedException {
+        // Pooled before JDK 21
+        checkExecutor(RoomExecutor.create(RoomExecutor.Kind.VirtualThreads));
+    }
+
+}
@@ -0,0 +1,55 @@
+package com.pandaawake.gourdgame.scene;
+
+import com.pandaawake.gourdgame.scene.updater.ClientSceneUpdater;
+import com.pandaawake.gourdgame.sprites.Bomb;
+import com.pandaawake.gourdgame.sprites.Calabash;
+import com.pandaawake.gourdgame.sprites.Snake;
+import com.pandaawake.gourdgame.tiles.Wall;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class ExplosionResolverTest {
+
+    @Test
+    public void testChainReaction() {
+        Scene scene = new Scene(new GameMap(10, 10), new ClientSceneUpdater());
+        Calabash owner = new Calabash(0, scene);
+        Bomb first = new Bomb(1, scene, 0, 5, 5);
+        Bomb second = new Bomb(2, scene, 0, 6, 6);
+        Bomb farAway = new Bomb(3, scene, 0, 9, 9);
+        Snake snake = new Snake(4, scene);
+        snake.setPos(7, 7);
+        scene.addSprites(Arrays.asList(owner, first, second, farAway, snake));
+        int lives = snake.getLives();
+
+        first.setExplodeImmediately();
+        first.OnUpdate(0.01f);
+        scene.getExplosionResolver().resolve();
+
+        // The second bomb is hit by the first one and explodes in the same pass
+        assertFalse(second.markExploded());
+        assertTrue(farAway.markExploded());
+        assertEquals(lives - 1, snake.getLives());
+    }
+
+    @Test
+    public void testCrossStopsAtWalls() {
+        GameMap gameMap = new GameMap(10, 10);
+        Wall wall = new Wall(0);
+        wall.addTile(gameMap.getTile(5, 3));
+        boolean[] hit = new boolean[100];
+        new BlastShape.Cross(3).forEachTile(gameMap, 5, 5, (x, y) -> hit[x + y * 10] = true);
+
+        assertTrue(hit[5 + 5 * 10]);
+        assertTrue(hit[8 + 5 * 10]);
+        assertFalse(hit[9 + 5 * 10]);
+        assertFalse(hit[6 + 6 * 10]);
+        // The wall is hit, the tile behind it isn't
+        assertTrue(hit[5 + 3 * 10]);
+        assertFalse(hit[5 + 2 * 10]);
+    }
+
+}
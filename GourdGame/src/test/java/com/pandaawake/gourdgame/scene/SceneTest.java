@@ -0,0 +1,98 @@
+package com.pandaawake.gourdgame.scene;
+
+import com.pandaawake.gourdgame.network.replication.InputPredictor;
+import com.pandaawake.gourdgame.scene.updater.ClientSceneUpdater;
+import com.pandaawake.gourdgame.sprites.Snake;
+import com.pandaawake.gourdgame.utils.Direction;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+public class SceneTest {
+
+    @Test
+    public void testOccupancyFollowsSprites() {
+        Scene scene = new Scene(new GameMap(10, 10), new ClientSceneUpdater());
+        Snake a = new Snake(0, scene);
+        Snake b = new Snake(1, scene);
+        a.setPos(2, 2);
+        b.setPos(4, 2);
+        scene.addSprites(Collections.singletonList(a));
+        scene.addSprites(Collections.singletonList(b));
+
+        assertSame(a, scene.getSpriteById(0));
+        assertEquals(1, scene.getGameMap().getOccupancy(2, 2));
+        assertEquals(0, scene.getGameMap().getOccupancy(3, 2));
+        assertTrue(scene.spriteCanMoveTo(a, 3, 2));
+        assertFalse(scene.spriteCanAddTo(new Snake(2, scene), 4, 2));
+
+        // A moving sprite covers both its old and new position
+        assertTrue(a.doMove(Direction.right));
+        assertEquals(1, scene.getGameMap().getOccupancy(3, 2));
+        assertFalse(scene.spriteCanMoveTo(b, 3, 2));
+
+        for (int i = 0; i < 100; i++) {
+            a.OnUpdate(0.01f);
+        }
+        assertEquals(0, scene.getGameMap().getOccupancy(2, 2));
+        assertEquals(1, scene.getGameMap().getOccupancy(3, 2));
+
+        scene.removeSprites(Collections.singletonList(a));
+        assertNull(scene.getSpriteById(0));
+        assertEquals(0, scene.getGameMap().getOccupancy(3, 2));
+        assertTrue(scene.spriteCanMoveTo(b, 3, 2));
+    }
+
+    @Test
+    public void testIdSpacePerScene() {
+        Scene a = new Scene(new GameMap(4, 4), new ClientSceneUpdater());
+        Scene b = new Scene(new GameMap(4, 4), new ClientSceneUpdater());
+        assertEquals(0, a.getNextSpriteId());
+        assertEquals(1, a.getNextSpriteId());
+        assertEquals(0, a.getNextThingId());
+        assertEquals(0, b.getNextSpriteId());
+        assertEquals(0, b.getNextThingId());
+    }
+
+    @Test
+    public void testResetWhileUpdatingDoesNotDeadlock() throws InterruptedException {
+        // The client's update thread runs the updater and predicts moves,
+        // while the network thread resets the scene (GameInitialize)
+        ClientSceneUpdater updater = new ClientSceneUpdater();
+        Scene scene = new Scene(new GameMap(10, 10), updater);
+        AtomicBoolean running = new AtomicBoolean(true);
+        Thread updating = new Thread(() -> {
+            while (running.get()) {
+                Snake snake = new Snake(scene.getNextSpriteId(), scene);
+                snake.setPos(1, 1);
+                updater.addSprite(snake);
+                updater.OnUpdate(0.01f);
+                updater.setPredictor(new InputPredictor(snake));
+                updater.predictMove(Direction.right);
+            }
+        });
+        Thread resetting = new Thread(() -> {
+            while (running.get()) {
+                scene.resetAll();
+            }
+        });
+        updating.setDaemon(true);
+        resetting.setDaemon(true);
+        updating.start();
+        resetting.start();
+
+        Thread.sleep(500);
+        long[] deadlocked = ManagementFactory.getThreadMXBean().findMonitorDeadlockedThreads();
+        running.set(false);
+        updating.join(2000);
+        resetting.join(2000);
+        assertNull(deadlocked);
+        assertFalse(updating.isAlive());
+        assertFalse(resetting.isAlive());
+    }
+
+}
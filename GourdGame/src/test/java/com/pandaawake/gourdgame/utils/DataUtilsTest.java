@@ -0,0 +1,98 @@
+package com.pandaawake.gourdgame.utils;
+
+import com.pandaawake.gourdgame.Config;
+import com.pandaawake.gourdgame.scene.GameMap;
+import com.pandaawake.gourdgame.scene.Scene;
+import com.pandaawake.gourdgame.scene.updater.ClientSceneUpdater;
+import com.pandaawake.gourdgame.sprites.Bomb;
+import com.pandaawake.gourdgame.sprites.Calabash;
+import com.pandaawake.gourdgame.sprites.Snake;
+import com.pandaawake.gourdgame.sprites.Sprite;
+import com.pandaawake.gourdgame.tiles.Thing;
+import com.pandaawake.gourdgame.tiles.TwiceBreakableWall;
+import com.pandaawake.gourdgame.tiles.Wall;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class DataUtilsTest {
+
+    private final Scene scene = new Scene(new GameMap(Config.MapWidth, Config.MapHeight), new ClientSceneUpdater());
+
+    private static byte[] remainingBytes(ByteBuffer buffer) {
+        byte[] result = new byte[buffer.remaining()];
+        buffer.duplicate().get(result);
+        return result;
+    }
+
+    @Test
+    public void testSpritesCodecMatchesToBytes() throws IOException {
+        List<Sprite> sprites = new ArrayList<>();
+        sprites.add(new Calabash(1, scene));
+        sprites.add(new Snake(2, scene));
+        sprites.add(new Bomb(3, scene, 1, 4.0f, 5.0f));
+        sprites.get(0).setPos(2.5f, 3.0f);
+
+        ByteBuffer buffer = BufferPool.write(target -> DataUtils.writeCollection(target, sprites));
+        assertArrayEquals(DataUtils.collectionToBytes(sprites), remainingBytes(buffer));
+
+        List<Sprite> parsed = DataUtils.readCollection(buffer, spriteBuffer -> Sprite.readFrom(spriteBuffer, scene));
+        assertEquals(3, parsed.size());
+        assertFalse(buffer.hasRemaining());
+        for (int i = 0; i < sprites.size(); i++) {
+            assertArrayEquals(sprites.get(i).toBytes(), parsed.get(i).toBytes());
+        }
+    }
+
+    @Test
+    public void testThingsCodecMatchesToBytes() throws IOException {
+        List<Thing> things = new ArrayList<>();
+        Thing wall = new Wall(1);
+        wall.addTile(scene.getGameMap().getTile(1, 2));
+        things.add(wall);
+        TwiceBreakableWall breakableWall = new TwiceBreakableWall(2, scene);
+        breakableWall.addTile(scene.getGameMap().getTile(3, 4));
+        breakableWall.lives = 1;
+        things.add(breakableWall);
+
+        ByteBuffer buffer = BufferPool.write(target -> DataUtils.writeCollection(target, things));
+        assertArrayEquals(DataUtils.collectionToBytes(things), remainingBytes(buffer));
+
+        List<Thing> parsed = DataUtils.readCollection(buffer, thingBuffer -> Thing.readFrom(thingBuffer, scene));
+        assertEquals(2, parsed.size());
+        assertSame(scene.getGameMap().getTile(3, 4), parsed.get(1).getTiles().get(0));
+        assertEquals(1, ((TwiceBreakableWall) parsed.get(1)).lives);
+    }
+
+    @Test
+    public void testElementIsReadWithinItsLength() {
+        // [size = 2, length = 2, 0x0102, length = 4, 7]: the first element is shorter than an int
+        ByteBuffer buffer = ByteBuffer.allocate(18);
+        buffer.putInt(2).putInt(2).putShort((short) 0x0102).putInt(4).putInt(7);
+        buffer.flip();
+        try {
+            DataUtils.readCollection(buffer, ByteBuffer::getInt);
+            fail("An int read from a 2 bytes element");
+        } catch (BufferUnderflowException e) {
+            // Expected, instead of reading into the next element
+        }
+
+        // [size = 1, length = 8, 7, 8]: half of the element is left
+        buffer = ByteBuffer.allocate(16);
+        buffer.putInt(1).putInt(8).putInt(7).putInt(8);
+        buffer.flip();
+        try {
+            DataUtils.readCollection(buffer, ByteBuffer::getInt);
+            fail("4 bytes of an 8 bytes element read");
+        } catch (IllegalArgumentException e) {
+            assertEquals(16, buffer.limit());
+        }
+    }
+
+}
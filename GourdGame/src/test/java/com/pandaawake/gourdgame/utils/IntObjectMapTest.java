@@ -0,0 +1,48 @@
+package com.pandaawake.gourdgame.utils;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class IntObjectMapTest {
+
+    @Test
+    public void testBasic() {
+        IntObjectMap<String> map = new IntObjectMap<>();
+        assertNull(map.put(1, "a"));
+        assertNull(map.put(-7, "b"));
+        assertEquals("a", map.put(1, "c"));
+        assertEquals("c", map.get(1));
+        assertEquals("b", map.get(-7));
+        assertNull(map.get(2));
+        assertEquals(2, map.size());
+        assertEquals("b", map.remove(-7));
+        assertFalse(map.containsKey(-7));
+        map.clear();
+        assertTrue(map.isEmpty());
+    }
+
+    @Test
+    public void testAgainstHashMap() {
+        IntObjectMap<Integer> map = new IntObjectMap<>();
+        Map<Integer, Integer> expected = new HashMap<>();
+        Random random = new Random(1);
+        for (int i = 0; i < 100000; i++) {
+            int key = random.nextInt(2000) - 1000;
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(key), map.remove(key));
+            } else {
+                assertEquals(expected.put(key, i), map.put(key, i));
+            }
+        }
+        assertEquals(expected.size(), map.size());
+        for (int key = -1000; key < 1000; key++) {
+            assertEquals(expected.get(key), map.get(key));
+        }
+    }
+
+}